@@ -1,36 +1,70 @@
 package hu.dlaszlo.pokemonbattle.backend;
 
-import org.springframework.cache.CacheManager;
+import hu.dlaszlo.pokemonbattle.backend.restclient.PokeApiCacheManager;
+import hu.dlaszlo.pokemonbattle.backend.restclient.PokeApiHttpClient;
+import hu.dlaszlo.pokemonbattle.backend.restclient.PokeApiRestClient;
+import hu.dlaszlo.pokemonbattle.backend.service.history.BattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.history.ColumnarBattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.history.SegmentedBattleHistory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.context.annotation.Scope;
 import org.springframework.resilience.annotation.EnableResilientMethods;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestClient;
 
+import java.time.Duration;
+
 @Configuration
 @EnableCaching
 @EnableResilientMethods
+@EnableScheduling
 public class BackendConfig {
 
     public final static String CACHE_POKEMON_NAMES = "pokemonNames";
     public final static String CACHE_POKEMON_DETAIL = "pokemonDetail";
 
     @Bean
-    public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager(CACHE_POKEMON_NAMES, CACHE_POKEMON_DETAIL);
+    public PokeApiCacheManager cacheManager(ObjectProvider<PokeApiRestClient> pokeApiRestClient,
+                                     @Value("${pokeapi.cache.names.max_size}") long namesMaxSize,
+                                     @Value("${pokeapi.cache.names.ttl}") Duration namesTtl,
+                                     @Value("${pokeapi.cache.names.refresh}") Duration namesRefresh,
+                                     @Value("${pokeapi.cache.names.max_stale}") Duration namesMaxStale,
+                                     @Value("${pokeapi.cache.detail.max_size}") long detailMaxSize,
+                                     @Value("${pokeapi.cache.detail.ttl}") Duration detailTtl,
+                                     @Value("${pokeapi.cache.detail.refresh}") Duration detailRefresh,
+                                     @Value("${pokeapi.cache.detail.max_stale}") Duration detailMaxStale,
+                                     @Value("${pokeapi.fetch_concurrency}") int refreshConcurrency) {
+        return new PokeApiCacheManager(pokeApiRestClient,
+                new PokeApiCacheManager.Settings(namesMaxSize, namesTtl, namesRefresh, namesMaxStale),
+                new PokeApiCacheManager.Settings(detailMaxSize, detailTtl, detailRefresh, detailMaxStale),
+                refreshConcurrency);
     }
 
     @Bean
-    public RestClient restClient() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(5000);
-        factory.setReadTimeout(5000);
-
+    public RestClient restClient(PokeApiHttpClient pokeApiHttpClient) {
         return RestClient.builder()
-                .requestFactory(factory)
+                .requestFactory(pokeApiHttpClient.getRequestFactory())
                 .build();
     }
 
+    @Bean
+    @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
+    @ConditionalOnProperty(name = "battle.history", havingValue = "segmented", matchIfMissing = true)
+    public BattleHistory segmentedBattleHistory() {
+        return new SegmentedBattleHistory();
+    }
+
+    @Bean
+    @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
+    @ConditionalOnProperty(name = "battle.history", havingValue = "columnar")
+    public BattleHistory columnarBattleHistory() {
+        return new ColumnarBattleHistory();
+    }
+
 }
\ No newline at end of file
@@ -1,14 +1,42 @@
 package hu.dlaszlo.pokemonbattle.backend.controller;
 
+import hu.dlaszlo.pokemonbattle.backend.service.BattleJobNotFoundException;
 import hu.dlaszlo.pokemonbattle.backend.service.BattleNotFoundException;
 import hu.dlaszlo.pokemonbattle.backend.service.BattleService;
+import hu.dlaszlo.pokemonbattle.backend.service.InvalidBattleRequestException;
 import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleOdds;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleJob;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattlePage;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonStats;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Tournament;
+import hu.dlaszlo.pokemonbattle.backend.service.job.BattleCreationJobs;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.SequenceWriter;
+import tools.jackson.databind.SerializationFeature;
+import tools.jackson.databind.json.JsonMapper;
 
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
 
 /**
  * REST controller exposing endpoints for Pokemon battles.
@@ -17,19 +45,115 @@ import java.util.List;
 @RequestMapping("/api/battles")
 public class BattleController {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
     private final BattleService battleService;
 
+    private final BattleCreationJobs battleCreationJobs;
+
+    private final ObjectWriter battleWriter;
+
+    private final BattleNdjsonWriter ndjsonWriter;
+
+    private final BattleStreamPublisher streamPublisher;
+
+    private final IdempotencyKeyStore idempotencyKeys;
+
+    private final PokeApiBulkhead pokeApiBulkhead;
+
     @Autowired
-    public BattleController(BattleService battleService) {
+    public BattleController(BattleService battleService, BattleCreationJobs battleCreationJobs,
+                            BattleStreamPublisher streamPublisher, IdempotencyKeyStore idempotencyKeys,
+                            PokeApiBulkhead pokeApiBulkhead, JsonMapper jsonMapper) {
         this.battleService = battleService;
+        this.battleCreationJobs = battleCreationJobs;
+        this.streamPublisher = streamPublisher;
+        this.idempotencyKeys = idempotencyKeys;
+        this.pokeApiBulkhead = pokeApiBulkhead;
+        this.battleWriter = jsonMapper.writerFor(Battle.class)
+                .without(StreamWriteFeature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.ndjsonWriter = new BattleNdjsonWriter(jsonMapper);
     }
 
     /**
      * Creates a new battle with two random Pokemon.
+     * <p>
+     * With {@code async=true} the battle is created in the background: the response is {@code 202 Accepted}
+     * with the queued job, and the battle can be polled from the job's location.
+     * <p>
+     * Like every POST endpoint, it accepts an {@code Idempotency-Key} header: a retry with the same key
+     * returns the original result instead of creating another battle.
+     * <p>
+     * The endpoints that call PokeAPI on the request thread go through the PokeAPI bulkhead, and are rejected
+     * with {@code 503 Service Unavailable} when it is full.
      */
     @PostMapping("/random")
-    public Battle createRandomBattle() {
-        return battleService.createRandomBattle();
+    public ResponseEntity<?> createRandomBattle(
+            @RequestParam(name = "async", defaultValue = "false") boolean async,
+            @RequestHeader(name = IdempotencyKeyStore.HEADER, required = false) String idempotencyKey) {
+        return idempotent(idempotencyKey, "random?async=" + async, () -> {
+            if (!async) {
+                return ResponseEntity.ok(pokeApiBulkhead.execute(battleService::createRandomBattle));
+            }
+            BattleJob job = battleCreationJobs.submit();
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/battles/jobs/" + job.id()))
+                    .body(job);
+        }, response -> 1);
+    }
+
+    /**
+     * Returns the state of an asynchronous battle creation job, including the battle once it is created.
+     */
+    @GetMapping("/jobs/{id}")
+    public BattleJob getBattleJob(@PathVariable("id") Long id) {
+        return battleCreationJobs.get(id);
+    }
+
+    /**
+     * Creates {@code count} battles with random Pokemon in one request.
+     * The battles are written to the response one by one as a JSON array, so large batches are not buffered
+     * as a whole.
+     */
+    @PostMapping("/random/batch")
+    public ResponseEntity<StreamingResponseBody> createRandomBattles(
+            @RequestParam("count") int count,
+            @RequestHeader(name = IdempotencyKeyStore.HEADER, required = false) String idempotencyKey) {
+        List<Battle> battles = idempotent(idempotencyKey, "random/batch?count=" + count,
+                () -> pokeApiBulkhead.execute(() -> battleService.createRandomBattles(count)), List::size);
+        StreamingResponseBody body = out -> {
+            try (SequenceWriter writer = battleWriter.writeValuesAsArray(out)) {
+                for (Battle battle : battles) {
+                    writer.write(battle);
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Runs a single-elimination tournament between the Pokemon named in the request body, in bracket order.
+     */
+    @PostMapping("/tournament")
+    public Tournament runTournament(
+            @RequestBody List<String> names,
+            @RequestHeader(name = IdempotencyKeyStore.HEADER, required = false) String idempotencyKey) {
+        return idempotent(idempotencyKey, "tournament#" + sha256(names),
+                () -> pokeApiBulkhead.execute(() -> battleService.runTournament(names)),
+                tournament -> tournament.matches().size());
+    }
+
+    /**
+     * Runs a single-elimination tournament between {@code size} random Pokemon.
+     */
+    @PostMapping("/tournament/random")
+    public Tournament runRandomTournament(
+            @RequestParam("size") int size,
+            @RequestHeader(name = IdempotencyKeyStore.HEADER, required = false) String idempotencyKey) {
+        return idempotent(idempotencyKey, "tournament/random?size=" + size,
+                () -> pokeApiBulkhead.execute(() -> battleService.runRandomTournament(size)),
+                tournament -> tournament.matches().size());
     }
 
     /**
@@ -37,17 +161,159 @@ public class BattleController {
      * (including the winner information).
      */
     @PostMapping("/{id}/simulate")
-    public Battle simulateBattle(@PathVariable("id") Long id) {
-        return battleService.simulateBattle(id);
+    public Battle simulateBattle(
+            @PathVariable("id") Long id,
+            @RequestHeader(name = IdempotencyKeyStore.HEADER, required = false) String idempotencyKey) {
+        return idempotent(idempotencyKey, id + "/simulate", () -> battleService.simulateBattle(id), battle -> 1);
+    }
+
+    /**
+     * Estimates the win and draw probabilities of a battle by simulating its matchup
+     * {@code rounds} times (max 10 million), without changing the battle.
+     */
+    @GetMapping("/{id}/odds")
+    public BattleOdds battleOdds(@PathVariable("id") Long id,
+                                 @RequestParam(name = "rounds", defaultValue = "100000") int rounds) {
+        return battleService.battleOdds(id, rounds);
     }
 
     /**
      * Returns the latest battles (max 20), optionally filtered by Pokemon name.
      * If query is null or empty, all battles are returned (limited to 20).
+     * <p>
+     * If any of {@code before}, {@code after} or {@code limit} is given, a {@link BattlePage} is returned
+     * instead of a plain list, with the cursor to request the next page in the same direction.
      */
     @GetMapping
-    public List<Battle> listBattles(@RequestParam(name = "q", required = false) String query) {
-        return battleService.searchBattles(query);
+    public ResponseEntity<?> listBattles(@RequestParam(name = "q", required = false) String query,
+                                         @RequestParam(name = "before", required = false) Long before,
+                                         @RequestParam(name = "after", required = false) Long after,
+                                         @RequestParam(name = "limit", required = false) Integer limit) {
+        if (before == null && after == null && limit == null) {
+            return ResponseEntity.ok(battleService.searchBattles(query));
+        }
+        return ResponseEntity.ok(battleService.searchBattles(query, before, after,
+                limit == null ? DEFAULT_PAGE_SIZE : limit));
+    }
+
+    /**
+     * Streams every finished battle as newline-delimited JSON, from the oldest to the newest, optionally filtered
+     * by Pokemon name and by finish time ({@code from} inclusive, {@code to} exclusive, ISO-8601 instants).
+     * The response is gzip-compressed if the client accepts it.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportBattles(
+            @RequestParam(name = "q", required = false) String query,
+            @RequestParam(name = "from", required = false) Instant from,
+            @RequestParam(name = "to", required = false) Instant to,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        Stream<Battle> battles = battleService.exportBattles(query, from, to);
+        boolean gzip = acceptsGzip(acceptEncoding);
+        StreamingResponseBody body = out -> {
+            try (battles) {
+                if (gzip) {
+                    ndjsonWriter.writeGzip(battles, out);
+                } else {
+                    ndjsonWriter.write(battles, out);
+                }
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    /**
+     * Sends every battle finished from now on as a Server-Sent Event named {@code battle}, optionally filtered
+     * by Pokemon name. A client that cannot keep up is disconnected; it can reconnect and catch up from
+     * {@code GET /api/battles}.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamBattles(@RequestParam(name = "q", required = false) String query) {
+        return streamPublisher.subscribe(query);
+    }
+
+    /**
+     * Returns the Pokemon with the most wins (max 1000), with their losses, draws and average power.
+     */
+    @GetMapping("/leaderboard")
+    public List<PokemonStats> leaderboard(@RequestParam(name = "limit", defaultValue = "10") int limit) {
+        return battleService.leaderboard(limit);
+    }
+
+    /**
+     * Returns the wins, losses, draws and average power of one Pokemon.
+     */
+    @GetMapping("/stats/{name}")
+    public PokemonStats pokemonStats(@PathVariable("name") String name) {
+        return battleService.pokemonStats(name);
+    }
+
+    /**
+     * Runs the action through the idempotency key store if the client sent a key.
+     *
+     * @param fingerprint the endpoint and the parameters the result depends on
+     * @param weigher the number of battles held by the result
+     */
+    private <T> T idempotent(String idempotencyKey, String fingerprint, Supplier<T> action,
+                             ToIntFunction<? super T> weigher) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        return idempotencyKeys.execute(idempotencyKey, fingerprint, action, weigher);
+    }
+
+    /**
+     * @return the hex SHA-256 of the names, each one prefixed with its length, so different lists never share
+     * a fingerprint while a key holds only a fixed-size digest of a large tournament
+     */
+    private static String sha256(List<String> names) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        for (String name : names) {
+            byte[] encoded = name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+            digest.update(length.clear().putInt(name == null ? -1 : encoded.length).flip());
+            digest.update(encoded);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @return whether the client accepts gzip with a non-zero quality; an unparsable quality counts as zero,
+     * since the uncompressed response is always acceptable
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) {
+                continue;
+            }
+            double quality = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            return quality > 0;
+        }
+        return false;
     }
 
     /**
@@ -57,4 +323,48 @@ public class BattleController {
     public ResponseEntity<String> handleBattleNotFound(BattleNotFoundException ex) {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
     }
+
+    /**
+     * Maps BattleJobNotFoundException to HTTP 404.
+     */
+    @ExceptionHandler(BattleJobNotFoundException.class)
+    public ResponseEntity<String> handleBattleJobNotFound(BattleJobNotFoundException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
+    }
+
+    /**
+     * Maps IdempotencyKeyReusedException (the key was first sent with another request) to HTTP 422.
+     */
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<String> handleIdempotencyKeyReused(IdempotencyKeyReusedException ex) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_CONTENT).body(ex.getMessage());
+    }
+
+    /**
+     * Maps PokeApiBulkheadFullException (too many requests waiting for PokeAPI) to HTTP 503.
+     */
+    @ExceptionHandler(PokeApiBulkheadFullException.class)
+    public ResponseEntity<String> handlePokeApiBulkheadFull(PokeApiBulkheadFullException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())))
+                .body(ex.getMessage());
+    }
+
+    /**
+     * Maps RejectedExecutionException (every battle creation worker busy and the queue full) to HTTP 503.
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> handleRejectedExecution(RejectedExecutionException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("Too many battles are being created, try again later.");
+    }
+
+    /**
+     * Maps InvalidBattleRequestException (invalid request parameters) to HTTP 400.
+     */
+    @ExceptionHandler(InvalidBattleRequestException.class)
+    public ResponseEntity<String> handleInvalidBattleRequest(InvalidBattleRequestException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+package hu.dlaszlo.pokemonbattle.backend.controller;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.SequenceWriter;
+import tools.jackson.databind.SerializationFeature;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes battles as newline-delimited JSON, one battle object per line.
+ * <p>
+ * All battles go through one Jackson generator, which encodes straight into its own buffer and only writes
+ * to the target when the buffer is full, so the memory used does not depend on the number of battles.
+ * The target is never closed, so the caller can finish a wrapping stream (e.g. gzip) itself.
+ */
+public class BattleNdjsonWriter {
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final ObjectWriter writer;
+
+    public BattleNdjsonWriter(JsonMapper jsonMapper) {
+        this.writer = jsonMapper.writerFor(Battle.class)
+                .without(StreamWriteFeature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n");
+    }
+
+    /**
+     * Writes the battles gzip-compressed. Compression favours speed over ratio, since the export is bound by
+     * the deflater on a single core, and JSON compresses well even at the lowest level.
+     *
+     * @param battles the battles to write, consumed in order
+     * @param out the target stream, left open
+     * @return the number of battles written
+     */
+    public long writeGzip(Stream<Battle> battles, OutputStream out) throws IOException {
+        FastGzipOutputStream gzipOut = new FastGzipOutputStream(out);
+        try {
+            long count = write(battles, gzipOut);
+            gzipOut.finish();
+            return count;
+        } finally {
+            gzipOut.end();
+        }
+    }
+
+    /**
+     * @param battles the battles to write, consumed in order
+     * @param out the target stream, left open
+     * @return the number of battles written
+     */
+    public long write(Stream<Battle> battles, OutputStream out) throws IOException {
+        long count = 0;
+        try (SequenceWriter sequence = writer.writeValues(out)) {
+            Iterator<Battle> iterator = battles.iterator();
+            while (iterator.hasNext()) {
+                sequence.write(iterator.next());
+                count++;
+            }
+        }
+        if (count > 0) {
+            out.write('\n');
+        }
+        return count;
+    }
+
+    /**
+     * Gzip stream at {@link Deflater#BEST_SPEED} that can release its deflater without closing the target.
+     */
+    private static final class FastGzipOutputStream extends GZIPOutputStream {
+
+        FastGzipOutputStream(OutputStream out) throws IOException {
+            super(out, GZIP_BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+
+        /**
+         * Frees the native memory of the deflater; {@link #finish()} leaves it allocated until garbage collection.
+         */
+        void end() {
+            def.end();
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package hu.dlaszlo.pokemonbattle.backend.controller;
+
+import hu.dlaszlo.pokemonbattle.backend.service.BattleService;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Strings;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fans finished battles out to the Server-Sent Events subscribers of {@code GET /api/battles/stream}.
+ * <p>
+ * Every finished battle is handed to a single publisher thread, which serializes it once and offers the
+ * same encoded event to the bounded buffer of every subscriber whose filter matches. A pool of sender threads
+ * drains the buffers into the connections. A subscriber whose buffer is full is dropped instead of being
+ * waited for, so a slow client never slows down the publisher, the other subscribers or the battles themselves.
+ * <p>
+ * Writing into a connection blocks while the client does not read. A watchdog drops a subscriber whose write takes
+ * longer than the write timeout and starts a replacement sender thread, up to {@code max_sender_threads}, so a few
+ * stalled connections do not hold up the sender pool; the stalled thread completes the connection and leaves
+ * the pool once its write returns. Past the cap, a stalled subscriber is dropped without a replacement.
+ * Dropped clients can reconnect and catch up from {@code GET /api/battles}.
+ */
+@Slf4j
+@Component
+public class BattleStreamPublisher implements MeterBinder, DisposableBean {
+
+    private static final String EVENT_NAME = "battle";
+    private static final long IDLE = 0;
+    private static final long REPLACED = Long.MIN_VALUE;
+    private static final long TIMED_OUT = Long.MIN_VALUE + 1;
+
+    private final ObjectWriter battleWriter;
+    private final int bufferSize;
+    private final long timeoutMillis;
+    private final long writeTimeoutNanos;
+    private final int maxSenderThreads;
+    private final ThreadPoolExecutor publisher;
+    private final ThreadPoolExecutor senders;
+    private final ScheduledExecutorService watchdog;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder discardedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+
+    @Autowired
+    public BattleStreamPublisher(BattleService battleService,
+                                 JsonMapper jsonMapper,
+                                 @Value("${battle.stream.buffer_size}") int bufferSize,
+                                 @Value("${battle.stream.publish_queue_size}") int publishQueueSize,
+                                 @Value("${battle.stream.sender_threads}") int senderThreads,
+                                 @Value("${battle.stream.max_sender_threads}") int maxSenderThreads,
+                                 @Value("${battle.stream.timeout}") Duration timeout,
+                                 @Value("${battle.stream.write_timeout}") Duration writeTimeout) {
+        if (bufferSize < 1 || publishQueueSize < 1 || senderThreads < 1 || maxSenderThreads < senderThreads
+                || timeout.isNegative() || writeTimeout.isNegative() || writeTimeout.isZero()) {
+            throw new IllegalArgumentException("Invalid battle stream settings, bufferSize: " + bufferSize
+                    + ", publishQueueSize: " + publishQueueSize + ", senderThreads: " + senderThreads
+                    + ", maxSenderThreads: " + maxSenderThreads + ", timeout: " + timeout
+                    + ", writeTimeout: " + writeTimeout);
+        }
+        this.battleWriter = jsonMapper.writerFor(Battle.class);
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeout.toMillis();
+        this.writeTimeoutNanos = writeTimeout.toNanos();
+        this.maxSenderThreads = maxSenderThreads;
+
+        CustomizableThreadFactory publisherThreadFactory = new CustomizableThreadFactory("battle-stream-publisher-");
+        publisherThreadFactory.setDaemon(true);
+        this.publisher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(publishQueueSize), publisherThreadFactory,
+                (task, executor) -> discardedCount.increment());
+        CustomizableThreadFactory senderThreadFactory = new CustomizableThreadFactory("battle-stream-sender-");
+        senderThreadFactory.setDaemon(true);
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), senderThreadFactory);
+        CustomizableThreadFactory watchdogThreadFactory = new CustomizableThreadFactory("battle-stream-watchdog-");
+        watchdogThreadFactory.setDaemon(true);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(watchdogThreadFactory);
+        long checkIntervalMillis = Math.max(writeTimeout.toMillis() / 4, 1);
+        watchdog.scheduleWithFixedDelay(this::dropStalledSubscribers, checkIntervalMillis, checkIntervalMillis,
+                TimeUnit.MILLISECONDS);
+
+        battleService.addFinishedBattleListener(this::publish);
+    }
+
+    @Override
+    public void destroy() {
+        publisher.shutdownNow();
+        watchdog.shutdownNow();
+        senders.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    /**
+     * @param query optional name substring; only battles with a Pokemon whose name contains it are sent
+     * @return a new emitter that receives every matching battle finished from now on
+     */
+    public SseEmitter subscribe(String query) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        subscribe(emitter, query);
+        return emitter;
+    }
+
+    /**
+     * Registers an emitter created by the caller.
+     *
+     * @param emitter the emitter to send the matching battles to
+     * @param query optional name substring; only battles with a Pokemon whose name contains it are sent
+     */
+    public void subscribe(SseEmitter emitter, String query) {
+        Subscriber subscriber = new Subscriber(emitter, StringUtils.trimToNull(query));
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Queues a finished battle for the subscribers. Never blocks: if the publisher is too far behind,
+     * the battle is discarded.
+     */
+    public void publish(Battle battle) {
+        publisher.execute(() -> fanOut(battle));
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    public long getDiscardedCount() {
+        return discardedCount.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * @return the number of sender threads, including the ones stalled in a write
+     */
+    public int getSenderThreadCount() {
+        return senders.getPoolSize();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("battles.stream.subscribers", this, BattleStreamPublisher::getSubscriberCount)
+                .description("Number of battle stream subscribers")
+                .register(registry);
+        FunctionCounter.builder("battles.stream.published", this, BattleStreamPublisher::getPublishedCount)
+                .description("Number of finished battles fanned out to the subscribers")
+                .register(registry);
+        FunctionCounter.builder("battles.stream.discarded", this, BattleStreamPublisher::getDiscardedCount)
+                .description("Number of finished battles discarded because the publisher was too far behind")
+                .register(registry);
+        FunctionCounter.builder("battles.stream.dropped", this, BattleStreamPublisher::getDroppedCount)
+                .description("Number of subscribers dropped because their buffer was full or a write timed out")
+                .register(registry);
+        Gauge.builder("battles.stream.senders", this, BattleStreamPublisher::getSenderThreadCount)
+                .description("Number of sender threads, including the ones stalled in a write")
+                .register(registry);
+    }
+
+    private void fanOut(Battle battle) {
+        Set<DataWithMediaType> event = SseEmitter.event()
+                .id(String.valueOf(battle.id()))
+                .name(EVENT_NAME)
+                .data(battleWriter.writeValueAsBytes(battle), MediaType.APPLICATION_JSON)
+                .build();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.matches(battle)) {
+                subscriber.offer(event);
+            }
+        }
+        publishedCount.increment();
+    }
+
+    private void dropStalledSubscribers() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.dropIfStalled(now);
+        }
+    }
+
+    /**
+     * Adds a sender thread in place of one that is stalled in a write, unless the pool is at its maximum.
+     *
+     * @return {@code true} if a sender thread has been added
+     */
+    private synchronized boolean tryAddSender() {
+        if (senders.getMaximumPoolSize() >= maxSenderThreads) {
+            return false;
+        }
+        senders.setMaximumPoolSize(senders.getMaximumPoolSize() + 1);
+        senders.setCorePoolSize(senders.getCorePoolSize() + 1);
+        return true;
+    }
+
+    /**
+     * Removes the sender thread added in place of a stalled one, once the stalled write has returned.
+     */
+    private synchronized void removeSender() {
+        senders.setCorePoolSize(senders.getCorePoolSize() - 1);
+        senders.setMaximumPoolSize(senders.getMaximumPoolSize() - 1);
+    }
+
+    private final class Subscriber implements Runnable {
+
+        private final SseEmitter emitter;
+        private final String query;
+        private final BlockingQueue<Set<DataWithMediaType>> buffer;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        /**
+         * Start of the write in progress, {@code IDLE}, or {@code REPLACED} / {@code TIMED_OUT} once the watchdog
+         * dropped the subscriber with / without starting a replacement sender.
+         */
+        private final AtomicLong writeStartedAt = new AtomicLong(IDLE);
+        private volatile boolean closed;
+
+        Subscriber(SseEmitter emitter, String query) {
+            this.emitter = emitter;
+            this.query = query;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        boolean matches(Battle battle) {
+            return query == null
+                    || Strings.CI.contains(battle.first().name(), query)
+                    || Strings.CI.contains(battle.second().name(), query);
+        }
+
+        void offer(Set<DataWithMediaType> event) {
+            if (!buffer.offer(event)) {
+                drop();
+                return;
+            }
+            schedule();
+        }
+
+        /**
+         * Drains the buffer into the connection on a sender thread; at most one drain runs at a time.
+         * The drain of a dropped subscriber completes its connection, after the send in progress if there is one.
+         */
+        @Override
+        public void run() {
+            try {
+                Set<DataWithMediaType> event;
+                while (!closed && (event = buffer.poll()) != null) {
+                    send(event);
+                }
+                if (closed && completed.compareAndSet(false, true)) {
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Battle stream subscriber disconnected: {}", e.getMessage());
+                closed = true;
+                completed.set(true);
+                subscribers.remove(this);
+            } finally {
+                scheduled.set(false);
+            }
+            if (closed ? !completed.get() : !buffer.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private void send(Set<DataWithMediaType> event) throws IOException {
+            long startedAt = System.nanoTime();
+            while (!isWriting(startedAt)) {
+                startedAt++;
+            }
+            writeStartedAt.set(startedAt);
+            try {
+                emitter.send(event);
+            } finally {
+                if (!writeStartedAt.compareAndSet(startedAt, IDLE) && writeStartedAt.get() == REPLACED) {
+                    // the watchdog has dropped the subscriber and started a replacement, this thread leaves the pool
+                    removeSender();
+                }
+            }
+        }
+
+        /**
+         * Drops the subscriber if its write in progress has exceeded the write timeout, and starts a replacement
+         * sender if the pool is not at its maximum, since the stalled one stays blocked until the write returns.
+         */
+        void dropIfStalled(long now) {
+            long startedAt = writeStartedAt.get();
+            if (!isWriting(startedAt) || now - startedAt < writeTimeoutNanos) {
+                return;
+            }
+            boolean replaced = tryAddSender();
+            if (!writeStartedAt.compareAndSet(startedAt, replaced ? REPLACED : TIMED_OUT)) {
+                // the write has just returned
+                if (replaced) {
+                    removeSender();
+                }
+                return;
+            }
+            if (subscribers.remove(this)) {
+                // the stalled drain completes the connection once the write returns
+                closed = true;
+                buffer.clear();
+                droppedCount.increment();
+                log.debug("Battle stream subscriber dropped, write timed out");
+            }
+        }
+
+        private static boolean isWriting(long writeStartedAt) {
+            return writeStartedAt != IDLE && writeStartedAt != REPLACED && writeStartedAt != TIMED_OUT;
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        /**
+         * Removes the subscriber without waiting for it: the connection is completed by its drain on a sender
+         * thread, since completing it waits for a send in progress.
+         */
+        private void drop() {
+            if (subscribers.remove(this)) {
+                closed = true;
+                buffer.clear();
+                droppedCount.increment();
+                log.debug("Battle stream subscriber dropped, buffer full");
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package hu.dlaszlo.pokemonbattle.backend.controller;
+
+/**
+ * Exception thrown when an idempotency key is sent with a different request than the one it was first used with.
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+    public IdempotencyKeyReusedException(String key) {
+        super("Idempotency key was already used with a different request: " + key);
+    }
+}
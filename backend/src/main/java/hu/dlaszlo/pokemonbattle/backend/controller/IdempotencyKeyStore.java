@@ -0,0 +1,302 @@
+package hu.dlaszlo.pokemonbattle.backend.controller;
+
+import hu.dlaszlo.pokemonbattle.backend.service.InvalidBattleRequestException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded, expiring store of the results of requests sent with an {@code Idempotency-Key} header.
+ * <p>
+ * The first request with a key runs its action and stores the result; a retry with the same key gets the stored
+ * result without running the action again. A retry that arrives while the first request is still running waits
+ * for its result. If the action fails, the key is released, so the retry runs the action again.
+ * <p>
+ * The store is bounded both by the number of keys and by the total weight of the results (the number of battles
+ * they hold). Like {@code PendingBattleStore}, expiry and eviction are amortized: every stored result removes
+ * a bounded number of expired keys and evicts the oldest keys over the bounds, under a {@code tryLock}.
+ * The cleanup also runs after a failed action. Keys that are still running are moved to the back of the queue, and
+ * the entries of released or replaced keys are dropped as they reach the head. The whole queue is swept once it
+ * holds more than twice as many entries as there are keys, so failed requests never accumulate in it.
+ */
+@Slf4j
+@Component
+public class IdempotencyKeyStore implements MeterBinder {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final int MAX_EXPIRATIONS_PER_CLEANUP = 16;
+    private static final int MAX_REQUEUES_PER_CLEANUP = 16;
+
+    private final Duration ttl;
+    private final int maxSize;
+    private final long maxWeight;
+    private final Clock clock;
+
+    private final Map<String, Entry> entryByKey = new ConcurrentHashMap<>();
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final ReentrantLock cleanupLock = new ReentrantLock();
+    private final AtomicLong weight = new AtomicLong();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+
+    @Autowired
+    public IdempotencyKeyStore(@Value("${battle.idempotency.ttl}") Duration ttl,
+                               @Value("${battle.idempotency.max_size}") int maxSize,
+                               @Value("${battle.idempotency.max_weight}") long maxWeight) {
+        this(ttl, maxSize, maxWeight, Clock.systemUTC());
+    }
+
+    public IdempotencyKeyStore(Duration ttl, int maxSize, long maxWeight, Clock clock) {
+        if (ttl.isNegative() || ttl.isZero() || maxSize < 1 || maxWeight < 1) {
+            throw new IllegalArgumentException("Invalid idempotency key store settings, ttl: " + ttl
+                    + ", maxSize: " + maxSize + ", maxWeight: " + maxWeight);
+        }
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+        this.clock = clock;
+    }
+
+    /**
+     * Runs the action once per key, and returns its stored result to every later request with the same key.
+     *
+     * @param key the idempotency key sent by the client
+     * @param fingerprint identifies the request the key was first used with, e.g. its endpoint and parameters
+     * @param action the action to run if the key is new
+     * @param weigher the weight of the result, counted against the maximum weight of the store
+     * @return the result of the action, either just computed or stored
+     * @throws InvalidBattleRequestException if the key is blank or too long
+     * @throws IdempotencyKeyReusedException if the key was first used with a different request
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, String fingerprint, Supplier<T> action, ToIntFunction<? super T> weigher) {
+        if (key == null || key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidBattleRequestException(HEADER + " must be 1 - " + MAX_KEY_LENGTH + " characters long.");
+        }
+        Objects.requireNonNull(fingerprint, "fingerprint must not be null");
+        Entry entry = new Entry(key, fingerprint, clock.instant());
+        Entry existing = claim(entry);
+        if (existing != null) {
+            if (!existing.fingerprint.equals(fingerprint)) {
+                throw new IdempotencyKeyReusedException(key);
+            }
+            hitCount.increment();
+            return (T) await(existing);
+        }
+
+        missCount.increment();
+        insertionOrder.offer(entry);
+        queueSize.incrementAndGet();
+        try {
+            T result = action.get();
+            entry.weight = weigher.applyAsInt(result);
+            weight.addAndGet(entry.weight);
+            entry.result.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            entryByKey.remove(key, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            cleanUp();
+        }
+    }
+
+    public int size() {
+        return entryByKey.size();
+    }
+
+    /**
+     * @return the number of entries in the insertion-order queue, including the ones of released keys
+     * that have not been dropped yet
+     */
+    public int queueSize() {
+        return queueSize.get();
+    }
+
+    public long getWeight() {
+        return weight.get();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("battles.idempotency.size", this, IdempotencyKeyStore::size)
+                .description("Number of stored idempotency keys")
+                .register(registry);
+        Gauge.builder("battles.idempotency.weight", this, IdempotencyKeyStore::getWeight)
+                .description("Number of battles held by the stored results")
+                .register(registry);
+        FunctionCounter.builder("battles.idempotency.hits", this, IdempotencyKeyStore::getHitCount)
+                .description("Number of requests answered with a stored result")
+                .register(registry);
+        FunctionCounter.builder("battles.idempotency.misses", this, IdempotencyKeyStore::getMissCount)
+                .description("Number of requests with a new idempotency key")
+                .register(registry);
+        FunctionCounter.builder("battles.idempotency.expired", this, IdempotencyKeyStore::getExpiredCount)
+                .description("Number of idempotency keys removed after their TTL elapsed")
+                .register(registry);
+        FunctionCounter.builder("battles.idempotency.evicted", this, IdempotencyKeyStore::getEvictedCount)
+                .description("Number of idempotency keys evicted because the store was full")
+                .register(registry);
+    }
+
+    /**
+     * Stores the new entry unless a live entry exists for its key; an expired entry is replaced.
+     *
+     * @return the live entry of the key, or {@code null} if the new entry has been stored
+     */
+    private Entry claim(Entry entry) {
+        while (true) {
+            Entry existing = entryByKey.putIfAbsent(entry.key, entry);
+            if (existing == null) {
+                return null;
+            }
+            if (!isExpired(existing, entry.createdAt)) {
+                return existing;
+            }
+            if (entryByKey.replace(entry.key, existing, entry)) {
+                weight.addAndGet(-existing.weight);
+                expiredCount.increment();
+                return null;
+            }
+        }
+    }
+
+    private static Object await(Entry entry) {
+        try {
+            return entry.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void cleanUp() {
+        if (!cleanupLock.tryLock()) {
+            return;
+        }
+        try {
+            Instant now = clock.instant();
+            int expirations = 0;
+            int requeues = 0;
+            Entry head;
+            while ((head = insertionOrder.peek()) != null) {
+                if (entryByKey.get(head.key) != head) {
+                    insertionOrder.poll();
+                    queueSize.decrementAndGet();
+                    continue;
+                }
+                if (!head.result.isDone()) {
+                    if (requeues >= MAX_REQUEUES_PER_CLEANUP) {
+                        break;
+                    }
+                    insertionOrder.poll();
+                    insertionOrder.offer(head);
+                    requeues++;
+                    continue;
+                }
+                boolean overflow = entryByKey.size() > maxSize || weight.get() > maxWeight;
+                if (!overflow && (expirations >= MAX_EXPIRATIONS_PER_CLEANUP || !isExpired(head, now))) {
+                    break;
+                }
+                insertionOrder.poll();
+                queueSize.decrementAndGet();
+                if (!entryByKey.remove(head.key, head)) {
+                    continue;
+                }
+                weight.addAndGet(-head.weight);
+                if (overflow) {
+                    evictedCount.increment();
+                    log.debug("Idempotency key evicted: {}", head.key);
+                } else {
+                    expirations++;
+                    expiredCount.increment();
+                }
+            }
+            if (queueSize.get() > 2 * entryByKey.size() + MAX_EXPIRATIONS_PER_CLEANUP) {
+                insertionOrder.removeIf(entry -> {
+                    boolean stale = entryByKey.get(entry.key) != entry;
+                    if (stale) {
+                        queueSize.decrementAndGet();
+                    }
+                    return stale;
+                });
+            }
+        } finally {
+            cleanupLock.unlock();
+        }
+    }
+
+    /**
+     * A key whose action is still running never expires.
+     */
+    private boolean isExpired(Entry entry, Instant now) {
+        return entry.result.isDone() && !entry.createdAt.plus(ttl).isAfter(now);
+    }
+
+    private static final class Entry {
+
+        private final String key;
+        private final String fingerprint;
+        private final Instant createdAt;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        /**
+         * Set before the result is completed, so it is visible to every thread that sees the entry as done.
+         */
+        private volatile int weight;
+
+        Entry(String key, String fingerprint, Instant createdAt) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package hu.dlaszlo.pokemonbattle.backend.controller;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Admission control for the requests that may call PokeAPI.
+ * <p>
+ * At most {@code concurrency} such requests run at the same time, and at most {@code queueSize} more wait
+ * for a slot, each for at most {@code queueTimeout}. Every other request is rejected at once with
+ * {@link PokeApiBulkheadFullException}. A PokeAPI slowdown can therefore hold at most
+ * {@code concurrency + queueSize} servlet threads, and the rest stay free for the endpoints that only read
+ * local state, such as the battle history.
+ */
+@Slf4j
+@Component
+public class PokeApiBulkhead implements MeterBinder {
+
+    private final int concurrency;
+    private final int queueSize;
+    private final long queueTimeoutNanos;
+    private final Duration retryAfter;
+
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    @Autowired
+    public PokeApiBulkhead(@Value("${pokeapi.bulkhead.concurrency}") int concurrency,
+                           @Value("${pokeapi.bulkhead.queue_size}") int queueSize,
+                           @Value("${pokeapi.bulkhead.queue_timeout}") Duration queueTimeout,
+                           @Value("${pokeapi.bulkhead.retry_after}") Duration retryAfter) {
+        if (concurrency < 1 || queueSize < 0 || queueTimeout.isNegative() || retryAfter.isNegative()) {
+            throw new IllegalArgumentException("Invalid PokeAPI bulkhead settings, concurrency: " + concurrency
+                    + ", queueSize: " + queueSize + ", queueTimeout: " + queueTimeout + ", retryAfter: " + retryAfter);
+        }
+        this.concurrency = concurrency;
+        this.queueSize = queueSize;
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+        this.retryAfter = retryAfter;
+        this.permits = new Semaphore(concurrency, true);
+    }
+
+    /**
+     * Runs the action once a slot is free.
+     *
+     * @return the result of the action
+     * @throws PokeApiBulkheadFullException if every slot is taken and the queue is full,
+     *                                      or no slot became free within the queue timeout
+     */
+    public <T> T execute(Supplier<T> action) {
+        acquire();
+        try {
+            return action.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int getActiveCount() {
+        return concurrency - permits.availablePermits();
+    }
+
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("pokeapi.bulkhead.active", this, PokeApiBulkhead::getActiveCount)
+                .description("Number of PokeAPI-dependent requests being served")
+                .register(registry);
+        Gauge.builder("pokeapi.bulkhead.queued", this, PokeApiBulkhead::getQueuedCount)
+                .description("Number of PokeAPI-dependent requests waiting for a slot")
+                .register(registry);
+        Gauge.builder("pokeapi.bulkhead.concurrency", this, bulkhead -> bulkhead.concurrency)
+                .description("Max. number of PokeAPI-dependent requests served at the same time")
+                .register(registry);
+        Gauge.builder("pokeapi.bulkhead.queue_size", this, bulkhead -> bulkhead.queueSize)
+                .description("Max. number of PokeAPI-dependent requests waiting for a slot")
+                .register(registry);
+        FunctionCounter.builder("pokeapi.bulkhead.rejected", this, PokeApiBulkhead::getRejectedCount)
+                .description("Number of PokeAPI-dependent requests rejected because the bulkhead was full")
+                .register(registry);
+    }
+
+    private void acquire() {
+        if (permits.tryAcquire()) {
+            return;
+        }
+        if (queued.incrementAndGet() > queueSize) {
+            queued.decrementAndGet();
+            throw reject();
+        }
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        } finally {
+            queued.decrementAndGet();
+        }
+        if (!acquired) {
+            throw reject();
+        }
+    }
+
+    private PokeApiBulkheadFullException reject() {
+        rejectedCount.increment();
+        log.debug("PokeAPI-dependent request rejected, active: {}, queued: {}", getActiveCount(), getQueuedCount());
+        return new PokeApiBulkheadFullException(retryAfter);
+    }
+}
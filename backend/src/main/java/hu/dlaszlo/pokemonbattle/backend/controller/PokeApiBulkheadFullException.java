@@ -0,0 +1,23 @@
+package hu.dlaszlo.pokemonbattle.backend.controller;
+
+import java.time.Duration;
+
+/**
+ * Exception thrown when a PokeAPI-dependent request is rejected because the bulkhead is full.
+ */
+public class PokeApiBulkheadFullException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public PokeApiBulkheadFullException(Duration retryAfter) {
+        super("Too many requests are waiting for PokeAPI, try again later.");
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return how long the client should wait before retrying
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -2,7 +2,11 @@ package hu.dlaszlo.pokemonbattle.backend.pokeapi;
 
 import hu.dlaszlo.pokemonbattle.backend.pokeapi.dto.Pokemon;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * High-level services for interacting with processed Pokemon data
@@ -21,4 +25,39 @@ public interface PokeApi {
      */
     Pokemon getPokemon(String name);
 
+    /**
+     * Fetches the details of several Pokemon; implementations may fetch them concurrently.
+     *
+     * @param names The names of the Pokemon, each one is fetched once
+     * @return Pokemon details by name
+     */
+    default Map<String, Pokemon> getPokemons(Collection<String> names) {
+        Map<String, Pokemon> pokemonByName = new HashMap<>();
+        for (String name : names) {
+            pokemonByName.computeIfAbsent(name, this::getPokemon);
+        }
+        return pokemonByName;
+    }
+
+    /**
+     * Fetches the details of several Pokemon within a timeout shared by all of them; implementations may fetch
+     * them concurrently, and cancel the remaining fetches once one fails or the timeout elapses.
+     *
+     * @param names   The names of the Pokemon, each one is fetched once
+     * @param timeout The time allowed for fetching all of them
+     * @return Pokemon details by name
+     * @throws PokeApiException if any of them cannot be fetched, or the timeout elapses
+     */
+    default Map<String, Pokemon> getPokemons(Collection<String> names, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Map<String, Pokemon> pokemonByName = new HashMap<>();
+        for (String name : names) {
+            if (System.nanoTime() - deadline >= 0) {
+                throw new PokeApiException("PokeAPI call timed out after " + timeout.toMillis() + " ms");
+            }
+            pokemonByName.computeIfAbsent(name, this::getPokemon);
+        }
+        return pokemonByName;
+    }
+
 }
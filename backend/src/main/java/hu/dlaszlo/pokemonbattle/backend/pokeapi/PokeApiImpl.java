@@ -5,70 +5,226 @@ import hu.dlaszlo.pokemonbattle.backend.restclient.PokeApiRestClient;
 import hu.dlaszlo.pokemonbattle.backend.restclient.dto.*;
 import io.micrometer.common.util.StringUtils;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClientResponseException;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
-public class PokeApiImpl implements PokeApi {
+public class PokeApiImpl implements PokeApi, DisposableBean {
 
     private final PokeApiRestClient pokeApiRestClient;
 
+    private final PokemonCatalog catalog;
+
+    private final PokemonSnapshot snapshot;
+
     private final String fallbackSprite;
 
+    private final int fetchConcurrency;
+
+    private final ThreadPoolExecutor fetchExecutor;
+
+    private final ThreadPoolExecutor timedFetchExecutor;
+
+    public PokeApiImpl(String fallbackSprite, int fetchConcurrency, PokeApiRestClient pokeApiRestClient,
+                       PokemonCatalog catalog) {
+        this(fallbackSprite, fetchConcurrency, pokeApiRestClient, catalog, PokemonSnapshot.disabled());
+    }
+
+    public PokeApiImpl(String fallbackSprite, int fetchConcurrency, PokeApiRestClient pokeApiRestClient,
+                       PokemonCatalog catalog, PokemonSnapshot snapshot) {
+        this(fallbackSprite, fetchConcurrency, fetchConcurrency, pokeApiRestClient, catalog, snapshot);
+    }
+
+    /**
+     * @param timedFetchConcurrency max. number of fetches with a deadline running at the same time, the same number
+     *                              may wait for a thread; sized to the connections of the HTTP client to PokeAPI
+     */
     @Autowired
     public PokeApiImpl(@Value("${pokeapi.fallback_sprite}") String fallbackSprite,
-                       PokeApiRestClient pokeApiRestClient) {
+                       @Value("${pokeapi.fetch_concurrency}") int fetchConcurrency,
+                       @Value("${pokeapi.http.max_connections_per_route}") int timedFetchConcurrency,
+                       PokeApiRestClient pokeApiRestClient,
+                       PokemonCatalog catalog,
+                       PokemonSnapshot snapshot) {
+        if (fetchConcurrency < 1 || timedFetchConcurrency < 1) {
+            throw new IllegalArgumentException("Invalid PokeAPI fetch settings, fetchConcurrency: " + fetchConcurrency
+                    + ", timedFetchConcurrency: " + timedFetchConcurrency);
+        }
         this.fallbackSprite = fallbackSprite;
         this.pokeApiRestClient = pokeApiRestClient;
+        this.catalog = catalog;
+        this.snapshot = snapshot;
+        this.fetchConcurrency = fetchConcurrency;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pokeapi-fetch-");
+        threadFactory.setDaemon(true);
+        this.fetchExecutor = new ThreadPoolExecutor(fetchConcurrency, fetchConcurrency, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        CustomizableThreadFactory timedThreadFactory = new CustomizableThreadFactory("pokeapi-timed-fetch-");
+        timedThreadFactory.setDaemon(true);
+        this.timedFetchExecutor = new ThreadPoolExecutor(timedFetchConcurrency, timedFetchConcurrency,
+                1, TimeUnit.MINUTES, new ArrayBlockingQueue<>(timedFetchConcurrency), timedThreadFactory);
+        timedFetchExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void destroy() {
+        fetchExecutor.shutdownNow();
+        timedFetchExecutor.shutdownNow();
     }
 
 
+    /**
+     * Served from the snapshot if it holds the name list, otherwise fetched from PokeAPI.
+     */
     @Override
     public List<String> listPokemonNames() {
+        List<String> names = snapshot.getNames();
+        return names.isEmpty() ? fetchPokemonNames() : names;
+    }
+
+    /**
+     * Served from the snapshot if it holds the Pokemon, otherwise fetched from PokeAPI.
+     */
+    @Override
+    public Pokemon getPokemon(String name) {
+        Pokemon pokemon = snapshot.get(name);
+        return pokemon != null ? catalog.canonical(pokemon) : fetchPokemon(name);
+    }
+
+    /**
+     * Refreshes the snapshot every {@code pokeapi.snapshot.refresh_interval}, starting now.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void startSnapshotRefresh() {
+        snapshot.scheduleRefresh(this::refreshSnapshot);
+    }
+
+    /**
+     * Fetches the name list and every Pokemon of the list and of the snapshot, through the PokeAPI caches,
+     * so the snapshot holds the whole catalog and random battles can be created while PokeAPI is unreachable.
+     * If the name list cannot be fetched, PokeAPI is assumed to be unreachable and the refresh stops;
+     * a Pokemon that cannot be fetched keeps its snapshot entry.
+     */
+    public void refreshSnapshot() {
+        long startTime = System.nanoTime();
+        int failed = 0;
+        try {
+            log.info("refreshSnapshot() started");
+
+            Set<String> names;
+            try {
+                names = new LinkedHashSet<>(fetchPokemonNames());
+            } catch (PokeApiException e) {
+                log.warn("refreshSnapshot() stopped, PokeAPI is unreachable, the snapshot is served as it is");
+                return;
+            }
+            names.addAll(snapshot.getPokemonNames());
+            failed = fetchEach(names);
+        } finally {
+            long endTime = System.nanoTime();
+            log.info("refreshSnapshot() ended in {} ms., failed: {}",
+                    TimeUnit.NANOSECONDS.toMillis(endTime - startTime), failed);
+        }
+    }
+
+    /**
+     * Fetches every name on the shared fetch pool, with at most {@code pokeapi.fetch_concurrency} of them
+     * submitted at a time, so the fetches of a batch submitted meanwhile do not queue behind the whole catalog.
+     *
+     * @return the number of names that could not be fetched
+     */
+    private int fetchEach(Collection<String> names) {
+        CompletionService<Pokemon> completion = new ExecutorCompletionService<>(fetchExecutor);
+        Iterator<String> remaining = names.iterator();
+        int running = 0;
+        int failed = 0;
+        try {
+            while (running > 0 || remaining.hasNext()) {
+                if (remaining.hasNext() && running < fetchConcurrency) {
+                    String name = remaining.next();
+                    completion.submit(() -> fetchPokemon(name));
+                    running++;
+                    continue;
+                }
+                try {
+                    completion.take().get();
+                } catch (ExecutionException e) {
+                    failed++;
+                }
+                running--;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return failed;
+    }
+
+    private List<String> fetchPokemonNames() {
         long startTime = System.nanoTime();
         try {
-            log.info("listPokemonNames() started");
+            log.info("fetchPokemonNames() started");
 
             PokeApiNameList response = pokeApiRestClient.getPokeApiNameList();
 
-            return Optional.ofNullable(response)
+            List<String> names = Optional.ofNullable(response)
                     .map(PokeApiNameList::results)
                     .orElse(Collections.emptyList())
                     .stream()
                     .map(PokeApiName::name)
                     .toList();
+            snapshot.putNames(names);
+            return names;
 
         } catch (RestClientResponseException e) {
-            pokeApiRestClient.clearAllCaches();
-            log.error("listPokemonNames() failed", e);
+            pokeApiRestClient.evictPokeApiNameList();
+            log.error("fetchPokemonNames() failed", e);
             throw new PokeApiException("Error occurred during PokeAPI call", e,
                     e.getResponseBodyAsString(), e.getStatusCode().value());
         } catch (Exception e) {
-            pokeApiRestClient.clearAllCaches();
-            log.error("listPokemonNames() failed", e);
+            pokeApiRestClient.evictPokeApiNameList();
+            log.error("fetchPokemonNames() failed", e);
             throw new PokeApiException("Error occurred during PokeAPI call", e);
         } finally {
             long endTime = System.nanoTime();
-            log.info("listPokemonNames() ended in {} ms.", TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+            log.info("fetchPokemonNames() ended in {} ms.", TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
         }
     }
 
-    @Override
-    public Pokemon getPokemon(String name) {
+    private Pokemon fetchPokemon(String name) {
 
         long startTime = System.nanoTime();
         try {
-            log.info("getPokemon() started");
+            log.info("fetchPokemon() started");
 
             PokeApiDetail response = pokeApiRestClient.getPokeApiDetail(name);
 
@@ -76,21 +232,110 @@ public class PokeApiImpl implements PokeApi {
                     Objects.requireNonNull(response, "response must not be null"));
             validatePokemon(pokemon);
 
-            return pokemon;
+            Pokemon canonical = catalog.canonical(pokemon);
+            snapshot.put(canonical);
+            return canonical;
         } catch (RestClientResponseException e) {
-            pokeApiRestClient.clearAllCaches();
-            log.error("getPokemon() failed", e);
+            evictPokeApiDetail(name);
+            log.error("fetchPokemon() failed", e);
             throw new PokeApiException("Error occurred during PokeAPI call", e,
                     e.getResponseBodyAsString(), e.getStatusCode().value());
         } catch (Exception e) {
-            pokeApiRestClient.clearAllCaches();
-            log.error("getPokemon() failed", e);
+            evictPokeApiDetail(name);
+            log.error("fetchPokemon() failed", e);
             throw new PokeApiException("Error occurred during PokeAPI call", e);
         } finally {
             long endTime = System.nanoTime();
-            log.info("getPokemon() ended in {} ms.", TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+            log.info("fetchPokemon() ended in {} ms.", TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+        }
+
+    }
+
+    /**
+     * Fetches the distinct names on the shared fetch pool, so at most {@code pokeapi.fetch_concurrency}
+     * details are requested at the same time across all batches and tournaments.
+     * If any of them fails, the remaining fetches are cancelled and its {@link PokeApiException} is rethrown.
+     */
+    @Override
+    public Map<String, Pokemon> getPokemons(Collection<String> names) {
+        return fetchAll(names, fetchExecutor, null);
+    }
+
+    /**
+     * Like {@link #getPokemons(Collection)}, and the remaining fetches are also cancelled when the timeout elapses.
+     * The fetches run on their own pool instead of the shared fetch pool, so a few names wanted within a deadline
+     * never queue behind the fetches of a large batch or tournament. The pool is bounded by the connections to
+     * PokeAPI, since a cancelled fetch keeps its thread until its HTTP call returns; when it is full, the call
+     * fails at once with a {@link PokeApiException}.
+     */
+    @Override
+    public Map<String, Pokemon> getPokemons(Collection<String> names, Duration timeout) {
+        return fetchAll(names, timedFetchExecutor, Objects.requireNonNull(timeout, "timeout must not be null"));
+    }
+
+    /**
+     * The Pokemon held by the snapshot are served on the calling thread, only the others are fetched.
+     * The results are taken in completion order, so the first failure cancels the other fetches at once,
+     * even if they were submitted before it.
+     */
+    private Map<String, Pokemon> fetchAll(Collection<String> names, ThreadPoolExecutor executor, Duration timeout) {
+        long startTime = System.nanoTime();
+        long deadline = timeout == null ? 0 : startTime + timeout.toNanos();
+        CompletionService<Pokemon> completion = new ExecutorCompletionService<>(executor);
+        Map<Future<Pokemon>, String> nameByFetch = new HashMap<>();
+        boolean completed = false;
+        try {
+            log.info("getPokemons() started");
+
+            Map<String, Pokemon> pokemonByName = new HashMap<>();
+            for (String name : new HashSet<>(names)) {
+                Pokemon cached = snapshot.get(name);
+                if (cached != null) {
+                    pokemonByName.put(name, catalog.canonical(cached));
+                } else {
+                    nameByFetch.put(completion.submit(() -> fetchPokemon(name)), name);
+                }
+            }
+            for (int i = 0; i < nameByFetch.size(); i++) {
+                Future<Pokemon> fetch = timeout == null
+                        ? completion.take()
+                        : completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (fetch == null) {
+                    throw new PokeApiException("PokeAPI call timed out after " + timeout.toMillis() + " ms");
+                }
+                pokemonByName.put(nameByFetch.get(fetch), fetch.get());
+            }
+            completed = true;
+            return pokemonByName;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof PokeApiException pokeApiException) {
+                throw pokeApiException;
+            }
+            throw new PokeApiException("Error occurred during PokeAPI call", e.getCause());
+        } catch (RejectedExecutionException e) {
+            throw new PokeApiException("Too many PokeAPI calls in progress", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PokeApiException("Interrupted during PokeAPI call", e);
+        } finally {
+            if (!completed) {
+                nameByFetch.keySet().forEach(fetch -> fetch.cancel(true));
+                // the cancelled fetches that have not started yet must not hold the bounded queue
+                executor.purge();
+            }
+            long endTime = System.nanoTime();
+            log.info("getPokemons() ended in {} ms.", TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
         }
+    }
 
+    /**
+     * Only the entry of the failing name is dropped, e.g. one that failed validation, so one bad name
+     * does not make every other Pokemon be fetched again.
+     */
+    private void evictPokeApiDetail(String name) {
+        if (name != null) {
+            pokeApiRestClient.evictPokeApiDetail(name);
+        }
     }
 
     private Pokemon mapPokemon(PokeApiDetail response) {
@@ -0,0 +1,45 @@
+package hu.dlaszlo.pokemonbattle.backend.pokeapi;
+
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.dto.Pokemon;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical instances of the Pokemon seen so far, keyed by PokeAPI id.
+ * Battles copy the string references of the canonical instance, so the name, types and image URL
+ * of a Pokemon exist only once in the heap, however many battles it took part in.
+ */
+@Component
+public class PokemonCatalog {
+
+    private final Map<Integer, Pokemon> pokemonById = new ConcurrentHashMap<>();
+
+    /**
+     * @param pokemon a freshly mapped Pokemon
+     * @return the catalog instance equal to the given Pokemon; the given Pokemon becomes the canonical
+     * instance if its id has not been seen yet or its data changed upstream
+     */
+    public Pokemon canonical(Pokemon pokemon) {
+        Objects.requireNonNull(pokemon.id(), "pokemon id must not be null");
+        Pokemon existing = pokemonById.get(pokemon.id());
+        if (pokemon.equals(existing)) {
+            return existing;
+        }
+        return pokemonById.compute(pokemon.id(), (id, current) -> pokemon.equals(current) ? current : pokemon);
+    }
+
+    /**
+     * @param id PokeAPI id of the Pokemon
+     * @return the canonical instance, or {@code null} if the Pokemon has not been seen yet
+     */
+    public Pokemon get(int id) {
+        return pokemonById.get(id);
+    }
+
+    public int size() {
+        return pokemonById.size();
+    }
+}
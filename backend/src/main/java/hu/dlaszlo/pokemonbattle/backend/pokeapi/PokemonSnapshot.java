@@ -0,0 +1,200 @@
+package hu.dlaszlo.pokemonbattle.backend.pokeapi;
+
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.dto.Pokemon;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The Pokemon name list and the mapped Pokemon, kept on disk in {@code pokeapi.snapshot.file}, so they are
+ * known right after a restart, even if PokeAPI cannot be reached. An empty file name disables the snapshot.
+ * <p>
+ * The file is loaded when the bean is created. {@link PokeApiImpl} serves the names and the Pokemon from the
+ * snapshot, adds every Pokemon it fetches for the first time, and refreshes the snapshot from PokeAPI in the
+ * background every {@code refresh_interval}, starting right after the startup. The file is rewritten after every
+ * refresh and on shutdown, if anything changed.
+ */
+@Slf4j
+@Component
+public class PokemonSnapshot implements MeterBinder, DisposableBean {
+
+    private final Path file;
+    private final Duration refreshInterval;
+    private final ScheduledExecutorService refreshExecutor;
+
+    private volatile List<String> names = List.of();
+    private final Map<String, Pokemon> pokemonByName = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    @Autowired
+    public PokemonSnapshot(@Value("${pokeapi.snapshot.file}") String file,
+                           @Value("${pokeapi.snapshot.refresh_interval}") Duration refreshInterval) {
+        this(StringUtils.hasText(file) ? Path.of(file) : null, refreshInterval);
+    }
+
+    /**
+     * @param file the snapshot file, {@code null} disables the snapshot
+     */
+    public PokemonSnapshot(Path file, Duration refreshInterval) {
+        if (refreshInterval.isNegative() || refreshInterval.isZero()) {
+            throw new IllegalArgumentException("Invalid Pokemon snapshot refresh interval: " + refreshInterval);
+        }
+        this.file = file;
+        this.refreshInterval = refreshInterval;
+        if (file == null) {
+            this.refreshExecutor = null;
+            return;
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pokeapi-snapshot-");
+        threadFactory.setDaemon(true);
+        this.refreshExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        load();
+    }
+
+    /**
+     * @return a snapshot that keeps nothing
+     */
+    public static PokemonSnapshot disabled() {
+        return new PokemonSnapshot((Path) null, Duration.ofDays(1));
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    /**
+     * @return the name list of the snapshot, empty if it has not been fetched yet
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * @return the Pokemon of the snapshot, or {@code null} if it has not been fetched yet
+     */
+    public Pokemon get(String name) {
+        return name == null ? null : pokemonByName.get(name);
+    }
+
+    /**
+     * @return the names of the Pokemon in the snapshot
+     */
+    public Set<String> getPokemonNames() {
+        return Set.copyOf(pokemonByName.keySet());
+    }
+
+    public int size() {
+        return pokemonByName.size();
+    }
+
+    public void putNames(List<String> names) {
+        if (isEnabled() && !names.equals(this.names)) {
+            this.names = List.copyOf(names);
+            dirty.set(true);
+        }
+    }
+
+    public void put(Pokemon pokemon) {
+        if (isEnabled() && !pokemon.equals(pokemonByName.put(pokemon.name(), pokemon))) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Runs the refresh now and then every refresh interval in the background, and saves the snapshot after it.
+     */
+    public void scheduleRefresh(Runnable refresh) {
+        if (!isEnabled()) {
+            return;
+        }
+        refreshExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                refresh.run();
+            } catch (RuntimeException e) {
+                log.error("Pokemon snapshot refresh failed", e);
+            }
+            save();
+        }, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the snapshot file if anything changed since it was last written.
+     */
+    public synchronized void save() {
+        if (!isEnabled() || !dirty.getAndSet(false)) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            // a copy, so the count in the header matches the entries even if Pokemon are added meanwhile
+            List<String> savedNames = names;
+            List<Pokemon> savedPokemon = List.copyOf(pokemonByName.values());
+            PokemonSnapshotFile.write(file, savedNames, savedPokemon);
+            log.info("Pokemon snapshot saved in {} ms., names: {}, Pokemon: {}",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), savedNames.size(),
+                    savedPokemon.size());
+        } catch (IOException e) {
+            dirty.set(true);
+            log.error("Pokemon snapshot could not be saved: {}", file, e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("pokeapi.snapshot.size", this, PokemonSnapshot::size)
+                .description("Number of Pokemon in the on-disk snapshot")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+        save();
+    }
+
+    private void load() {
+        if (!Files.exists(file)) {
+            log.info("No Pokemon snapshot yet: {}", file);
+            return;
+        }
+        long startTime = System.nanoTime();
+        try {
+            PokemonSnapshotFile.Snapshot snapshot = PokemonSnapshotFile.read(file);
+            for (Pokemon pokemon : snapshot.pokemon()) {
+                pokemonByName.put(Objects.requireNonNull(pokemon.name(), "pokemon name must not be null"), pokemon);
+            }
+            this.names = snapshot.names();
+            log.info("Pokemon snapshot loaded in {} ms., names: {}, Pokemon: {}",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), names.size(), size());
+        } catch (IOException | RuntimeException e) {
+            pokemonByName.clear();
+            log.warn("Pokemon snapshot could not be loaded, the Pokemon are fetched from PokeAPI: {}", file, e);
+        }
+    }
+}
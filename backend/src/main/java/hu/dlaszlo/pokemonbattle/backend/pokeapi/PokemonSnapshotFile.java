@@ -0,0 +1,160 @@
+package hu.dlaszlo.pokemonbattle.backend.pokeapi;
+
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.dto.Pokemon;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary snapshot of the Pokemon name list and of the mapped Pokemon.
+ * <p>
+ * Strings are stored as their UTF-8 bytes after an int length, so they are decoded straight from the buffer.
+ * The file ends with a CRC32 of its content. It is written next to its final name and moved into place
+ * atomically, so a crash while writing leaves the previous snapshot intact. It is read back through a memory
+ * mapping, so loading does not copy it through stream buffers.
+ */
+public final class PokemonSnapshotFile {
+
+    private static final int MAGIC = 0x504B4353;
+    private static final int VERSION = 1;
+    private static final int NO_VALUE = -1;
+    private static final int HEADER_SIZE = 16;
+    private static final int TRAILER_SIZE = 8;
+
+    /**
+     * Content of a snapshot file.
+     *
+     * @param names   the Pokemon name list, in PokeAPI order
+     * @param pokemon the mapped Pokemon
+     */
+    public record Snapshot(List<String> names, List<Pokemon> pokemon) {
+    }
+
+    private PokemonSnapshotFile() {
+    }
+
+    /**
+     * @param pokemon the Pokemon to write; must not change while it is written, the header holds its size
+     */
+    public static void write(Path file, List<String> names, Collection<Pokemon> pokemon) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream fileOut = Channels.newOutputStream(channel);
+             DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                     new BufferedOutputStream(fileOut, 1 << 16), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(names.size());
+            out.writeInt(pokemon.size());
+            for (String name : names) {
+                writeString(out, name);
+            }
+            for (Pokemon each : pokemon) {
+                out.writeInt(each.id());
+                writeString(out, each.name());
+                writeString(out, each.types());
+                writeString(out, each.imageUrl());
+            }
+            out.flush();
+            new DataOutputStream(fileOut).writeLong(crc.getValue());
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a memory-mapped snapshot. The names of the Pokemon share the strings of the name list,
+     * and equal types share one string.
+     *
+     * @throws IOException if the file is truncated or its checksum does not match
+     */
+    public static Snapshot read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE + TRAILER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Invalid Pokemon snapshot file size: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int contentSize = buffer.capacity() - TRAILER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, contentSize));
+        if (buffer.getLong(contentSize) != crc.getValue()) {
+            throw new IOException("Pokemon snapshot checksum mismatch: " + file);
+        }
+        buffer.limit(contentSize);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a Pokemon snapshot file: " + file);
+        }
+        int nameCount = buffer.getInt();
+        int pokemonCount = buffer.getInt();
+        if (nameCount < 0 || pokemonCount < 0) {
+            throw new IOException("Corrupt Pokemon snapshot file: " + file);
+        }
+
+        Map<String, String> strings = new HashMap<>();
+        List<String> names = new ArrayList<>(Math.min(nameCount, contentSize));
+        List<Pokemon> pokemon = new ArrayList<>(Math.min(pokemonCount, contentSize));
+        try {
+            for (int i = 0; i < nameCount; i++) {
+                names.add(readString(buffer, strings));
+            }
+            for (int i = 0; i < pokemonCount; i++) {
+                pokemon.add(new Pokemon(buffer.getInt(), readString(buffer, strings), readString(buffer, strings),
+                        readString(buffer, strings)));
+            }
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IOException("Corrupt Pokemon snapshot file: " + file, e);
+        }
+        if (buffer.hasRemaining()) {
+            throw new IOException("Corrupt Pokemon snapshot file: " + file);
+        }
+        return new Snapshot(Collections.unmodifiableList(names), Collections.unmodifiableList(pokemon));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NO_VALUE);
+            return;
+        }
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(encoded.length);
+        out.write(encoded);
+    }
+
+    private static String readString(ByteBuffer buffer, Map<String, String> strings) {
+        int length = buffer.getInt();
+        if (length == NO_VALUE) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] encoded = new byte[length];
+        buffer.get(encoded);
+        String value = new String(encoded, StandardCharsets.UTF_8);
+        String existing = strings.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+}
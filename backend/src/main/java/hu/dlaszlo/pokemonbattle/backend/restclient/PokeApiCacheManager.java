@@ -0,0 +1,282 @@
+package hu.dlaszlo.pokemonbattle.backend.restclient;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+import hu.dlaszlo.pokemonbattle.backend.BackendConfig;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache manager of the PokeAPI caches, backed by Caffeine.
+ * <p>
+ * Each cache is bounded by its maximum size; above it, Caffeine evicts the entries least likely to be read
+ * again, judged by how often they were read recently rather than by their age alone. An entry expires
+ * {@code ttl} after it was fetched. If a refresh interval is set, the first read after it still returns the
+ * cached entry, and the entry is fetched again in the background, so entries that are read often do not
+ * expire on a request thread.
+ * <p>
+ * An expired entry is kept for {@code maxStale} more. Reading it fetches it again on the request thread, and if
+ * that fails, the expired entry is returned instead of the error, so a PokeAPI outage does not take down the
+ * Pokemon that were already known. After a failure, the key is served stale without a call for the refresh interval
+ * (or the ttl, if the refresh is disabled), so during an outage a read does not wait for a failing call every time.
+ * <p>
+ * A miss is still computed by the {@code @Cacheable} method itself, with its retries. The methods are synchronized
+ * ({@code sync = true}): concurrent misses of the same key share one call of the method, and its result or failure,
+ * so after a cold start every request asking for the same Pokemon waits for a single PokeAPI call. Unlike
+ * Caffeine's own per-key computation, no lock of the cache is held while the method runs.
+ * <p>
+ * Only the refreshes call {@link PokeApiRestClient#loadPokeApiNameList()} and
+ * {@link PokeApiRestClient#loadPokeApiDetail(String)}; a failed refresh keeps the cached entry.
+ * Every cache records its hit, miss, eviction and load statistics, published as the {@code cache.*} metrics.
+ */
+@Slf4j
+public class PokeApiCacheManager implements CacheManager, MeterBinder, DisposableBean {
+
+    private final ExecutorService refreshExecutor;
+
+    private final Map<String, PokeApiCache> caches;
+
+    public PokeApiCacheManager(ObjectProvider<PokeApiRestClient> pokeApiRestClient,
+                               Settings names, Settings detail, int refreshConcurrency) {
+        this(pokeApiRestClient, names, detail, refreshConcurrency, Ticker.systemTicker());
+    }
+
+    public PokeApiCacheManager(ObjectProvider<PokeApiRestClient> pokeApiRestClient,
+                               Settings names, Settings detail, int refreshConcurrency, Ticker ticker) {
+        if (refreshConcurrency < 1) {
+            throw new IllegalArgumentException("Invalid refresh concurrency: " + refreshConcurrency);
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(refreshConcurrency, refreshConcurrency,
+                1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), daemonThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        this.refreshExecutor = executor;
+
+        CacheLoader<Object, Object> namesLoader = key -> pokeApiRestClient.getObject().loadPokeApiNameList();
+        CacheLoader<Object, Object> detailLoader = key -> pokeApiRestClient.getObject().loadPokeApiDetail((String) key);
+        this.caches = Map.of(
+                BackendConfig.CACHE_POKEMON_NAMES,
+                new PokeApiCache(BackendConfig.CACHE_POKEMON_NAMES, names, newBuilder(names, ticker).build(namesLoader),
+                        newFailureCache(names, ticker)),
+                BackendConfig.CACHE_POKEMON_DETAIL,
+                new PokeApiCache(BackendConfig.CACHE_POKEMON_DETAIL, detail, newBuilder(detail, ticker).build(detailLoader),
+                        newFailureCache(detail, ticker)));
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.get(name);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return caches.keySet();
+    }
+
+    /**
+     * @return the number of reads answered with an expired entry, because it could not be fetched again
+     */
+    public long getStaleCount(String name) {
+        PokeApiCache cache = caches.get(name);
+        return cache == null ? 0 : cache.staleCount.sum();
+    }
+
+    /**
+     * @return the number of misses that waited for the call already fetching the same key, instead of making their own
+     */
+    public long getCoalescedCount(String name) {
+        PokeApiCache cache = caches.get(name);
+        return cache == null ? 0 : cache.coalescedCount.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (String name : caches.keySet()) {
+            FunctionCounter.builder("pokeapi.cache.stale", this, cacheManager -> cacheManager.getStaleCount(name))
+                    .description("Number of reads answered with an expired entry, because it could not be fetched again")
+                    .tag("cache", name)
+                    .register(registry);
+            FunctionCounter.builder("pokeapi.cache.coalesced", this, cacheManager -> cacheManager.getCoalescedCount(name))
+                    .description("Number of misses that waited for the call already fetching the same key")
+                    .tag("cache", name)
+                    .register(registry);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private Caffeine<Object, Object> newBuilder(Settings settings, Ticker ticker) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(settings.maxSize())
+                .expireAfterWrite(settings.ttl().plus(settings.maxStale()))
+                .executor(refreshExecutor)
+                .ticker(ticker)
+                .recordStats();
+        if (!settings.refresh().isZero()) {
+            builder.refreshAfterWrite(settings.refresh());
+        }
+        return builder;
+    }
+
+    /**
+     * The keys whose expired entry could not be fetched again recently, each kept for the retry interval.
+     */
+    private static Map<Object, Boolean> newFailureCache(Settings settings, Ticker ticker) {
+        return Caffeine.newBuilder()
+                .maximumSize(settings.maxSize())
+                .expireAfterWrite(settings.refresh().isZero() ? settings.ttl() : settings.refresh())
+                .ticker(ticker)
+                .<Object, Boolean>build()
+                .asMap();
+    }
+
+    private static CustomizableThreadFactory daemonThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pokeapi-cache-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    /**
+     * Settings of one cache.
+     *
+     * @param maxSize  max. number of entries
+     * @param ttl      how long an entry is served after it was fetched
+     * @param refresh  how long after it was fetched an entry is refreshed in the background on its next read,
+     *                 zero disables the refresh
+     * @param maxStale how long after its ttl an entry is still served if it cannot be fetched again,
+     *                 zero disables serving expired entries
+     */
+    public record Settings(long maxSize, Duration ttl, Duration refresh, Duration maxStale) {
+
+        public Settings {
+            if (maxSize < 0 || ttl.isNegative() || ttl.isZero() || refresh.isNegative() || maxStale.isNegative()
+                    || (!refresh.isZero() && refresh.compareTo(ttl) >= 0)) {
+                throw new IllegalArgumentException("Invalid cache settings, maxSize: " + maxSize
+                        + ", ttl: " + ttl + ", refresh: " + refresh + ", maxStale: " + maxStale);
+            }
+        }
+    }
+
+    /**
+     * The native cache is a loading cache only to refresh its entries, a miss must not load the value:
+     * it is computed by the {@code @Cacheable} method, like with any other cache.
+     */
+    private static final class PokeApiCache extends CaffeineCache {
+
+        private final Settings settings;
+        private final LoadingCache<Object, Object> loadingCache;
+        private final Map<Object, Boolean> recentFailures;
+        private final Map<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+        private final LongAdder staleCount = new LongAdder();
+        private final LongAdder coalescedCount = new LongAdder();
+
+        PokeApiCache(String name, Settings settings, LoadingCache<Object, Object> loadingCache,
+                     Map<Object, Boolean> recentFailures) {
+            super(name, loadingCache, true);
+            this.settings = settings;
+            this.loadingCache = loadingCache;
+            this.recentFailures = recentFailures;
+        }
+
+        /**
+         * Called by the {@code @Cacheable(sync = true)} methods. The first miss of a key calls the value loader,
+         * the misses arriving while it runs wait for its result, or rethrow its failure.
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            ValueWrapper cached = get(key);
+            if (cached != null) {
+                return (T) cached.get();
+            }
+            CompletableFuture<Object> call = new CompletableFuture<>();
+            CompletableFuture<Object> existing = inFlight.putIfAbsent(key, call);
+            if (existing != null) {
+                coalescedCount.increment();
+                return (T) fromStoreValue(await(key, existing, valueLoader));
+            }
+            try {
+                T value = valueLoader.call();
+                put(key, value);
+                call.complete(toStoreValue(value));
+                return value;
+            } catch (Exception e) {
+                call.completeExceptionally(e);
+                throw new ValueRetrievalException(key, valueLoader, e);
+            } catch (Error e) {
+                call.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, call);
+            }
+        }
+
+        private static Object await(Object key, CompletableFuture<Object> call, Callable<?> valueLoader) {
+            try {
+                return call.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw new ValueRetrievalException(key, valueLoader, e.getCause());
+            }
+        }
+
+        @Override
+        protected Object lookup(Object key) {
+            Object value = loadingCache.getIfPresent(key);
+            if (value == null || !isExpired(key)) {
+                return value;
+            }
+            if (recentFailures.containsKey(key)) {
+                staleCount.increment();
+                return value;
+            }
+            try {
+                return loadingCache.refresh(key).join();
+            } catch (CompletionException | CancellationException e) {
+                recentFailures.put(key, Boolean.TRUE);
+                staleCount.increment();
+                log.warn("Fetching the expired entry {} of cache {} failed, serving it stale: {}",
+                        key, getName(), e.getCause() != null ? e.getCause().toString() : e.toString());
+                return value;
+            }
+        }
+
+        private boolean isExpired(Object key) {
+            if (settings.maxStale().isZero()) {
+                return false;
+            }
+            return loadingCache.policy().expireAfterWrite()
+                    .flatMap(expiration -> expiration.ageOf(key))
+                    .map(age -> age.compareTo(settings.ttl()) >= 0)
+                    .orElse(false);
+        }
+    }
+}
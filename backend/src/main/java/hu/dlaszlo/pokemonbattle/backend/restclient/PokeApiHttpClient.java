@@ -0,0 +1,143 @@
+package hu.dlaszlo.pokemonbattle.backend.restclient;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * The HTTP client used to call PokeAPI, selected by {@code pokeapi.http.client}:
+ * <ul>
+ *     <li>{@code simple}: {@link java.net.HttpURLConnection}, connections are only reused as far as the JDK's
+ *     global keep-alive cache allows</li>
+ *     <li>{@code jdk}: the JDK {@link HttpClient}, keeps connections alive and reuses them, and with
+ *     {@code pokeapi.http.http2} multiplexes the requests over one HTTP/2 connection if the server supports it</li>
+ *     <li>{@code pooled}: Apache HttpClient with a connection pool bounded in total and per route, whose idle
+ *     connections are closed after {@code pokeapi.http.idle_timeout}; the pool is published as the
+ *     {@code httpcomponents.httpclient.pool.*} metrics</li>
+ * </ul>
+ * With the pooled client, a request waits at most the connect timeout for a free connection of the pool.
+ */
+@Slf4j
+@Component
+public class PokeApiHttpClient implements MeterBinder, DisposableBean {
+
+    public enum Type {
+        SIMPLE, JDK, POOLED
+    }
+
+    private final Type type;
+
+    private final ClientHttpRequestFactory requestFactory;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    private final CloseableHttpClient pooledClient;
+
+    @Autowired
+    public PokeApiHttpClient(@Value("${pokeapi.http.client}") String type,
+                             @Value("${pokeapi.http.connect_timeout}") Duration connectTimeout,
+                             @Value("${pokeapi.http.read_timeout}") Duration readTimeout,
+                             @Value("${pokeapi.http.http2}") boolean http2,
+                             @Value("${pokeapi.http.max_connections}") int maxConnections,
+                             @Value("${pokeapi.http.max_connections_per_route}") int maxConnectionsPerRoute,
+                             @Value("${pokeapi.http.idle_timeout}") Duration idleTimeout) {
+        this(Type.valueOf(type.toUpperCase(Locale.ROOT)), connectTimeout, readTimeout, http2,
+                maxConnections, maxConnectionsPerRoute, idleTimeout);
+    }
+
+    public PokeApiHttpClient(Type type, Duration connectTimeout, Duration readTimeout, boolean http2,
+                             int maxConnections, int maxConnectionsPerRoute, Duration idleTimeout) {
+        if (connectTimeout.isNegative() || readTimeout.isNegative() || maxConnections < 1
+                || maxConnectionsPerRoute < 1 || maxConnectionsPerRoute > maxConnections || idleTimeout.isNegative()) {
+            throw new IllegalArgumentException("Invalid PokeAPI HTTP client settings, connectTimeout: " + connectTimeout
+                    + ", readTimeout: " + readTimeout + ", maxConnections: " + maxConnections
+                    + ", maxConnectionsPerRoute: " + maxConnectionsPerRoute + ", idleTimeout: " + idleTimeout);
+        }
+        this.type = type;
+        switch (type) {
+            case SIMPLE -> {
+                SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+                factory.setConnectTimeout(connectTimeout);
+                factory.setReadTimeout(readTimeout);
+                this.requestFactory = factory;
+                this.connectionManager = null;
+                this.pooledClient = null;
+            }
+            case JDK -> {
+                HttpClient httpClient = HttpClient.newBuilder()
+                        .connectTimeout(connectTimeout)
+                        .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                        .followRedirects(HttpClient.Redirect.NORMAL)
+                        .build();
+                JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+                factory.setReadTimeout(readTimeout);
+                this.requestFactory = factory;
+                this.connectionManager = null;
+                this.pooledClient = null;
+            }
+            case POOLED -> {
+                this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(maxConnections)
+                        .setMaxConnPerRoute(maxConnectionsPerRoute)
+                        .setDefaultConnectionConfig(ConnectionConfig.custom()
+                                .setConnectTimeout(Timeout.of(connectTimeout))
+                                .setSocketTimeout(Timeout.of(readTimeout))
+                                .build())
+                        .build();
+                this.pooledClient = HttpClients.custom()
+                        .setConnectionManager(connectionManager)
+                        .evictExpiredConnections()
+                        .evictIdleConnections(TimeValue.of(idleTimeout))
+                        .build();
+                HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(pooledClient);
+                factory.setConnectionRequestTimeout(connectTimeout);
+                this.requestFactory = factory;
+            }
+            default -> throw new IllegalArgumentException("Unknown PokeAPI HTTP client: " + type);
+        }
+        log.info("PokeAPI HTTP client: {}", type);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public ClientHttpRequestFactory getRequestFactory() {
+        return requestFactory;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (connectionManager != null) {
+            new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "pokeapi").bindTo(registry);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (pooledClient != null) {
+            pooledClient.close(CloseMode.GRACEFUL);
+        }
+    }
+}
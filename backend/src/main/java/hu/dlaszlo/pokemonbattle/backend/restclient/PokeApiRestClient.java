@@ -19,6 +19,35 @@ public interface PokeApiRestClient {
      */
     PokeApiDetail getPokeApiDetail(String name);
 
+    /**
+     * Fetches the list of Pokemon names, bypassing the cache and without retries.
+     * Used by the cache to refresh its entry in the background.
+     *
+     * @return A {@link PokeApiNameList} containing a list of Pokemon names
+     */
+    PokeApiNameList loadPokeApiNameList();
+
+    /**
+     * Fetches the data of a Pokemon, bypassing the cache and without retries.
+     * Used by the cache to refresh its entries in the background.
+     *
+     * @param name The name of the Pokemon to retrieve
+     * @return A {@link PokeApiDetail} object containing the Pokemon's data
+     */
+    PokeApiDetail loadPokeApiDetail(String name);
+
+    /**
+     * Removes the cached list of Pokemon names
+     */
+    void evictPokeApiNameList();
+
+    /**
+     * Removes the cached data of one Pokemon
+     *
+     * @param name The name of the Pokemon
+     */
+    void evictPokeApiDetail(String name);
+
     /**
      * Clears all caches associated with this REST client
      */
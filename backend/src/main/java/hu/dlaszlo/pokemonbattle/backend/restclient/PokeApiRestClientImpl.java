@@ -31,11 +31,23 @@ public class PokeApiRestClientImpl implements PokeApiRestClient {
 
     @Override
     @RestClientRetry
-    @Cacheable(value = BackendConfig.CACHE_POKEMON_NAMES)
+    @Cacheable(value = BackendConfig.CACHE_POKEMON_NAMES, sync = true)
     public PokeApiNameList getPokeApiNameList() {
+        return loadPokeApiNameList();
+    }
+
+    @Override
+    @RestClientRetry
+    @Cacheable(value = BackendConfig.CACHE_POKEMON_DETAIL, key = "#name", sync = true)
+    public PokeApiDetail getPokeApiDetail(String name) {
+        return loadPokeApiDetail(name);
+    }
+
+    @Override
+    public PokeApiNameList loadPokeApiNameList() {
         long startTime = System.nanoTime();
         try {
-            log.info("getPokeApiNameList() started");
+            log.info("loadPokeApiNameList() started");
 
             return restClient.get()
                     .uri(baseUrl + "/pokemon?limit={limit}&offset=0", MAX_POKEMON_COUNT)
@@ -44,18 +56,16 @@ public class PokeApiRestClientImpl implements PokeApiRestClient {
 
         } finally {
             long endTime = System.nanoTime();
-            log.info("getPokeApiNameList() ended in {} ms.", TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+            log.info("loadPokeApiNameList() ended in {} ms.", TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
         }
     }
 
     @Override
-    @RestClientRetry
-    @Cacheable(value = BackendConfig.CACHE_POKEMON_DETAIL, key = "#name")
-    public PokeApiDetail getPokeApiDetail(String name) {
+    public PokeApiDetail loadPokeApiDetail(String name) {
 
         long startTime = System.nanoTime();
         try {
-            log.info("getPokeApiNameList() started");
+            log.info("loadPokeApiDetail() started");
             return restClient.get()
                     .uri(baseUrl + "/pokemon/{name}",
                             Objects.requireNonNull(name, "name must not be null"))
@@ -64,10 +74,22 @@ public class PokeApiRestClientImpl implements PokeApiRestClient {
 
         } finally {
             long endTime = System.nanoTime();
-            log.info("getPokeApiNameList() ended in {} ms.", TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+            log.info("loadPokeApiDetail() ended in {} ms.", TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
         }
     }
 
+    @Override
+    @CacheEvict(value = BackendConfig.CACHE_POKEMON_NAMES, allEntries = true)
+    public void evictPokeApiNameList() {
+        log.info("evict Pokemon names");
+    }
+
+    @Override
+    @CacheEvict(value = BackendConfig.CACHE_POKEMON_DETAIL, key = "#name")
+    public void evictPokeApiDetail(String name) {
+        log.info("evict Pokemon detail: {}", name);
+    }
+
     @Override
     @Caching(evict = {
             @CacheEvict(value = BackendConfig.CACHE_POKEMON_NAMES, allEntries = true),
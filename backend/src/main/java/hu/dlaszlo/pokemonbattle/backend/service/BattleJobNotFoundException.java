@@ -0,0 +1,10 @@
+package hu.dlaszlo.pokemonbattle.backend.service;
+
+/**
+ * Exception thrown when a battle creation job cannot be found, or its result has already expired.
+ */
+public class BattleJobNotFoundException extends RuntimeException {
+    public BattleJobNotFoundException(Long jobId) {
+        super("Battle job not found with id: " + jobId);
+    }
+}
@@ -1,8 +1,15 @@
 package hu.dlaszlo.pokemonbattle.backend.service;
 
 import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleOdds;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattlePage;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonStats;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Tournament;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Service responsible for creating, simulating and searching Pokemon battles.
@@ -17,16 +24,60 @@ public interface BattleService {
      */
     Battle createRandomBattle();
 
+    /**
+     * Creates several battles with randomly selected Pokemon in one step.
+     * Every distinct Pokemon is fetched once, and all battles are stored together with status {@code PENDING}.
+     *
+     * @param count number of battles to create
+     * @return the newly created pending battles
+     * @throws InvalidBattleRequestException if the count is out of range
+     */
+    List<Battle> createRandomBattles(int count);
+
+    /**
+     * Runs a single-elimination tournament between the given Pokemon, in bracket order.
+     * Every match gets fresh random power values; a draw is decided by a coin toss.
+     * Every match is stored as a finished battle.
+     *
+     * @param names names of the entrants; their number must be a power of two
+     * @return the bracket with every match and the champion
+     * @throws InvalidBattleRequestException if the number of entrants is not a power of two or out of range
+     */
+    Tournament runTournament(List<String> names);
+
+    /**
+     * Runs a single-elimination tournament between {@code size} randomly picked Pokemon.
+     * A Pokemon may be picked more than once if the field is larger than the number of known Pokemon.
+     *
+     * @param size number of entrants; must be a power of two
+     * @return the bracket with every match and the champion
+     * @throws InvalidBattleRequestException if the size is not a power of two or out of range
+     * @see #runTournament(List)
+     */
+    Tournament runRandomTournament(int size);
+
     /**
      * Simulates the battle with the given id, using the stored Pokemon power values.
      * Updates the battle status to {@code FINISHED} and sets the winner side.
      *
      * @param battleId the id of the battle to simulate
      * @return the updated, finished battle
-     * @throws IllegalArgumentException if a battle with the given id does not exist
+     * @throws BattleNotFoundException if a battle with the given id does not exist
      */
     Battle simulateBattle(Long battleId);
 
+    /**
+     * Estimates the outcome of the battle with the given id by simulating its matchup many times,
+     * with random power jitter and the type effectiveness of both Pokemon. The battle itself is not changed.
+     *
+     * @param battleId the id of the battle
+     * @param rounds number of simulated rounds
+     * @return the win and draw probabilities of the matchup
+     * @throws InvalidBattleRequestException if the number of rounds is out of range
+     * @throws BattleNotFoundException if a battle with the given id does not exist
+     */
+    BattleOdds battleOdds(Long battleId, int rounds);
+
     /**
      * Returns battles filtered by Pokemon name.
      * If {@code nameFilter} is {@code null} or blank, all battles are returned.
@@ -37,4 +88,58 @@ public interface BattleService {
      */
     List<Battle> searchBattles(String nameFilter);
 
+    /**
+     * Returns one page of finished battles filtered by Pokemon name, positioned by a battle id cursor.
+     * At most one of {@code before} and {@code after} may be set; if neither is set, the newest page is returned.
+     * The cursor is looked up directly in the history, so every page costs the same regardless of its depth.
+     *
+     * @param nameFilter optional name substring to search in both Pokemon names
+     * @param before optional battle id; only battles finished before it are returned
+     * @param after optional battle id; only battles finished after it are returned
+     * @param limit maximum number of battles on the page
+     * @return the page of matching battles, ordered from newest to oldest
+     * @throws InvalidBattleRequestException if both cursors are set or the limit is out of range
+     * @throws BattleNotFoundException if the cursor battle is not a finished battle
+     */
+    BattlePage searchBattles(String nameFilter, Long before, Long after, int limit);
+
+    /**
+     * Streams every finished battle from the oldest to the newest, optionally filtered by Pokemon name and
+     * finish time. The history is read lazily while the stream is consumed, so no copy of it is made.
+     *
+     * @param nameFilter optional name substring to search in both Pokemon names
+     * @param from optional; only battles finished at or after it are returned
+     * @param to optional; only battles finished before it are returned
+     * @return lazy stream of the matching battles, ordered from oldest to newest
+     * @throws InvalidBattleRequestException if {@code from} is after {@code to}
+     */
+    Stream<Battle> exportBattles(String nameFilter, Instant from, Instant to);
+
+    /**
+     * Registers a listener that is called with every simulated battle that has just been finished and stored,
+     * on the thread that finished it. Tournament matches are finished in bulk and are not announced.
+     * Listeners must return quickly and must not throw.
+     *
+     * @param listener the listener to call
+     */
+    void addFinishedBattleListener(Consumer<Battle> listener);
+
+    /**
+     * Returns the Pokemon with the most wins over all finished battles.
+     * The statistics are maintained as battles finish, so the cost depends on the limit, not the history size.
+     *
+     * @param limit maximum number of Pokemon to return
+     * @return the statistics of the top Pokemon, in descending order of wins, then by name
+     * @throws InvalidBattleRequestException if the limit is out of range
+     */
+    List<PokemonStats> leaderboard(int limit);
+
+    /**
+     * Returns the wins, losses, draws and average power of a Pokemon over all finished battles.
+     *
+     * @param name the name of the Pokemon
+     * @return the statistics of the Pokemon; all zero if it has not finished a battle yet
+     */
+    PokemonStats pokemonStats(String name);
+
 }
\ No newline at end of file
@@ -0,0 +1,194 @@
+package hu.dlaszlo.pokemonbattle.backend.service;
+
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApi;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.durable.BattleSnapshotFile;
+import hu.dlaszlo.pokemonbattle.backend.service.durable.BattleWriteAheadLog;
+import hu.dlaszlo.pokemonbattle.backend.service.history.BattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.pending.PendingBattleStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link BattleService} that keeps the in-memory structures of {@link InMemoryBattleServiceImpl}
+ * and makes every change durable in a write-ahead log before it becomes visible.
+ * <p>
+ * Periodic snapshots write the whole state into a compact file and drop the log segments they cover.
+ * On startup the snapshot is loaded and the log tail replayed, which rebuilds the history, the name
+ * index, the pending battles and the id counter.
+ * <p>
+ * Writers hold the shared side of a read-write lock while they log and publish a change; a snapshot only
+ * takes the exclusive side for the moment it rotates the log and captures the state boundary.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "battle.store", havingValue = "durable")
+public class DurableBattleServiceImpl extends InMemoryBattleServiceImpl implements Closeable {
+
+    private static final String SNAPSHOT_FILE = "battles.snapshot";
+
+    private final Path snapshotFile;
+    private final BattleWriteAheadLog writeAheadLog;
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+    public DurableBattleServiceImpl(PokeApi pokeApi,
+                                    PendingBattleStore pendingBattles,
+                                    BattleHistory history,
+                                    Path directory,
+                                    DataSize segmentSize) {
+        this(pokeApi, pendingBattles, history, directory, segmentSize, DEFAULT_CREATE_TIMEOUT);
+    }
+
+    @Autowired
+    public DurableBattleServiceImpl(PokeApi pokeApi,
+                                    PendingBattleStore pendingBattles,
+                                    BattleHistory history,
+                                    @Value("${battle.durable.directory}") Path directory,
+                                    @Value("${battle.durable.segment_size}") DataSize segmentSize,
+                                    @Value("${battle.create_timeout}") Duration createTimeout) {
+        super(pokeApi, pendingBattles, history, createTimeout);
+        this.snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        recover(directory);
+        this.writeAheadLog = new BattleWriteAheadLog(directory, Math.toIntExact(segmentSize.toBytes()));
+    }
+
+    /**
+     * Writes a snapshot of all battles and deletes the write-ahead log segments it covers.
+     */
+    @Scheduled(fixedDelayString = "${battle.durable.snapshot_interval}",
+            initialDelayString = "${battle.durable.snapshot_interval}")
+    public void snapshot() {
+        long startTime = System.nanoTime();
+        try {
+            log.info("snapshot() started");
+            long walSegment;
+            long nextBattleId;
+            Iterator<Battle> finished;
+            Collection<Battle> pending;
+            snapshotLock.writeLock().lock();
+            try {
+                walSegment = writeAheadLog.rotate();
+                nextBattleId = nextBattleId();
+                finished = finishedBattles();
+                pending = pendingBattles();
+            } finally {
+                snapshotLock.writeLock().unlock();
+            }
+            BattleSnapshotFile.write(snapshotFile, walSegment, nextBattleId, finished, pending);
+            writeAheadLog.deleteSegmentsBefore(walSegment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write battle snapshot", e);
+        } finally {
+            long endTime = System.nanoTime();
+            log.info("snapshot() ended in {} ms.", TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+        }
+    }
+
+    /**
+     * Writes a final snapshot, so the next start does not have to replay the log, then closes the log.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            snapshot();
+        } finally {
+            writeAheadLog.close();
+        }
+    }
+
+    @Override
+    protected void publishPending(Battle battle) {
+        snapshotLock.readLock().lock();
+        try {
+            writeAheadLog.awaitDurable(writeAheadLog.append(battle));
+            super.publishPending(battle);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected void publishPending(List<Battle> battles) {
+        snapshotLock.readLock().lock();
+        try {
+            long lsn = 0;
+            for (Battle battle : battles) {
+                lsn = writeAheadLog.append(battle);
+            }
+            writeAheadLog.awaitDurable(lsn);
+            super.publishPending(battles);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected Battle publishFinished(Battle pending, Battle finished) {
+        snapshotLock.readLock().lock();
+        try {
+            return super.publishFinished(pending, finished);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected void recordFinished(Battle finished) {
+        writeAheadLog.awaitDurable(writeAheadLog.append(finished));
+    }
+
+    @Override
+    protected List<Battle> publishFinished(List<Battle> battles) {
+        snapshotLock.readLock().lock();
+        try {
+            long lsn = 0;
+            for (Battle battle : battles) {
+                lsn = writeAheadLog.append(battle);
+            }
+            writeAheadLog.awaitDurable(lsn);
+            return super.publishFinished(battles);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    private void recover(Path directory) {
+        long startTime = System.nanoTime();
+        try {
+            log.info("recover() started");
+            long walSegment = 0;
+            long snapshotBattles = 0;
+            if (Files.exists(snapshotFile)) {
+                BattleSnapshotFile.Header header = BattleSnapshotFile.read(snapshotFile, this::restoreBattle);
+                restoreNextBattleId(header.nextBattleId());
+                walSegment = header.walSegment();
+                snapshotBattles = header.battleCount();
+            }
+            long logRecords = BattleWriteAheadLog.replay(directory, walSegment, this::restoreBattle);
+            log.info("Recovered {} battles from snapshot and {} log records", snapshotBattles, logRecords);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot recover battles from " + directory, e);
+        } finally {
+            long endTime = System.nanoTime();
+            log.info("recover() ended in {} ms.", TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+        }
+    }
+}
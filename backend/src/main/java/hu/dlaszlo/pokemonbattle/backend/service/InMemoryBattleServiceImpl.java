@@ -3,82 +3,129 @@ package hu.dlaszlo.pokemonbattle.backend.service;
 import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApi;
 import hu.dlaszlo.pokemonbattle.backend.pokeapi.dto.Pokemon;
 import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleOdds;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattlePage;
 import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
 import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonStats;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Tournament;
 import hu.dlaszlo.pokemonbattle.backend.service.dto.WinnerSide;
+import hu.dlaszlo.pokemonbattle.backend.service.history.BattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.history.TrigramBattleNameIndex;
+import hu.dlaszlo.pokemonbattle.backend.service.odds.BattleOddsSimulator;
+import hu.dlaszlo.pokemonbattle.backend.service.pending.PendingBattleStore;
+import hu.dlaszlo.pokemonbattle.backend.service.stats.PokemonStatistics;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Strings;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "battle.store", havingValue = "memory", matchIfMissing = true)
 public class InMemoryBattleServiceImpl implements BattleService {
 
     private static final int MAX_RETURNED_BATTLES = 20;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 10_000;
+    private static final int MAX_TOURNAMENT_SIZE = 65_536;
+    private static final int SEQUENTIAL_BRACKET_SIZE = 1024;
+    private static final int MAX_ODDS_ROUNDS = 10_000_000;
     private static final int MIN_POWER = 1;
     private static final int MAX_POWER = 20;
 
+    /**
+     * Enough for a couple of slow or retried PokeAPI calls, not for every retry of {@code RestClientRetry}:
+     * with the 5 s connect and read timeouts of {@code pokeapi.http}, its five attempts and backoff can take
+     * about 54 s, and a create gives up before that instead of holding the request.
+     */
+    public static final Duration DEFAULT_CREATE_TIMEOUT = Duration.ofSeconds(30);
+
     private final PokeApi pokeApi;
-    private final List<Battle> battles = new CopyOnWriteArrayList<>();
-    private final Map<Long, Battle> battleById = new ConcurrentHashMap<>();
+    private final PendingBattleStore pendingBattles;
+    private final BattleHistory history;
+    private final TrigramBattleNameIndex nameIndex;
+    private final PokemonStatistics statistics;
+    private final Duration createTimeout;
+    private final List<Consumer<Battle>> finishedBattleListeners = new CopyOnWriteArrayList<>();
     private final AtomicLong battleIdGenerator = new AtomicLong(0);
 
+    public InMemoryBattleServiceImpl(PokeApi pokeApi, PendingBattleStore pendingBattles, BattleHistory history) {
+        this(pokeApi, pendingBattles, history, DEFAULT_CREATE_TIMEOUT);
+    }
+
+    /**
+     * @param createTimeout time allowed for the PokeAPI calls of {@link #createRandomBattle()}
+     */
     @Autowired
-    public InMemoryBattleServiceImpl(PokeApi pokeApi) {
+    public InMemoryBattleServiceImpl(PokeApi pokeApi, PendingBattleStore pendingBattles, BattleHistory history,
+                                     @Value("${battle.create_timeout}") Duration createTimeout) {
+        this(pokeApi, pendingBattles, history, new PokemonStatistics(), createTimeout);
+    }
+
+    /**
+     * @param statistics    Pokemon statistics to record the finished battles into; may be shared with other services
+     * @param createTimeout time allowed for the PokeAPI calls of {@link #createRandomBattle()}
+     */
+    protected InMemoryBattleServiceImpl(PokeApi pokeApi, PendingBattleStore pendingBattles, BattleHistory history,
+                                        PokemonStatistics statistics, Duration createTimeout) {
+        if (createTimeout.isNegative() || createTimeout.isZero()) {
+            throw new IllegalArgumentException("Invalid create timeout: " + createTimeout);
+        }
         this.pokeApi = pokeApi;
+        this.pendingBattles = pendingBattles;
+        this.history = history;
+        this.nameIndex = new TrigramBattleNameIndex(history);
+        this.statistics = statistics;
+        this.createTimeout = createTimeout;
     }
 
+    /**
+     * The two Pokemon are fetched concurrently. The name list and both fetches share one deadline of
+     * {@code battle.create_timeout}: when it elapses, or one of the fetches fails, the other one is cancelled.
+     */
     @Override
     public Battle createRandomBattle() {
         long startTime = System.nanoTime();
         try {
             log.info("createRandomBattle() started");
 
-            var allNames = pokeApi.listPokemonNames();
-            if (allNames == null || allNames.size() < 2) {
-                throw new IllegalStateException("Not enough Pokemon available to create a battle.");
-            }
-
-            ThreadLocalRandom random = ThreadLocalRandom.current();
-            int firstIndex = random.nextInt(allNames.size());
-            int secondIndex;
-            do {
-                secondIndex = random.nextInt(allNames.size());
-            } while (secondIndex == firstIndex);
+            NamePair names = randomPair(listPokemonNames());
 
-            String firstName = allNames.get(firstIndex);
-            String secondName = allNames.get(secondIndex);
+            Duration remaining = createTimeout.minusNanos(System.nanoTime() - startTime);
+            Map<String, Pokemon> pokemonByName =
+                    pokeApi.getPokemons(List.of(names.first(), names.second()), remaining);
 
-            Pokemon firstPokemon = pokeApi.getPokemon(firstName);
-            Pokemon secondPokemon = pokeApi.getPokemon(secondName);
+            Battle battle = newPendingBattle(pokemonByName.get(names.first()), pokemonByName.get(names.second()),
+                    now());
 
-            PokemonEntity first = toPokemonEntity(firstPokemon, randomPower());
-            PokemonEntity second = toPokemonEntity(secondPokemon, randomPower());
-
-            Battle battle = new Battle(
-                    battleIdGenerator.getAndIncrement(),
-                    BattleStatus.PENDING,
-                    first,
-                    second,
-                    null,
-                    Instant.now(),
-                    null
-            );
-
-            battleById.put(battle.id(), battle);
+            publishPending(battle);
 
             return battle;
 
@@ -88,53 +135,157 @@ public class InMemoryBattleServiceImpl implements BattleService {
         }
     }
 
+    /**
+     * The batch is limited to the capacity of the pending store too, so its battles never evict each other.
+     */
     @Override
-    public Battle simulateBattle(Long battleId) {
+    public List<Battle> createRandomBattles(int count) {
         long startTime = System.nanoTime();
         try {
-            log.info("simulateBattle() started");
-            Objects.requireNonNull(battleId, "battleId must not be null");
+            log.info("createRandomBattles() started");
+            int maxCount = Math.min(MAX_BATCH_SIZE, pendingBattles.getMaxSize());
+            if (count < 1 || count > maxCount) {
+                throw new InvalidBattleRequestException("Count must be between 1 and " + maxCount + ".");
+            }
+            List<String> allNames = listPokemonNames();
 
-            Battle existing = battleById.get(battleId);
-            if (existing == null) {
-                throw new BattleNotFoundException(battleId);
+            List<NamePair> pairs = new ArrayList<>(count);
+            Set<String> distinctNames = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                NamePair names = randomPair(allNames);
+                pairs.add(names);
+                distinctNames.add(names.first());
+                distinctNames.add(names.second());
             }
 
-            if (existing.status() == BattleStatus.FINISHED) {
-                return existing;
+            Map<String, Pokemon> pokemonByName = pokeApi.getPokemons(distinctNames);
+
+            Instant createdAt = now();
+            List<Battle> battles = new ArrayList<>(count);
+            for (NamePair names : pairs) {
+                battles.add(newPendingBattle(pokemonByName.get(names.first()), pokemonByName.get(names.second()),
+                        createdAt));
             }
 
-            WinnerSide winnerSide = decideWinner(existing.first(), existing.second());
+            publishPending(battles);
+
+            return battles;
+        } finally {
+            long endTime = System.nanoTime();
+            log.info("createRandomBattles() ended in {} ms.", TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+        }
+    }
+
+    @Override
+    public Tournament runTournament(List<String> names) {
+        long startTime = System.nanoTime();
+        try {
+            log.info("runTournament() started");
+            Objects.requireNonNull(names, "names must not be null");
+            checkTournamentSize(names.size());
+            return playTournament(names);
+        } finally {
+            long endTime = System.nanoTime();
+            log.info("runTournament() ended in {} ms.", TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+        }
+    }
+
+    @Override
+    public Tournament runRandomTournament(int size) {
+        long startTime = System.nanoTime();
+        try {
+            log.info("runRandomTournament() started");
+            checkTournamentSize(size);
+            List<String> allNames = listPokemonNames();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            List<String> names = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                names.add(allNames.get(random.nextInt(allNames.size())));
+            }
+            return playTournament(names);
+        } finally {
+            long endTime = System.nanoTime();
+            log.info("runRandomTournament() ended in {} ms.", TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+        }
+    }
+
+    @Override
+    public Battle simulateBattle(Long battleId) {
+        long startTime = System.nanoTime();
+        try {
+            log.info("simulateBattle() started");
+            Objects.requireNonNull(battleId, "battleId must not be null");
 
-            Battle finishedBattle = new Battle(
-                    existing.id(),
-                    BattleStatus.FINISHED,
-                    existing.first(),
-                    existing.second(),
-                    winnerSide,
-                    existing.createdAt(),
-                    Instant.now()
-            );
+            while (true) {
+                Battle existing = pendingBattles.get(battleId);
+                if (existing == null) {
+                    Battle finished = history.findById(battleId);
+                    if (finished == null) {
+                        throw new BattleNotFoundException(battleId);
+                    }
+                    return finished;
+                }
+                if (existing.status() == BattleStatus.FINISHED) {
+                    // another caller has won the transition, read its result once it is published or pending again
+                    awaitPublished(existing);
+                    continue;
+                }
 
-            battleById.put(finishedBattle.id(), finishedBattle);
+                WinnerSide winnerSide = decideWinner(existing.first(), existing.second());
 
-            battles.add(0, finishedBattle);
+                Battle finishedBattle = new Battle(
+                        existing.id(),
+                        BattleStatus.FINISHED,
+                        existing.first(),
+                        existing.second(),
+                        winnerSide,
+                        existing.createdAt(),
+                        now()
+                );
 
-            return finishedBattle;
+                Battle published = publishFinished(existing, finishedBattle);
+                if (published != null) {
+                    return published;
+                }
+                // lost the transition to another caller, read its result
+            }
         } finally {
             long endTime = System.nanoTime();
             log.info("simulateBattle() ended in {} ms.", TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
         }
     }
 
+    @Override
+    public BattleOdds battleOdds(Long battleId, int rounds) {
+        long startTime = System.nanoTime();
+        try {
+            log.info("battleOdds() started");
+            Objects.requireNonNull(battleId, "battleId must not be null");
+            if (rounds < 1 || rounds > MAX_ODDS_ROUNDS) {
+                throw new InvalidBattleRequestException("rounds must be between 1 and " + MAX_ODDS_ROUNDS + ": " + rounds);
+            }
+
+            Battle battle = pendingBattles.get(battleId);
+            if (battle == null) {
+                battle = history.findById(battleId);
+                if (battle == null) {
+                    throw new BattleNotFoundException(battleId);
+                }
+            }
+            return BattleOddsSimulator.simulate(battleId, battle.first(), battle.second(), rounds);
+        } finally {
+            long endTime = System.nanoTime();
+            log.info("battleOdds() ended in {} ms.", TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+        }
+    }
+
     @Override
     public List<Battle> searchBattles(String queryParam) {
         long startTime = System.nanoTime();
         try {
             log.info("searchBattles() started");
             String query = StringUtils.trimToNull(queryParam);
-            return battles.stream()
-                    .filter(battle -> matchesQuery(battle, query))
+            return finishedBattles(query, history.size() - 1, true)
                     .limit(MAX_RETURNED_BATTLES)
                     .collect(Collectors.toList());
         } finally {
@@ -143,6 +294,376 @@ public class InMemoryBattleServiceImpl implements BattleService {
         }
     }
 
+    @Override
+    public BattlePage searchBattles(String queryParam, Long before, Long after, int limit) {
+        long startTime = System.nanoTime();
+        try {
+            log.info("searchBattles() with cursor started");
+            if (before != null && after != null) {
+                throw new InvalidBattleRequestException("Only one of 'before' and 'after' can be set.");
+            }
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                throw new InvalidBattleRequestException("Limit must be between 1 and " + MAX_PAGE_SIZE + ".");
+            }
+            String query = StringUtils.trimToNull(queryParam);
+            boolean newestFirst = after == null;
+
+            long fromPosition;
+            if (before != null) {
+                fromPosition = cursorPosition(before) - 1;
+            } else if (after != null) {
+                fromPosition = cursorPosition(after) + 1;
+            } else {
+                fromPosition = history.size() - 1;
+            }
+
+            List<Battle> battles = finishedBattles(query, fromPosition, newestFirst)
+                    .limit(limit + 1L)
+                    .collect(Collectors.toCollection(ArrayList::new));
+
+            boolean hasMore = battles.size() > limit;
+            if (hasMore) {
+                battles.remove(limit);
+            }
+            if (!newestFirst) {
+                Collections.reverse(battles);
+            }
+            Long nextCursor = !hasMore ? null
+                    : newestFirst ? battles.get(battles.size() - 1).id()
+                    : battles.get(0).id();
+
+            return new BattlePage(battles, nextCursor);
+        } finally {
+            long endTime = System.nanoTime();
+            log.info("searchBattles() with cursor ended in {} ms.",
+                    TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+        }
+    }
+
+    @Override
+    public Stream<Battle> exportBattles(String queryParam, Instant from, Instant to) {
+        checkTimeRange(from, to);
+        String query = StringUtils.trimToNull(queryParam);
+        return finishedBattles(query, 0, false)
+                .filter(battle -> isFinishedBetween(battle, from, to));
+    }
+
+    @Override
+    public void addFinishedBattleListener(Consumer<Battle> listener) {
+        finishedBattleListeners.add(Objects.requireNonNull(listener, "listener must not be null"));
+    }
+
+    @Override
+    public List<PokemonStats> leaderboard(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidBattleRequestException("Limit must be between 1 and " + MAX_PAGE_SIZE + ".");
+        }
+        return statistics.top(limit);
+    }
+
+    @Override
+    public PokemonStats pokemonStats(String name) {
+        Objects.requireNonNull(name, "name must not be null");
+        return statistics.get(name);
+    }
+
+    /**
+     * Makes a newly created pending battle visible.
+     * Persistent subclasses override this to record the battle before it is published.
+     */
+    protected void publishPending(Battle battle) {
+        pendingBattles.put(battle);
+    }
+
+    /**
+     * Makes a batch of newly created pending battles visible in one step.
+     * Persistent subclasses override this to record the battles before they are published.
+     */
+    protected void publishPending(List<Battle> battles) {
+        pendingBattles.putAll(battles);
+    }
+
+    /**
+     * Moves a simulated battle from the pending store to the history.
+     * <p>
+     * The pending battle is first replaced by the finished one in the pending store with a compare-and-set,
+     * so of several concurrent callers exactly one publishes the battle; the others see the finished battle
+     * in the pending store and wait for it in {@link #awaitPublished(Battle)}. The finished battle is locked
+     * before it becomes visible, until it is in the history or, if it could not be recorded, pending again.
+     *
+     * @return the battle as it was published, or {@code null} if another caller has already finished it
+     */
+    protected Battle publishFinished(Battle pending, Battle finished) {
+        synchronized (finished) {
+            if (!pendingBattles.replace(pending, finished)) {
+                return null;
+            }
+            try {
+                recordFinished(finished);
+            } catch (RuntimeException e) {
+                pendingBattles.replace(finished, pending);
+                throw e;
+            }
+            history.append(finished);
+            nameIndex.catchUp();
+            statistics.record(finished);
+            pendingBattles.remove(finished);
+        }
+        notifyFinished(finished);
+        return finished;
+    }
+
+    /**
+     * Waits until the caller publishing the finished battle found in the pending store is done, so a losing
+     * caller never returns a battle that is not recorded yet.
+     */
+    private static void awaitPublished(Battle finished) {
+        synchronized (finished) {
+            // the publishing caller holds the lock until the battle has left the pending store
+        }
+    }
+
+    /**
+     * Called with a simulated battle once its caller has won the transition, before the battle is published.
+     * Persistent subclasses override this to record the finished battle; if it throws, the battle is pending again.
+     */
+    protected void recordFinished(Battle finished) {
+    }
+
+    /**
+     * Appends battles that were finished without ever being pending, such as tournament matches, in one step.
+     * Persistent subclasses override this to record the battles before they are published.
+     * <p>
+     * The finished battle listeners are not called: a tournament finishes up to tens of thousands of matches
+     * at once, which would flood the listeners. The matches are still found in the history.
+     *
+     * @return the battles as they were published
+     */
+    protected List<Battle> publishFinished(List<Battle> battles) {
+        for (Battle battle : battles) {
+            history.append(battle);
+        }
+        nameIndex.catchUp();
+        for (Battle battle : battles) {
+            statistics.record(battle);
+        }
+        return battles;
+    }
+
+    /**
+     * Restores a battle read back from persistent storage. Restoring the same battle again is a no-op,
+     * and a finished battle replaces its pending version.
+     */
+    protected void restoreBattle(Battle battle) {
+        if (history.positionOf(battle.id()) < 0) {
+            if (battle.status() == BattleStatus.FINISHED) {
+                Battle pending = pendingBattles.get(battle.id());
+                history.append(battle);
+                nameIndex.catchUp();
+                statistics.record(battle);
+                if (pending != null) {
+                    pendingBattles.remove(pending);
+                }
+            } else if (pendingBattles.get(battle.id()) == null) {
+                pendingBattles.put(battle);
+            }
+        }
+        restoreNextBattleId(battle.id() + 1);
+    }
+
+    /**
+     * Makes sure no id below the given one is assigned to a new battle.
+     */
+    protected void restoreNextBattleId(long nextBattleId) {
+        battleIdGenerator.accumulateAndGet(nextBattleId, Math::max);
+    }
+
+    /**
+     * @return the id of a newly created battle
+     */
+    protected long allocateBattleId() {
+        return battleIdGenerator.getAndIncrement();
+    }
+
+    protected long nextBattleId() {
+        return battleIdGenerator.get();
+    }
+
+    /**
+     * @return the finished battles from the oldest to the newest, up to the history size at the time of the call
+     */
+    protected Iterator<Battle> finishedBattles() {
+        return history.oldestFirst(0).iterator();
+    }
+
+    protected Collection<Battle> pendingBattles() {
+        return pendingBattles.battles();
+    }
+
+    BattleHistory history() {
+        return history;
+    }
+
+    /**
+     * @param query trimmed name filter, or {@code null}
+     * @param fromPosition history position to start from, inclusive
+     * @param newestFirst direction of the walk
+     * @return the finished battles matching the query, walking the history from the given position
+     */
+    Stream<Battle> finishedBattles(String query, long fromPosition, boolean newestFirst) {
+        Stream<Battle> candidates;
+        if (query != null) {
+            candidates = nameIndex.candidates(query, fromPosition, newestFirst);
+        } else if (newestFirst) {
+            candidates = history.newestFirst(fromPosition);
+        } else {
+            candidates = history.oldestFirst(fromPosition);
+        }
+        return candidates.filter(battle -> matchesQuery(battle, query));
+    }
+
+    private void notifyFinished(Battle battle) {
+        for (Consumer<Battle> listener : finishedBattleListeners) {
+            listener.accept(battle);
+        }
+    }
+
+    static void checkTimeRange(Instant from, Instant to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new InvalidBattleRequestException("'from' must not be after 'to'.");
+        }
+    }
+
+    /**
+     * @return whether the battle finished in the half-open range {@code [from, to)}; a {@code null} bound is open
+     */
+    static boolean isFinishedBetween(Battle battle, Instant from, Instant to) {
+        return (from == null || !battle.finishedAt().isBefore(from))
+                && (to == null || battle.finishedAt().isBefore(to));
+    }
+
+    private long cursorPosition(long battleId) {
+        long position = history.positionOf(battleId);
+        if (position < 0) {
+            throw new BattleNotFoundException(battleId);
+        }
+        return position;
+    }
+
+    private List<String> listPokemonNames() {
+        List<String> allNames = pokeApi.listPokemonNames();
+        if (allNames == null || allNames.size() < 2) {
+            throw new IllegalStateException("Not enough Pokemon available to create a battle.");
+        }
+        return allNames;
+    }
+
+    private static NamePair randomPair(List<String> allNames) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int firstIndex = random.nextInt(allNames.size());
+        int secondIndex;
+        do {
+            secondIndex = random.nextInt(allNames.size());
+        } while (secondIndex == firstIndex);
+        return new NamePair(allNames.get(firstIndex), allNames.get(secondIndex));
+    }
+
+    private Battle newPendingBattle(Pokemon firstPokemon, Pokemon secondPokemon, Instant createdAt) {
+        return new Battle(
+                allocateBattleId(),
+                BattleStatus.PENDING,
+                toPokemonEntity(firstPokemon, randomPower()),
+                toPokemonEntity(secondPokemon, randomPower()),
+                null,
+                createdAt,
+                null
+        );
+    }
+
+    /**
+     * @return the current time truncated to milliseconds, the precision the columnar history keeps, so a battle
+     * reads back from every history exactly as it was returned when it was created or finished
+     */
+    private static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    private static void checkTournamentSize(int size) {
+        if (size < 2 || size > MAX_TOURNAMENT_SIZE || Integer.bitCount(size) != 1) {
+            throw new InvalidBattleRequestException(
+                    "Tournament size must be a power of two between 2 and " + MAX_TOURNAMENT_SIZE + ".");
+        }
+    }
+
+    private Tournament playTournament(List<String> names) {
+        Map<String, Pokemon> pokemonByName = pokeApi.getPokemons(new HashSet<>(names));
+        List<Pokemon> field = new ArrayList<>(names.size());
+        for (String name : names) {
+            Pokemon pokemon = pokemonByName.get(name);
+            if (pokemon == null) {
+                throw new InvalidBattleRequestException("Unknown Pokemon: " + name);
+            }
+            field.add(pokemon);
+        }
+
+        long[] ids = new long[field.size() - 1];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = allocateBattleId();
+        }
+        Bracket bracket = new Bracket(field, ids, now(), new Battle[ids.length]);
+        PokemonEntity champion = ForkJoinPool.commonPool().invoke(new BracketTask(bracket, 0, field.size()));
+
+        List<Battle> matches = publishFinished(Arrays.asList(bracket.matches()));
+        return new Tournament(champion, Integer.numberOfTrailingZeros(field.size()), matches);
+    }
+
+    /**
+     * Plays the part of the bracket between the given entrants on the calling thread.
+     *
+     * @return the winner of the part, with the power it had in its last match
+     */
+    private PokemonEntity playBracket(Bracket bracket, int from, int size) {
+        if (size == 2) {
+            return playMatch(bracket, from, size,
+                    toPokemonEntity(bracket.field().get(from), randomPower()),
+                    toPokemonEntity(bracket.field().get(from + 1), randomPower()));
+        }
+        int half = size / 2;
+        return playMatch(bracket, from, size,
+                withRandomPower(playBracket(bracket, from, half)),
+                withRandomPower(playBracket(bracket, from + half, half)));
+    }
+
+    /**
+     * Plays the final match of the part of the bracket between the given entrants and stores it in its slot.
+     *
+     * @return the entrant that goes on to the next round
+     */
+    private PokemonEntity playMatch(Bracket bracket, int from, int size, PokemonEntity first, PokemonEntity second) {
+        int entrants = bracket.field().size();
+        int round = Integer.numberOfTrailingZeros(size) - 1;
+        int slot = entrants - (entrants >> round) + from / size;
+
+        WinnerSide winnerSide = decideWinner(first, second);
+        bracket.matches()[slot] = new Battle(
+                bracket.ids()[slot],
+                BattleStatus.FINISHED,
+                first,
+                second,
+                winnerSide,
+                bracket.playedAt(),
+                bracket.playedAt()
+        );
+
+        return winnerSide == WinnerSide.FIRST ? first
+                : winnerSide == WinnerSide.SECOND ? second
+                : ThreadLocalRandom.current().nextBoolean() ? first : second;
+    }
+
+    private PokemonEntity withRandomPower(PokemonEntity pokemon) {
+        return new PokemonEntity(pokemon.name(), pokemon.types(), pokemon.imageUrl(), randomPower());
+    }
+
     private WinnerSide decideWinner(PokemonEntity first, PokemonEntity second) {
         return first.power() > second.power() ? WinnerSide.FIRST
                 : second.power() > first.power() ? WinnerSide.SECOND
@@ -168,4 +689,44 @@ public class InMemoryBattleServiceImpl implements BattleService {
                 || Strings.CI.contains(battle.first().name(), query)
                 || Strings.CI.contains(battle.second().name(), query));
     }
+
+    private record NamePair(String first, String second) {
+    }
+
+    /**
+     * A tournament in progress: the entrants in bracket order and one slot per match, in round order.
+     */
+    private record Bracket(List<Pokemon> field, long[] ids, Instant playedAt, Battle[] matches) {
+    }
+
+    /**
+     * Plays a part of the bracket, forking the two halves while the part is large enough to be worth it.
+     * The halves write disjoint match slots, and {@code join} publishes them to the task playing the match
+     * between their winners.
+     */
+    private final class BracketTask extends RecursiveTask<PokemonEntity> {
+
+        private final Bracket bracket;
+        private final int from;
+        private final int size;
+
+        BracketTask(Bracket bracket, int from, int size) {
+            this.bracket = bracket;
+            this.from = from;
+            this.size = size;
+        }
+
+        @Override
+        protected PokemonEntity compute() {
+            if (size <= SEQUENTIAL_BRACKET_SIZE) {
+                return playBracket(bracket, from, size);
+            }
+            int half = size / 2;
+            BracketTask left = new BracketTask(bracket, from, half);
+            left.fork();
+            PokemonEntity rightWinner = new BracketTask(bracket, from + half, half).compute();
+            PokemonEntity leftWinner = left.join();
+            return playMatch(bracket, from, size, withRandomPower(leftWinner), withRandomPower(rightWinner));
+        }
+    }
 }
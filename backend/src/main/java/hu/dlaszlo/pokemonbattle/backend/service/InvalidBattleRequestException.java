@@ -0,0 +1,12 @@
+package hu.dlaszlo.pokemonbattle.backend.service;
+
+/**
+ * Exception thrown when the parameters of a battle request are invalid, e.g. a count or a limit is out of range.
+ * Only this exception is reported to the client as a bad request; any other {@link IllegalArgumentException}
+ * is a bug.
+ */
+public class InvalidBattleRequestException extends IllegalArgumentException {
+    public InvalidBattleRequestException(String message) {
+        super(message);
+    }
+}
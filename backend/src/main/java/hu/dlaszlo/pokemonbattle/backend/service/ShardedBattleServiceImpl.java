@@ -0,0 +1,417 @@
+package hu.dlaszlo.pokemonbattle.backend.service;
+
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApi;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleOdds;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattlePage;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonStats;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Tournament;
+import hu.dlaszlo.pokemonbattle.backend.service.history.BattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.pending.PendingBattleStore;
+import hu.dlaszlo.pokemonbattle.backend.service.stats.PokemonStatistics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link BattleService} that partitions battles across independent in-memory shards, so concurrent
+ * requests do not contend on one id generator, pending store and history.
+ * <p>
+ * Each shard hands out ids from its own blocks: block {@code k} of shard {@code i} is the global block
+ * {@code k * shardCount + i}, so the shard of a battle follows from its id. A shard appends finished
+ * battles in finish time order, which makes (finish time, shard index) a total order consistent with
+ * every shard's history; searches merge the shards newest-first on that order.
+ * <p>
+ * The pending stores of the shards are registered as meters tagged with the {@code shard} index.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "battle.store", havingValue = "sharded")
+public class ShardedBattleServiceImpl implements BattleService, MeterBinder {
+
+    private static final int MAX_RETURNED_BATTLES = 20;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 10_000;
+    private static final int ID_BLOCK_SIZE = 1024;
+
+    private final Shard[] shards;
+    private final int maxBatchSize;
+    private final PokemonStatistics statistics = new PokemonStatistics();
+    private final AtomicInteger nextLocalShardIndex = new AtomicInteger();
+    /**
+     * Assigned round-robin on the first request of each thread, so the request threads spread evenly over the shards.
+     */
+    private final ThreadLocal<Integer> localShardIndex;
+
+    @Autowired
+    public ShardedBattleServiceImpl(PokeApi pokeApi,
+                                    ObjectProvider<BattleHistory> histories,
+                                    @Value("${battle.pending.ttl}") Duration pendingTtl,
+                                    @Value("${battle.pending.max_size}") int pendingMaxSize,
+                                    @Value("${battle.sharded.shard_count}") int shardCount,
+                                    @Value("${battle.create_timeout}") Duration createTimeout) {
+        this(pokeApi, histories::getObject, pendingTtl, pendingMaxSize, shardCount, createTimeout);
+    }
+
+    /**
+     * @param shardCount number of shards, or {@code 0} for one shard per available processor
+     */
+    public ShardedBattleServiceImpl(PokeApi pokeApi,
+                                    Supplier<BattleHistory> histories,
+                                    Duration pendingTtl,
+                                    int pendingMaxSize,
+                                    int shardCount) {
+        this(pokeApi, histories, pendingTtl, pendingMaxSize, shardCount,
+                InMemoryBattleServiceImpl.DEFAULT_CREATE_TIMEOUT);
+    }
+
+    /**
+     * @param shardCount    number of shards, or {@code 0} for one shard per available processor
+     * @param createTimeout time allowed for the PokeAPI calls of {@link #createRandomBattle()}
+     */
+    public ShardedBattleServiceImpl(PokeApi pokeApi,
+                                    Supplier<BattleHistory> histories,
+                                    Duration pendingTtl,
+                                    int pendingMaxSize,
+                                    int shardCount,
+                                    Duration createTimeout) {
+        int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        int shardPendingMaxSize = Math.max(1, pendingMaxSize / count);
+        this.shards = new Shard[count];
+        this.localShardIndex = ThreadLocal.withInitial(
+                () -> Math.floorMod(nextLocalShardIndex.getAndIncrement(), shards.length));
+        for (int i = 0; i < count; i++) {
+            PendingBattleStore pendingBattles = new PendingBattleStore(pendingTtl, shardPendingMaxSize);
+            shards[i] = new Shard(pokeApi, pendingBattles, histories.get(), statistics, createTimeout, i, count);
+        }
+        this.maxBatchSize = (int) Math.min(MAX_BATCH_SIZE, (long) shardPendingMaxSize * count);
+    }
+
+    @Override
+    public Battle createRandomBattle() {
+        return localShard().createRandomBattle();
+    }
+
+    /**
+     * Spreads the batch evenly across the shards, starting with the shard of the calling thread, so no shard
+     * gets more battles than its pending store holds.
+     */
+    @Override
+    public List<Battle> createRandomBattles(int count) {
+        if (count < 1 || count > maxBatchSize) {
+            throw new InvalidBattleRequestException("Count must be between 1 and " + maxBatchSize + ".");
+        }
+        int first = localShardIndex();
+        List<Battle> battles = new ArrayList<>(count);
+        for (int i = 0; i < shards.length; i++) {
+            int part = count / shards.length + (i < count % shards.length ? 1 : 0);
+            if (part > 0) {
+                battles.addAll(shards[(first + i) % shards.length].createRandomBattles(part));
+            }
+        }
+        return battles;
+    }
+
+    /**
+     * Runs the whole tournament on the shard of the calling thread.
+     */
+    @Override
+    public Tournament runTournament(List<String> names) {
+        return localShard().runTournament(names);
+    }
+
+    /**
+     * Runs the whole tournament on the shard of the calling thread.
+     */
+    @Override
+    public Tournament runRandomTournament(int size) {
+        return localShard().runRandomTournament(size);
+    }
+
+    @Override
+    public Battle simulateBattle(Long battleId) {
+        Objects.requireNonNull(battleId, "battleId must not be null");
+        return shardOf(battleId).simulateBattle(battleId);
+    }
+
+    @Override
+    public BattleOdds battleOdds(Long battleId, int rounds) {
+        Objects.requireNonNull(battleId, "battleId must not be null");
+        return shardOf(battleId).battleOdds(battleId, rounds);
+    }
+
+    @Override
+    public List<Battle> searchBattles(String nameFilter) {
+        return searchBattles(nameFilter, null, null, MAX_RETURNED_BATTLES).battles();
+    }
+
+    @Override
+    public BattlePage searchBattles(String queryParam, Long before, Long after, int limit) {
+        long startTime = System.nanoTime();
+        try {
+            log.info("searchBattles() with cursor started");
+            if (before != null && after != null) {
+                throw new InvalidBattleRequestException("Only one of 'before' and 'after' can be set.");
+            }
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                throw new InvalidBattleRequestException("Limit must be between 1 and " + MAX_PAGE_SIZE + ".");
+            }
+            String query = StringUtils.trimToNull(queryParam);
+            boolean newestFirst = after == null;
+            Cursor cursor = before != null ? cursor(before) : after != null ? cursor(after) : null;
+
+            PriorityQueue<Head> heads = new PriorityQueue<>(newestFirst ? Head.ORDER.reversed() : Head.ORDER);
+            for (Shard shard : shards) {
+                long fromPosition = cursor == null ? shard.history().size() - 1
+                        : newestFirst ? countBefore(shard, cursor) - 1
+                        : countBefore(shard, cursor) + (shard.index == cursor.shard() ? 1 : 0);
+                Iterator<Battle> battles = shard.finishedBattles(query, fromPosition, newestFirst).iterator();
+                if (battles.hasNext()) {
+                    heads.add(new Head(battles.next(), shard.index, battles));
+                }
+            }
+
+            List<Battle> battles = new ArrayList<>();
+            while (battles.size() <= limit && !heads.isEmpty()) {
+                Head head = heads.poll();
+                battles.add(head.battle());
+                if (head.rest().hasNext()) {
+                    heads.add(new Head(head.rest().next(), head.shard(), head.rest()));
+                }
+            }
+
+            boolean hasMore = battles.size() > limit;
+            if (hasMore) {
+                battles.remove(limit);
+            }
+            if (!newestFirst) {
+                Collections.reverse(battles);
+            }
+            Long nextCursor = !hasMore ? null
+                    : newestFirst ? battles.get(battles.size() - 1).id()
+                    : battles.get(0).id();
+
+            return new BattlePage(battles, nextCursor);
+        } finally {
+            long endTime = System.nanoTime();
+            log.info("searchBattles() with cursor ended in {} ms.",
+                    TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+        }
+    }
+
+    /**
+     * Merges the shards oldest-first on (finish time, shard index), the reverse of the search order.
+     */
+    @Override
+    public Stream<Battle> exportBattles(String queryParam, Instant from, Instant to) {
+        InMemoryBattleServiceImpl.checkTimeRange(from, to);
+        String query = StringUtils.trimToNull(queryParam);
+        PriorityQueue<Head> heads = new PriorityQueue<>(Head.ORDER);
+        for (Shard shard : shards) {
+            Iterator<Battle> battles = shard.finishedBattles(query, 0, false).iterator();
+            if (battles.hasNext()) {
+                heads.add(new Head(battles.next(), shard.index, battles));
+            }
+        }
+        Iterator<Battle> merged = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public Battle next() {
+                Head head = heads.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+                if (head.rest().hasNext()) {
+                    heads.add(new Head(head.rest().next(), head.shard(), head.rest()));
+                }
+                return head.battle();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged,
+                        Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .filter(battle -> InMemoryBattleServiceImpl.isFinishedBetween(battle, from, to));
+    }
+
+    @Override
+    public void addFinishedBattleListener(Consumer<Battle> listener) {
+        for (Shard shard : shards) {
+            shard.addFinishedBattleListener(listener);
+        }
+    }
+
+    /**
+     * Every shard records into the same statistics, so the leaderboard needs no merge.
+     */
+    @Override
+    public List<PokemonStats> leaderboard(int limit) {
+        return shards[0].leaderboard(limit);
+    }
+
+    @Override
+    public PokemonStats pokemonStats(String name) {
+        return shards[0].pokemonStats(name);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Shard shard : shards) {
+            shard.pendingBattles.bindTo(registry, Tags.of("shard", String.valueOf(shard.index)));
+        }
+    }
+
+    /**
+     * @return the shard new battles of the calling thread are created on
+     */
+    private Shard localShard() {
+        return shards[localShardIndex()];
+    }
+
+    private int localShardIndex() {
+        return localShardIndex.get();
+    }
+
+    private Shard shardOf(long battleId) {
+        return shards[(int) Math.floorMod(Math.floorDiv(battleId, ID_BLOCK_SIZE), (long) shards.length)];
+    }
+
+    private Cursor cursor(long battleId) {
+        Shard shard = shardOf(battleId);
+        long position = shard.history().positionOf(battleId);
+        Battle battle = position < 0 ? null : shard.history().get(position);
+        if (battle == null) {
+            throw new BattleNotFoundException(battleId);
+        }
+        return new Cursor(shard.index, position, battle.finishedAt());
+    }
+
+    /**
+     * @return the number of battles of the shard that precede the cursor battle in the merge order
+     */
+    private static long countBefore(Shard shard, Cursor cursor) {
+        if (shard.index == cursor.shard()) {
+            return cursor.position();
+        }
+        BattleHistory history = shard.history();
+        long low = 0;
+        long high = history.size();
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            Battle battle = history.get(middle);
+            if (battle != null && (battle.finishedAt().isBefore(cursor.finishedAt())
+                    || battle.finishedAt().equals(cursor.finishedAt()) && shard.index < cursor.shard())) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private record Cursor(int shard, long position, Instant finishedAt) {
+    }
+
+    /**
+     * The next battle of one shard in a merge, followed by the rest of that shard's battles.
+     */
+    private record Head(Battle battle, int shard, Iterator<Battle> rest) {
+
+        static final Comparator<Head> ORDER = Comparator
+                .comparing((Head head) -> head.battle().finishedAt())
+                .thenComparingInt(Head::shard);
+    }
+
+    /**
+     * One partition: allocates ids from its own blocks and appends finished battles in finish time order.
+     */
+    private static final class Shard extends InMemoryBattleServiceImpl {
+
+        private final PendingBattleStore pendingBattles;
+        private final int index;
+        private final int shardCount;
+        private final AtomicLong idSequence = new AtomicLong(0);
+        private final ReentrantLock publishLock = new ReentrantLock();
+        private Instant lastFinishedAt = Instant.MIN;
+
+        Shard(PokeApi pokeApi, PendingBattleStore pendingBattles, BattleHistory history, PokemonStatistics statistics,
+              Duration createTimeout, int index, int shardCount) {
+            super(pokeApi, pendingBattles, history, statistics, createTimeout);
+            this.pendingBattles = pendingBattles;
+            this.index = index;
+            this.shardCount = shardCount;
+        }
+
+        @Override
+        protected long allocateBattleId() {
+            long sequence = idSequence.getAndIncrement();
+            long block = sequence / ID_BLOCK_SIZE * shardCount + index;
+            return block * ID_BLOCK_SIZE + sequence % ID_BLOCK_SIZE;
+        }
+
+        @Override
+        protected Battle publishFinished(Battle pending, Battle finished) {
+            publishLock.lock();
+            try {
+                Battle published = finished;
+                if (finished.finishedAt().isBefore(lastFinishedAt)) {
+                    published = new Battle(finished.id(), finished.status(), finished.first(), finished.second(),
+                            finished.winnerSide(), finished.createdAt(), lastFinishedAt);
+                }
+                lastFinishedAt = published.finishedAt();
+                return super.publishFinished(pending, published);
+            } finally {
+                publishLock.unlock();
+            }
+        }
+
+        @Override
+        protected List<Battle> publishFinished(List<Battle> battles) {
+            publishLock.lock();
+            try {
+                List<Battle> published = new ArrayList<>(battles.size());
+                for (Battle finished : battles) {
+                    if (finished.finishedAt().isBefore(lastFinishedAt)) {
+                        finished = new Battle(finished.id(), finished.status(), finished.first(), finished.second(),
+                                finished.winnerSide(), finished.createdAt(), lastFinishedAt);
+                    }
+                    lastFinishedAt = finished.finishedAt();
+                    published.add(finished);
+                }
+                return super.publishFinished(published);
+            } finally {
+                publishLock.unlock();
+            }
+        }
+    }
+}
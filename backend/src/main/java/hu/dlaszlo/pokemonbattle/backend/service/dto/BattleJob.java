@@ -0,0 +1,23 @@
+package hu.dlaszlo.pokemonbattle.backend.service.dto;
+
+import java.time.Instant;
+
+/**
+ * Represents the state of an asynchronous battle creation job.
+ *
+ * @param id ID of the job
+ * @param status Current status of the job (QUEUED, RUNNING, SUCCEEDED, FAILED)
+ * @param battle The created pending battle, only set if status is SUCCEEDED
+ * @param error The reason of the failure, only set if status is FAILED
+ * @param submittedAt The timestamp when the job was accepted
+ * @param completedAt The timestamp when the job succeeded or failed, or null if it is still queued or running
+ */
+public record BattleJob(
+        Long id,
+        BattleJobStatus status,
+        Battle battle,
+        String error,
+        Instant submittedAt,
+        Instant completedAt
+) {
+}
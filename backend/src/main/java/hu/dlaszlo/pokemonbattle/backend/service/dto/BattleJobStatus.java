@@ -0,0 +1,15 @@
+package hu.dlaszlo.pokemonbattle.backend.service.dto;
+
+/**
+ * Defines the states of an asynchronous battle creation job
+ */
+public enum BattleJobStatus {
+    /** The job is waiting for a free worker. */
+    QUEUED,
+    /** A worker is creating the battle. */
+    RUNNING,
+    /** The battle has been created. */
+    SUCCEEDED,
+    /** The battle could not be created; the error message tells why. */
+    FAILED
+}
@@ -0,0 +1,23 @@
+package hu.dlaszlo.pokemonbattle.backend.service.dto;
+
+/**
+ * Represents the estimated outcome of a battle, based on repeated randomized simulations of the matchup.
+ *
+ * @param battleId The id of the battle
+ * @param rounds The number of simulated rounds the probabilities are based on
+ * @param firstWinProbability The share of the rounds won by the first Pokemon
+ * @param secondWinProbability The share of the rounds won by the second Pokemon
+ * @param drawProbability The share of the rounds that ended in a draw
+ * @param firstTypeMultiplier The type effectiveness of the first Pokemon against the second one (0 - 4)
+ * @param secondTypeMultiplier The type effectiveness of the second Pokemon against the first one (0 - 4)
+ */
+public record BattleOdds(
+        Long battleId,
+        int rounds,
+        double firstWinProbability,
+        double secondWinProbability,
+        double drawProbability,
+        double firstTypeMultiplier,
+        double secondTypeMultiplier
+) {
+}
@@ -0,0 +1,17 @@
+package hu.dlaszlo.pokemonbattle.backend.service.dto;
+
+import java.util.List;
+
+/**
+ * One page of finished battles returned by a cursor-based search.
+ *
+ * @param battles The battles of the page, ordered from newest to oldest
+ * @param nextCursor The battle id to pass as the next cursor in the same direction
+ *                   ({@code before} when paging back, {@code after} when paging forward),
+ *                   or null if there are no more matching battles in that direction
+ */
+public record BattlePage(
+        List<Battle> battles,
+        Long nextCursor
+) {
+}
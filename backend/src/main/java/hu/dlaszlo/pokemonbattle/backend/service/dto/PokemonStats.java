@@ -0,0 +1,21 @@
+package hu.dlaszlo.pokemonbattle.backend.service.dto;
+
+/**
+ * Represents the aggregated results of a Pokemon over every finished battle it took part in.
+ *
+ * @param name The name of the Pokemon
+ * @param battles The number of finished battles the Pokemon took part in
+ * @param wins The number of battles the Pokemon won
+ * @param losses The number of battles the Pokemon lost
+ * @param draws The number of battles that ended in a draw
+ * @param averagePower The average combat power of the Pokemon over its battles, or 0 if it has no battles
+ */
+public record PokemonStats(
+        String name,
+        long battles,
+        long wins,
+        long losses,
+        long draws,
+        double averagePower
+) {
+}
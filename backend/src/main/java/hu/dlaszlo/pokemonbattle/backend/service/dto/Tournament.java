@@ -0,0 +1,20 @@
+package hu.dlaszlo.pokemonbattle.backend.service.dto;
+
+import java.util.List;
+
+/**
+ * Represents the result of a single-elimination tournament.
+ *
+ * @param champion The winner of the final, with the power it had in the final
+ * @param rounds The number of rounds played (log2 of the number of entrants)
+ * @param matches Every match as a finished battle, round by round: the first half of the list is the first round,
+ *                the next quarter the second round, and so on, with the final as the last element. Within a round
+ *                the matches follow the bracket, so the winners of matches {@code 2i} and {@code 2i + 1} meet in
+ *                match {@code i} of the next round
+ */
+public record Tournament(
+        PokemonEntity champion,
+        int rounds,
+        List<Battle> matches
+) {
+}
@@ -0,0 +1,112 @@
+package hu.dlaszlo.pokemonbattle.backend.service.durable;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.WinnerSide;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary encoding of {@link Battle} records shared by the write-ahead log and the snapshot file.
+ * <p>
+ * Strings read back are deduplicated through the codec instance, so battles restored from disk
+ * share their Pokemon names, types and image URLs instead of holding one copy each.
+ */
+class BattleCodec {
+
+    private static final int NO_VALUE = -1;
+
+    private final Map<String, String> strings = new HashMap<>();
+
+    static void writeBattle(DataOutput out, Battle battle) throws IOException {
+        out.writeLong(battle.id());
+        out.writeByte(battle.status().ordinal());
+        writePokemon(out, battle.first());
+        writePokemon(out, battle.second());
+        out.writeByte(battle.winnerSide() == null ? NO_VALUE : battle.winnerSide().ordinal());
+        writeInstant(out, battle.createdAt());
+        writeInstant(out, battle.finishedAt());
+    }
+
+    Battle readBattle(DataInput in) throws IOException {
+        long id = in.readLong();
+        BattleStatus status = BattleStatus.values()[in.readByte()];
+        PokemonEntity first = readPokemon(in);
+        PokemonEntity second = readPokemon(in);
+        byte winner = in.readByte();
+        return new Battle(
+                id,
+                status,
+                first,
+                second,
+                winner == NO_VALUE ? null : WinnerSide.values()[winner],
+                readInstant(in),
+                readInstant(in)
+        );
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    String readString(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return deduplicate(in.readUTF());
+    }
+
+    String readString(ByteBuffer buffer) throws IOException {
+        if (buffer.get() == 0) {
+            return null;
+        }
+        byte[] encoded = new byte[2 + Short.toUnsignedInt(buffer.getShort(buffer.position()))];
+        buffer.get(encoded);
+        return deduplicate(new DataInputStream(new ByteArrayInputStream(encoded)).readUTF());
+    }
+
+    static void writeInstant(DataOutput out, Instant instant) throws IOException {
+        out.writeLong(instant == null ? Long.MIN_VALUE : instant.getEpochSecond());
+        out.writeInt(instant == null ? 0 : instant.getNano());
+    }
+
+    static Instant readInstant(DataInput in) throws IOException {
+        long seconds = in.readLong();
+        int nanos = in.readInt();
+        return seconds == Long.MIN_VALUE ? null : Instant.ofEpochSecond(seconds, nanos);
+    }
+
+    static Instant readInstant(ByteBuffer buffer) {
+        long seconds = buffer.getLong();
+        int nanos = buffer.getInt();
+        return seconds == Long.MIN_VALUE ? null : Instant.ofEpochSecond(seconds, nanos);
+    }
+
+    private String deduplicate(String value) {
+        String existing = strings.putIfAbsent(value, value);
+        return existing == null ? value : existing;
+    }
+
+    private static void writePokemon(DataOutput out, PokemonEntity pokemon) throws IOException {
+        writeString(out, pokemon.name());
+        writeString(out, pokemon.types());
+        writeString(out, pokemon.imageUrl());
+        out.writeByte(pokemon.power());
+    }
+
+    private PokemonEntity readPokemon(DataInput in) throws IOException {
+        return new PokemonEntity(readString(in), readString(in), readString(in), in.readByte());
+    }
+}
@@ -0,0 +1,192 @@
+package hu.dlaszlo.pokemonbattle.backend.service.durable;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.WinnerSide;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary snapshot of all battles.
+ * <p>
+ * Pokemon are dictionary-encoded: the first time a (name, types, image URL) triple occurs it is written
+ * as a dictionary entry, and every battle refers to it by index, so a battle costs a few dozen bytes.
+ * The header stores the next battle id and the first write-ahead log segment that is not covered by the
+ * snapshot; the file ends with a CRC32 of its content. The file is written next to its final name and
+ * moved into place atomically, so a crash during a snapshot leaves the previous snapshot intact.
+ * It is read back through a memory mapping, so loading does not copy it through stream buffers.
+ */
+public final class BattleSnapshotFile {
+
+    private static final int MAGIC = 0x50424E53;
+    private static final int VERSION = 1;
+    private static final byte DICTIONARY_ENTRY = 1;
+    private static final byte BATTLE = 2;
+    private static final byte END = 0;
+    private static final int NO_VALUE = -1;
+    private static final int HEADER_SIZE = 24;
+    private static final int TRAILER_SIZE = 8;
+
+    /**
+     * Header of a snapshot file.
+     *
+     * @param walSegment the first write-ahead log segment to replay after loading the snapshot
+     * @param nextBattleId the next battle id to assign
+     * @param battleCount the number of battles in the snapshot
+     */
+    public record Header(long walSegment, long nextBattleId, long battleCount) {
+    }
+
+    private BattleSnapshotFile() {
+    }
+
+    /**
+     * Writes a snapshot: finished battles in history order, followed by pending battles.
+     */
+    public static void write(Path file, long walSegment, long nextBattleId,
+                             Iterator<Battle> finished, Iterable<Battle> pending) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream fileOut = Channels.newOutputStream(channel);
+             DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                     new BufferedOutputStream(fileOut, 1 << 16), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(walSegment);
+            out.writeLong(nextBattleId);
+
+            Map<PokemonTemplate, Integer> dictionary = new HashMap<>();
+            while (finished.hasNext()) {
+                writeBattle(out, finished.next(), dictionary);
+            }
+            for (Battle battle : pending) {
+                writeBattle(out, battle, dictionary);
+            }
+            out.writeByte(END);
+            out.flush();
+            new DataOutputStream(fileOut).writeLong(crc.getValue());
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a memory-mapped snapshot in the order it was written.
+     *
+     * @throws IOException if the file is truncated or its checksum does not match
+     */
+    public static Header read(Path file, Consumer<Battle> consumer) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE + TRAILER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Invalid battle snapshot file size: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int contentSize = buffer.capacity() - TRAILER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, contentSize));
+        if (buffer.getLong(contentSize) != crc.getValue()) {
+            throw new IOException("Battle snapshot checksum mismatch: " + file);
+        }
+        buffer.limit(contentSize);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a battle snapshot file: " + file);
+        }
+        long walSegment = buffer.getLong();
+        long nextBattleId = buffer.getLong();
+
+        BattleCodec codec = new BattleCodec();
+        List<PokemonTemplate> dictionary = new ArrayList<>();
+        long count = 0;
+        byte type;
+        while ((type = buffer.get()) != END) {
+            if (type == DICTIONARY_ENTRY) {
+                dictionary.add(new PokemonTemplate(codec.readString(buffer), codec.readString(buffer),
+                        codec.readString(buffer)));
+            } else if (type == BATTLE) {
+                consumer.accept(readBattle(buffer, dictionary));
+                count++;
+            } else {
+                throw new IOException("Corrupt battle snapshot file: " + file);
+            }
+        }
+        return new Header(walSegment, nextBattleId, count);
+    }
+
+    private static void writeBattle(DataOutputStream out, Battle battle,
+                                    Map<PokemonTemplate, Integer> dictionary) throws IOException {
+        int first = dictionaryIndex(out, battle.first(), dictionary);
+        int second = dictionaryIndex(out, battle.second(), dictionary);
+        out.writeByte(BATTLE);
+        out.writeLong(battle.id());
+        out.writeByte(battle.status().ordinal());
+        out.writeInt(first);
+        out.writeByte(battle.first().power());
+        out.writeInt(second);
+        out.writeByte(battle.second().power());
+        out.writeByte(battle.winnerSide() == null ? NO_VALUE : battle.winnerSide().ordinal());
+        BattleCodec.writeInstant(out, battle.createdAt());
+        BattleCodec.writeInstant(out, battle.finishedAt());
+    }
+
+    private static Battle readBattle(ByteBuffer buffer, List<PokemonTemplate> dictionary) {
+        long id = buffer.getLong();
+        BattleStatus status = BattleStatus.values()[buffer.get()];
+        PokemonEntity first = dictionary.get(buffer.getInt()).withPower(buffer.get());
+        PokemonEntity second = dictionary.get(buffer.getInt()).withPower(buffer.get());
+        byte winner = buffer.get();
+        return new Battle(
+                id,
+                status,
+                first,
+                second,
+                winner == NO_VALUE ? null : WinnerSide.values()[winner],
+                BattleCodec.readInstant(buffer),
+                BattleCodec.readInstant(buffer)
+        );
+    }
+
+    private static int dictionaryIndex(DataOutputStream out, PokemonEntity pokemon,
+                                       Map<PokemonTemplate, Integer> dictionary) throws IOException {
+        PokemonTemplate key = new PokemonTemplate(pokemon.name(), pokemon.types(), pokemon.imageUrl());
+        Integer index = dictionary.get(key);
+        if (index == null) {
+            index = dictionary.size();
+            dictionary.put(key, index);
+            out.writeByte(DICTIONARY_ENTRY);
+            BattleCodec.writeString(out, pokemon.name());
+            BattleCodec.writeString(out, pokemon.types());
+            BattleCodec.writeString(out, pokemon.imageUrl());
+        }
+        return index;
+    }
+
+    private record PokemonTemplate(String name, String types, String imageUrl) {
+
+        PokemonEntity withPower(int power) {
+            return new PokemonEntity(name, types, imageUrl, power);
+        }
+    }
+}
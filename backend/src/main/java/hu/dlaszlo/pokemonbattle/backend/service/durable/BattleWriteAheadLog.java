@@ -0,0 +1,274 @@
+package hu.dlaszlo.pokemonbattle.backend.service.durable;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped write-ahead log of battle records.
+ * <p>
+ * The log is a sequence of fixed-size segment files ({@code wal-<index>.log}); each record is
+ * {@code [length][crc32][payload]}, and a zero length marks the end of a segment.
+ * Appending copies the record into the mapped segment under a short lock and returns its log sequence
+ * number (LSN). Durability uses group commit: the first thread that waits for an LSN becomes the leader
+ * and forces everything written so far with one {@code force} call, while the others wait for it, so
+ * a burst of concurrent writers shares a single disk flush.
+ * <p>
+ * A reopened log always continues in a new segment, so a torn record at the end of the previous
+ * segment is never overwritten and is simply skipped on replay.
+ */
+@Slf4j
+public class BattleWriteAheadLog implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final Path directory;
+    private final int segmentSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition durableCondition = lock.newCondition();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long segmentIndex;
+    private long writtenLsn;
+    private long durableLsn;
+    private boolean flushing;
+    private boolean closed;
+
+    public BattleWriteAheadLog(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            List<Long> segments = segmentIndexes(directory);
+            openSegment(segments.isEmpty() ? 0 : segments.get(segments.size() - 1) + 1);
+            durableLsn = writtenLsn;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open write-ahead log in " + directory, e);
+        }
+    }
+
+    /**
+     * Reads every intact record of the log, starting with the given segment.
+     *
+     * @param directory the log directory
+     * @param fromSegment the first segment to read
+     * @param consumer receives the battles in log order
+     * @return the number of records read
+     */
+    public static long replay(Path directory, long fromSegment, Consumer<Battle> consumer) throws IOException {
+        BattleCodec codec = new BattleCodec();
+        CRC32 crc = new CRC32();
+        long count = 0;
+        if (!Files.isDirectory(directory)) {
+            return count;
+        }
+        for (long index : segmentIndexes(directory)) {
+            if (index < fromSegment) {
+                continue;
+            }
+            try (FileChannel segment = FileChannel.open(segmentPath(directory, index), StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = segment.map(FileChannel.MapMode.READ_ONLY, 0, segment.size());
+                while (mapped.remaining() >= RECORD_HEADER_SIZE) {
+                    int length = mapped.getInt();
+                    int checksum = mapped.getInt();
+                    if (length <= 0 || length > mapped.remaining()) {
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    mapped.get(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) {
+                        log.warn("Torn write-ahead log record skipped in segment {}", index);
+                        break;
+                    }
+                    consumer.accept(codec.readBattle(new DataInputStream(new ByteArrayInputStream(payload))));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Copies a battle record into the log. The record is not durable until {@link #awaitDurable(long)} returns.
+     *
+     * @param battle the battle to log
+     * @return the LSN that must be durable for the record to survive a crash
+     */
+    public long append(Battle battle) {
+        byte[] payload = encode(battle);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+        if (recordSize + RECORD_HEADER_SIZE > segmentSize) {
+            throw new IllegalArgumentException("Record does not fit into a log segment: " + recordSize);
+        }
+        lock.lock();
+        try {
+            ensureOpen();
+            if (buffer.remaining() < recordSize + RECORD_HEADER_SIZE) {
+                rollSegment();
+            }
+            buffer.putInt(payload.length);
+            buffer.putInt((int) crc.getValue());
+            buffer.put(payload);
+            writtenLsn += recordSize;
+            return writtenLsn;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write to write-ahead log", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until every record up to the given LSN is forced to disk, flushing it as the group leader if needed.
+     *
+     * @param lsn the LSN returned by {@link #append(Battle)}
+     */
+    public void awaitDurable(long lsn) {
+        lock.lock();
+        try {
+            while (durableLsn < lsn) {
+                if (flushing) {
+                    durableCondition.awaitUninterruptibly();
+                    continue;
+                }
+                flushing = true;
+                long target = writtenLsn;
+                long segmentStart = segmentIndex * segmentSize;
+                MappedByteBuffer segment = buffer;
+                int from = (int) (Math.max(durableLsn, segmentStart) - segmentStart);
+                int to = (int) (target - segmentStart);
+                lock.unlock();
+                try {
+                    segment.force(from, to - from);
+                } finally {
+                    lock.lock();
+                    durableLsn = Math.max(durableLsn, target);
+                    flushing = false;
+                    durableCondition.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces the current segment and continues the log in a new one.
+     *
+     * @return the index of the new segment; every record appended from now on is in this segment or later
+     */
+    public long rotate() {
+        lock.lock();
+        try {
+            ensureOpen();
+            rollSegment();
+            return segmentIndex;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot rotate write-ahead log", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the segments that are fully covered by a snapshot.
+     *
+     * @param segment the first segment that must be kept
+     */
+    public void deleteSegmentsBefore(long segment) throws IOException {
+        for (long index : segmentIndexes(directory)) {
+            if (index < segment) {
+                Files.deleteIfExists(segmentPath(directory, index));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (!closed) {
+                closed = true;
+                buffer.force();
+                durableLsn = writtenLsn;
+                channel.close();
+                durableCondition.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        buffer.force();
+        durableLsn = writtenLsn;
+        channel.close();
+        openSegment(segmentIndex + 1);
+        durableCondition.signalAll();
+    }
+
+    private void openSegment(long index) throws IOException {
+        channel = FileChannel.open(segmentPath(directory, index),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segmentIndex = index;
+        writtenLsn = index * segmentSize;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+    }
+
+    private static byte[] encode(Battle battle) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            BattleCodec.writeBattle(new DataOutputStream(bytes), battle);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Path segmentPath(Path directory, long index) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private static List<Long> segmentIndexes(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package hu.dlaszlo.pokemonbattle.backend.service.history;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of finished battles.
+ * Every appended battle gets a position; positions are assigned in append order,
+ * so a higher position always means a more recently finished battle.
+ */
+public interface BattleHistory {
+
+    /**
+     * Appends a finished battle to the end of the log.
+     *
+     * @param battle the finished battle
+     * @return the position assigned to the battle
+     */
+    long append(Battle battle);
+
+    /**
+     * @return the number of positions reserved so far (including appends still in progress)
+     */
+    long size();
+
+    /**
+     * @param position position of the battle in the log
+     * @return the battle stored at the given position, or {@code null} if the append is still in progress
+     */
+    Battle get(long position);
+
+    /**
+     * @param battleId id of the battle
+     * @return the position of the finished battle with the given id, or {@code -1} if it is not in the log
+     */
+    long positionOf(long battleId);
+
+    /**
+     * @param battleId id of the battle
+     * @return the finished battle with the given id, or {@code null} if it is not in the log
+     */
+    default Battle findById(long battleId) {
+        long position = positionOf(battleId);
+        return position < 0 ? null : get(position);
+    }
+
+    /**
+     * Streams the battles from the newest to the oldest without taking a snapshot copy.
+     * Battles appended after the stream was created are not visible to it.
+     *
+     * @return stream of battles, ordered from newest to oldest
+     */
+    default Stream<Battle> newestFirst() {
+        return newestFirst(size() - 1);
+    }
+
+    /**
+     * Streams the battles from the given position down to the oldest one.
+     *
+     * @param fromPosition the first (newest) position to return; a negative value yields an empty stream
+     * @return stream of battles, ordered from newest to oldest
+     */
+    Stream<Battle> newestFirst(long fromPosition);
+
+    /**
+     * Streams the battles from the given position up to the newest one that existed when the stream was created.
+     *
+     * @param fromPosition the first (oldest) position to return
+     * @return stream of battles, ordered from oldest to newest
+     */
+    Stream<Battle> oldestFirst(long fromPosition);
+
+}
@@ -0,0 +1,201 @@
+package hu.dlaszlo.pokemonbattle.backend.service.history;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.WinnerSide;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Append-only {@link BattleHistory} that keeps battles in primitive columns instead of objects.
+ * <p>
+ * Each row stores the battle id, the two Pokemon as codes into a dictionary of distinct
+ * (name, types, image) triples, their powers, the status and winner packed into one byte,
+ * and both timestamps as epoch milliseconds; columns are allocated in fixed-size chunks.
+ * {@link Battle} records are only materialized for the rows that are read, and timestamps
+ * read back with millisecond precision.
+ * <p>
+ * Appends are serialized by a lock and published by a volatile size, so every row below
+ * the size is complete and reads never block. Positions are indexed by battle id in chunks
+ * of consecutive ids, which costs four bytes per id for the dense ids of the battle id generator.
+ */
+public class ColumnarBattleHistory implements BattleHistory {
+
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int ID_CHUNK_BITS = 12;
+    private static final int ID_CHUNK_MASK = (1 << ID_CHUNK_BITS) - 1;
+    private static final int NO_WINNER = 3;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final BattleStatus[] STATUSES = BattleStatus.values();
+    private static final WinnerSide[] WINNER_SIDES = WinnerSide.values();
+    private static final VarHandle POSITIONS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Map<PokemonTemplate, Integer> pokemonCodes = new HashMap<>();
+    private final Map<Long, int[]> positionsById = new ConcurrentHashMap<>();
+    private volatile PokemonTemplate[] pokemon = new PokemonTemplate[64];
+    private volatile Chunk[] chunks = new Chunk[16];
+    private volatile int size;
+
+    @Override
+    public long append(Battle battle) {
+        Objects.requireNonNull(battle, "battle must not be null");
+        long battleId = battle.id();
+        appendLock.lock();
+        try {
+            int position = size;
+            if (position == Integer.MAX_VALUE) {
+                throw new IllegalStateException("Battle history is full, capacity: " + Integer.MAX_VALUE);
+            }
+            Chunk chunk = chunk(position >>> CHUNK_BITS);
+            int offset = position & CHUNK_MASK;
+            chunk.ids[offset] = battleId;
+            chunk.firstPokemon[offset] = pokemonCode(battle.first());
+            chunk.firstPower[offset] = power(battle.first());
+            chunk.secondPokemon[offset] = pokemonCode(battle.second());
+            chunk.secondPower[offset] = power(battle.second());
+            chunk.outcomes[offset] = outcome(battle.status(), battle.winnerSide());
+            chunk.createdAt[offset] = epochMillis(battle.createdAt());
+            chunk.finishedAt[offset] = epochMillis(battle.finishedAt());
+            size = position + 1;
+
+            int[] positions = positionsById.computeIfAbsent(battleId >> ID_CHUNK_BITS, k -> new int[1 << ID_CHUNK_BITS]);
+            POSITIONS.setRelease(positions, (int) (battleId & ID_CHUNK_MASK), position + 1);
+            return position;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public Battle get(long position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Invalid history position: " + position);
+        }
+        return materialize((int) position);
+    }
+
+    @Override
+    public long positionOf(long battleId) {
+        int[] positions = positionsById.get(battleId >> ID_CHUNK_BITS);
+        return positions == null ? -1 : (int) POSITIONS.getAcquire(positions, (int) (battleId & ID_CHUNK_MASK)) - 1;
+    }
+
+    @Override
+    public Stream<Battle> newestFirst(long fromPosition) {
+        long start = Math.min(fromPosition, size - 1);
+        return LongStream.iterate(start, position -> position >= 0, position -> position - 1)
+                .mapToObj(position -> materialize((int) position));
+    }
+
+    @Override
+    public Stream<Battle> oldestFirst(long fromPosition) {
+        return LongStream.range(Math.max(fromPosition, 0), size)
+                .mapToObj(position -> materialize((int) position));
+    }
+
+    private Battle materialize(int position) {
+        Chunk chunk = chunks[position >>> CHUNK_BITS];
+        PokemonTemplate[] dictionary = pokemon;
+        int offset = position & CHUNK_MASK;
+        int outcome = chunk.outcomes[offset];
+        int winner = outcome & 0b11;
+        return new Battle(
+                chunk.ids[offset],
+                STATUSES[outcome >>> 2],
+                dictionary[chunk.firstPokemon[offset]].withPower(chunk.firstPower[offset]),
+                dictionary[chunk.secondPokemon[offset]].withPower(chunk.secondPower[offset]),
+                winner == NO_WINNER ? null : WINNER_SIDES[winner],
+                instant(chunk.createdAt[offset]),
+                instant(chunk.finishedAt[offset])
+        );
+    }
+
+    private Chunk chunk(int index) {
+        Chunk[] current = chunks;
+        if (index == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            chunks = current;
+        }
+        if (current[index] == null) {
+            current[index] = new Chunk();
+        }
+        return current[index];
+    }
+
+    private int pokemonCode(PokemonEntity entity) {
+        PokemonTemplate template = new PokemonTemplate(entity.name(), entity.types(), entity.imageUrl());
+        Integer code = pokemonCodes.get(template);
+        if (code == null) {
+            code = pokemonCodes.size();
+            PokemonTemplate[] dictionary = pokemon;
+            if (code == dictionary.length) {
+                dictionary = Arrays.copyOf(dictionary, dictionary.length * 2);
+            }
+            dictionary[code] = template;
+            pokemon = dictionary;
+            pokemonCodes.put(template, code);
+        }
+        return code;
+    }
+
+    private static byte power(PokemonEntity entity) {
+        int power = entity.power();
+        if (power < Byte.MIN_VALUE || power > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Power out of range: " + power);
+        }
+        return (byte) power;
+    }
+
+    private static byte outcome(BattleStatus status, WinnerSide winnerSide) {
+        return (byte) (status.ordinal() << 2 | (winnerSide == null ? NO_WINNER : winnerSide.ordinal()));
+    }
+
+    private static long epochMillis(Instant instant) {
+        return instant == null ? NO_TIMESTAMP : instant.toEpochMilli();
+    }
+
+    private static Instant instant(long epochMillis) {
+        return epochMillis == NO_TIMESTAMP ? null : Instant.ofEpochMilli(epochMillis);
+    }
+
+    private record PokemonTemplate(String name, String types, String imageUrl) {
+
+        PokemonEntity withPower(int power) {
+            return new PokemonEntity(name, types, imageUrl, power);
+        }
+    }
+
+    /**
+     * One fixed-size block of rows, one array per column.
+     */
+    private static final class Chunk {
+
+        final long[] ids = new long[CHUNK_SIZE];
+        final int[] firstPokemon = new int[CHUNK_SIZE];
+        final int[] secondPokemon = new int[CHUNK_SIZE];
+        final byte[] firstPower = new byte[CHUNK_SIZE];
+        final byte[] secondPower = new byte[CHUNK_SIZE];
+        final byte[] outcomes = new byte[CHUNK_SIZE];
+        final long[] createdAt = new long[CHUNK_SIZE];
+        final long[] finishedAt = new long[CHUNK_SIZE];
+    }
+}
@@ -0,0 +1,136 @@
+package hu.dlaszlo.pokemonbattle.backend.service.history;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lock-free, append-only {@link BattleHistory} built from segments of doubling size.
+ * <p>
+ * Segment {@code k} holds {@code FIRST_SEGMENT_SIZE << k} battles, so a position maps to its
+ * segment and offset with a few bit operations, and the segment directory never has to grow.
+ * Appending reserves a position with a single atomic increment and writes the battle into
+ * its slot; nothing that has already been written is ever copied.
+ * A slot whose append is still in progress reads as {@code null} and is skipped by readers.
+ * Positions are also indexed by battle id, so a finished battle can be looked up without a scan.
+ */
+public class SegmentedBattleHistory implements BattleHistory {
+
+    private static final int FIRST_SEGMENT_BITS = 10;
+    private static final int FIRST_SEGMENT_SIZE = 1 << FIRST_SEGMENT_BITS;
+    private static final int MAX_SEGMENT_BITS = 30;
+    private static final int SEGMENT_COUNT = MAX_SEGMENT_BITS - FIRST_SEGMENT_BITS + 1;
+    private static final long CAPACITY = ((long) FIRST_SEGMENT_SIZE << SEGMENT_COUNT) - FIRST_SEGMENT_SIZE;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<Battle>> segments =
+            new AtomicReferenceArray<>(SEGMENT_COUNT);
+    private final AtomicLong size = new AtomicLong(0);
+    private final Map<Long, Long> positionById = new ConcurrentHashMap<>();
+
+    @Override
+    public long append(Battle battle) {
+        Objects.requireNonNull(battle, "battle must not be null");
+        long position = size.getAndIncrement();
+        if (position >= CAPACITY) {
+            size.decrementAndGet();
+            throw new IllegalStateException("Battle history is full, capacity: " + CAPACITY);
+        }
+        long biased = position + FIRST_SEGMENT_SIZE;
+        int highBit = 63 - Long.numberOfLeadingZeros(biased);
+        segment(highBit - FIRST_SEGMENT_BITS).set((int) (biased - (1L << highBit)), battle);
+        positionById.put(battle.id(), position);
+        return position;
+    }
+
+    @Override
+    public long size() {
+        return Math.min(size.get(), CAPACITY);
+    }
+
+    @Override
+    public Battle get(long position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Invalid history position: " + position);
+        }
+        long biased = position + FIRST_SEGMENT_SIZE;
+        int highBit = 63 - Long.numberOfLeadingZeros(biased);
+        AtomicReferenceArray<Battle> segment = segments.get(highBit - FIRST_SEGMENT_BITS);
+        return segment == null ? null : segment.get((int) (biased - (1L << highBit)));
+    }
+
+    @Override
+    public long positionOf(long battleId) {
+        Long position = positionById.get(battleId);
+        return position == null ? -1 : position;
+    }
+
+    @Override
+    public Stream<Battle> newestFirst(long fromPosition) {
+        return stream(new PositionIterator(Math.min(fromPosition, size() - 1), -1, -1));
+    }
+
+    @Override
+    public Stream<Battle> oldestFirst(long fromPosition) {
+        return stream(new PositionIterator(Math.max(fromPosition, 0), size(), 1));
+    }
+
+    private AtomicReferenceArray<Battle> segment(int index) {
+        AtomicReferenceArray<Battle> segment = segments.get(index);
+        if (segment == null) {
+            segments.compareAndSet(index, null, new AtomicReferenceArray<>(FIRST_SEGMENT_SIZE << index));
+            segment = segments.get(index);
+        }
+        return segment;
+    }
+
+    private static Stream<Battle> stream(Iterator<Battle> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Walks the log between two fixed positions in either direction, skipping slots that are not yet written.
+     */
+    private class PositionIterator implements Iterator<Battle> {
+
+        private final long endExclusive;
+        private final int step;
+        private long position;
+        private Battle next;
+
+        PositionIterator(long startPosition, long endExclusive, int step) {
+            this.position = startPosition;
+            this.endExclusive = endExclusive;
+            this.step = step;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && (step > 0 ? position < endExclusive : position > endExclusive)) {
+                next = get(position);
+                position += step;
+            }
+            return next != null;
+        }
+
+        @Override
+        public Battle next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Battle battle = next;
+            next = null;
+            return battle;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package hu.dlaszlo.pokemonbattle.backend.service.history;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Inverted trigram index over the Pokemon names of a {@link BattleHistory}.
+ * <p>
+ * Every case-folded trigram of both Pokemon names maps to a posting list of history positions in
+ * ascending order. Positions are indexed strictly in history order by whichever thread holds the
+ * index lock, so every posting list has a single writer and readers never lock.
+ * A substring query is answered by walking its shortest posting list newest-first and probing the
+ * other lists with binary search, so its cost depends on the number of matches, not the history size.
+ * Positions that are not indexed yet (appended while another thread was indexing) are scanned directly.
+ * The posting lists of each distinct name are resolved once, since names repeat across many battles.
+ * <p>
+ * The index returns candidates only: the caller must still apply its exact match predicate.
+ * Queries shorter than a trigram or containing non-ASCII characters fall back to a full newest-first scan.
+ */
+public class TrigramBattleNameIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private final BattleHistory history;
+    private final Map<Long, PostingList> postings = new ConcurrentHashMap<>();
+    private final Map<String, PostingList[]> namePostings = new ConcurrentHashMap<>();
+    private final ReentrantLock indexLock = new ReentrantLock();
+    private volatile long indexedSize = 0;
+
+    public TrigramBattleNameIndex(BattleHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Indexes every battle appended to the history since the last call.
+     * Never waits: if another thread is already indexing, that thread picks up the new battles.
+     */
+    public void catchUp() {
+        while (hasUnindexedBattle() && indexLock.tryLock()) {
+            try {
+                long position = indexedSize;
+                Battle battle;
+                while (position < history.size() && (battle = history.get(position)) != null) {
+                    index((int) position, battle);
+                    indexedSize = ++position;
+                }
+            } finally {
+                indexLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return the number of history positions that are already indexed
+     */
+    public long indexedSize() {
+        return indexedSize;
+    }
+
+    /**
+     * Returns the battles that may match the query, ordered from newest to oldest.
+     * Every battle whose Pokemon names contain the query (ignoring case) is included.
+     *
+     * @param query the non-null name substring
+     * @return candidate battles, ordered from newest to oldest
+     */
+    public Stream<Battle> candidates(String query) {
+        return candidates(query, history.size() - 1, true);
+    }
+
+    /**
+     * Returns the battles that may match the query, starting at the given history position.
+     *
+     * @param query the non-null name substring
+     * @param fromPosition the first history position to consider (inclusive)
+     * @param newestFirst {@code true} to walk towards older battles, {@code false} to walk towards newer ones
+     * @return candidate battles in the requested order
+     */
+    public Stream<Battle> candidates(String query, long fromPosition, boolean newestFirst) {
+        if (!isIndexable(query)) {
+            return newestFirst ? history.newestFirst(fromPosition) : history.oldestFirst(fromPosition);
+        }
+        long indexed = indexedSize;
+        long size = history.size();
+        Iterator<Battle> iterator = new CandidateIterator(postingLists(query), indexed, size,
+                fromPosition, newestFirst);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private boolean hasUnindexedBattle() {
+        long position = indexedSize;
+        return position < history.size() && history.get(position) != null;
+    }
+
+    private void index(int position, Battle battle) {
+        index(position, battle.first().name());
+        index(position, battle.second().name());
+    }
+
+    private void index(int position, String name) {
+        if (name == null) {
+            return;
+        }
+        PostingList[] lists = namePostings.computeIfAbsent(name, key -> trigrams(key).stream()
+                .map(gram -> postings.computeIfAbsent(gram, unused -> new PostingList()))
+                .toArray(PostingList[]::new));
+        for (PostingList list : lists) {
+            list.add(position);
+        }
+    }
+
+    private PostingList[] postingLists(String query) {
+        Set<Long> grams = trigrams(query);
+        PostingList[] lists = new PostingList[grams.size()];
+        int i = 0;
+        for (long gram : grams) {
+            PostingList list = postings.get(gram);
+            if (list == null) {
+                return null;
+            }
+            lists[i++] = list;
+        }
+        return lists;
+    }
+
+    private static boolean isIndexable(String query) {
+        if (query.length() < GRAM_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < query.length(); i++) {
+            if (query.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<Long> trigrams(String value) {
+        Set<Long> grams = new LinkedHashSet<>();
+        if (value == null) {
+            return grams;
+        }
+        for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+            grams.add(((long) fold(value.charAt(i)) << 32)
+                    | ((long) fold(value.charAt(i + 1)) << 16)
+                    | fold(value.charAt(i + 2)));
+        }
+        return grams;
+    }
+
+    /**
+     * Folds a character the same way for both sides of a case-insensitive comparison:
+     * two characters that are equal ignoring case fold to the same value.
+     */
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Append-only, ascending list of positions with a single writer.
+     * The element is written before the size is published, so readers see a consistent prefix.
+     */
+    private static final class PostingList {
+
+        private volatile int[] positions = new int[4];
+        private volatile int size = 0;
+
+        void add(int position) {
+            int count = size;
+            int[] current = positions;
+            if (count > 0 && current[count - 1] == position) {
+                return;
+            }
+            if (count == current.length) {
+                current = Arrays.copyOf(current, count * 2);
+                current[count] = position;
+                positions = current;
+            } else {
+                current[count] = position;
+            }
+            size = count + 1;
+        }
+    }
+
+    /**
+     * Yields the candidates of the unindexed tail of the history (scanned directly) and of the indexed part
+     * (intersection of the posting lists). Walking newest-first, the tail comes first; walking oldest-first, last.
+     */
+    private class CandidateIterator implements Iterator<Battle> {
+
+        private final boolean newestFirst;
+        private final int[][] snapshots;
+        private final int[] counts;
+        private final int driver;
+        private final int driverEnd;
+        private final long tailEnd;
+        private final long indexed;
+        private int driverIndex;
+        private long tailPosition;
+        private Battle next;
+
+        CandidateIterator(PostingList[] lists, long indexed, long size, long fromPosition, boolean newestFirst) {
+            this.newestFirst = newestFirst;
+            this.indexed = indexed;
+            int listCount = lists == null ? 0 : lists.length;
+            snapshots = new int[listCount][];
+            counts = new int[listCount];
+            int shortest = 0;
+            for (int i = 0; i < listCount; i++) {
+                counts[i] = lists[i].size;
+                snapshots[i] = lists[i].positions;
+                if (counts[i] < counts[shortest]) {
+                    shortest = i;
+                }
+            }
+            driver = shortest;
+            if (newestFirst) {
+                long from = Math.min(fromPosition, size - 1);
+                tailPosition = from;
+                tailEnd = indexed - 1;
+                driverIndex = listCount == 0 ? -1 : upperIndex(Math.min(from, indexed - 1));
+                driverEnd = -1;
+            } else {
+                long from = Math.max(fromPosition, 0);
+                tailPosition = Math.max(from, indexed);
+                tailEnd = size;
+                driverIndex = listCount == 0 ? 0 : lowerIndex(from);
+                driverEnd = listCount == 0 ? 0 : counts[driver];
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (newestFirst) {
+                nextFromTail();
+                nextFromIndex();
+            } else {
+                nextFromIndex();
+                nextFromTail();
+            }
+            return next != null;
+        }
+
+        @Override
+        public Battle next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Battle battle = next;
+            next = null;
+            return battle;
+        }
+
+        private void nextFromTail() {
+            int step = newestFirst ? -1 : 1;
+            while (next == null && (newestFirst ? tailPosition > tailEnd : tailPosition < tailEnd)) {
+                next = history.get(tailPosition);
+                tailPosition += step;
+            }
+        }
+
+        private void nextFromIndex() {
+            int step = newestFirst ? -1 : 1;
+            while (next == null && driverIndex != driverEnd) {
+                int position = snapshots[driver][driverIndex];
+                driverIndex += step;
+                if (position >= indexed) {
+                    driverIndex = driverEnd;
+                } else if (inAllLists(position)) {
+                    next = history.get(position);
+                }
+            }
+        }
+
+        /**
+         * @return index of the last driver entry that is less than or equal to the position, or -1
+         */
+        private int upperIndex(long position) {
+            if (position < 0) {
+                return -1;
+            }
+            int found = Arrays.binarySearch(snapshots[driver], 0, counts[driver], (int) position);
+            return found >= 0 ? found : -found - 2;
+        }
+
+        /**
+         * @return index of the first driver entry that is greater than or equal to the position
+         */
+        private int lowerIndex(long position) {
+            int key = (int) Math.min(position, Integer.MAX_VALUE);
+            int found = Arrays.binarySearch(snapshots[driver], 0, counts[driver], key);
+            return found >= 0 ? found : -found - 1;
+        }
+
+        private boolean inAllLists(int position) {
+            for (int i = 0; i < snapshots.length; i++) {
+                if (i != driver && Arrays.binarySearch(snapshots[i], 0, counts[i], position) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package hu.dlaszlo.pokemonbattle.backend.service.job;
+
+import hu.dlaszlo.pokemonbattle.backend.service.BattleJobNotFoundException;
+import hu.dlaszlo.pokemonbattle.backend.service.BattleService;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleJob;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleJobStatus;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Creates random battles in the background, so the request asking for a battle does not hold a servlet
+ * thread while PokeAPI is called and retried.
+ * <p>
+ * Jobs run on a fixed number of workers with a bounded queue; a submission that does not fit is rejected
+ * instead of piling up. A completed job is kept for the TTL so its result can be polled. Completed jobs are
+ * removed in submission order by an amortized cleanup step on every submission, which also evicts the oldest
+ * completed jobs over the maximum size. A job that is still queued or running is moved to the back of the order
+ * instead, so a slow job does not hold back the expiry of the completed jobs behind it.
+ */
+@Slf4j
+@Component
+public class BattleCreationJobs implements MeterBinder, DisposableBean {
+
+    private static final int MAX_EXPIRATIONS_PER_CLEANUP = 16;
+    private static final int MAX_REQUEUES_PER_CLEANUP = 16;
+
+    private final BattleService battleService;
+    private final Duration ttl;
+    private final int maxSize;
+    private final Clock clock;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong jobIdGenerator = new AtomicLong(0);
+    private final Map<Long, BattleJob> jobById = new ConcurrentHashMap<>();
+    private final Queue<Long> submissionOrder = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock cleanupLock = new ReentrantLock();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    @Autowired
+    public BattleCreationJobs(BattleService battleService,
+                              @Value("${battle.jobs.concurrency}") int concurrency,
+                              @Value("${battle.jobs.queue_size}") int queueSize,
+                              @Value("${battle.jobs.ttl}") Duration ttl,
+                              @Value("${battle.jobs.max_size}") int maxSize) {
+        this(battleService, concurrency, queueSize, ttl, maxSize, Clock.systemUTC());
+    }
+
+    public BattleCreationJobs(BattleService battleService, int concurrency, int queueSize, Duration ttl, int maxSize,
+                              Clock clock) {
+        if (concurrency < 1 || queueSize < 1 || ttl.isNegative() || ttl.isZero() || maxSize < 1) {
+            throw new IllegalArgumentException("Invalid battle job settings, concurrency: " + concurrency
+                    + ", queueSize: " + queueSize + ", ttl: " + ttl + ", maxSize: " + maxSize);
+        }
+        this.battleService = battleService;
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+        this.clock = clock;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("battle-job-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queues the creation of a random battle, then runs an amortized cleanup step.
+     *
+     * @return the queued job
+     * @throws RejectedExecutionException if every worker is busy and the queue is full
+     */
+    public BattleJob submit() {
+        BattleJob job = new BattleJob(jobIdGenerator.getAndIncrement(), BattleJobStatus.QUEUED, null, null,
+                clock.instant(), null);
+        jobById.put(job.id(), job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobById.remove(job.id());
+            rejectedCount.increment();
+            throw e;
+        }
+        submissionOrder.offer(job.id());
+        cleanUp();
+        return job;
+    }
+
+    /**
+     * @param jobId id of the job
+     * @return the current state of the job
+     * @throws BattleJobNotFoundException if the job does not exist or its result has already expired
+     */
+    public BattleJob get(long jobId) {
+        BattleJob job = jobById.get(jobId);
+        if (job == null || isExpired(job, clock.instant())) {
+            throw new BattleJobNotFoundException(jobId);
+        }
+        return job;
+    }
+
+    public int size() {
+        return jobById.size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("battles.jobs.active", this, BattleCreationJobs::getActiveCount)
+                .description("Number of battle creation jobs being run")
+                .register(registry);
+        Gauge.builder("battles.jobs.queued", this, BattleCreationJobs::getQueuedCount)
+                .description("Number of battle creation jobs waiting for a worker")
+                .register(registry);
+        FunctionCounter.builder("battles.jobs.rejected", this, BattleCreationJobs::getRejectedCount)
+                .description("Number of battle creation jobs rejected because the queue was full")
+                .register(registry);
+        FunctionCounter.builder("battles.jobs.failed", this, BattleCreationJobs::getFailedCount)
+                .description("Number of battle creation jobs that could not create a battle")
+                .register(registry);
+    }
+
+    private void run(BattleJob queued) {
+        jobById.replace(queued.id(), new BattleJob(queued.id(), BattleJobStatus.RUNNING, null, null,
+                queued.submittedAt(), null));
+        BattleJob completed;
+        try {
+            Battle battle = battleService.createRandomBattle();
+            completed = new BattleJob(queued.id(), BattleJobStatus.SUCCEEDED, battle, null,
+                    queued.submittedAt(), clock.instant());
+        } catch (RuntimeException e) {
+            log.error("Battle job failed, id: {}", queued.id(), e);
+            failedCount.increment();
+            completed = new BattleJob(queued.id(), BattleJobStatus.FAILED, null, e.getMessage(),
+                    queued.submittedAt(), clock.instant());
+        }
+        jobById.put(queued.id(), completed);
+    }
+
+    private void cleanUp() {
+        if (!cleanupLock.tryLock()) {
+            return;
+        }
+        try {
+            Instant now = clock.instant();
+            int expirations = 0;
+            int requeues = 0;
+            Long headId;
+            while ((headId = submissionOrder.peek()) != null) {
+                BattleJob head = jobById.get(headId);
+                if (head != null) {
+                    if (head.completedAt() == null) {
+                        if (requeues >= MAX_REQUEUES_PER_CLEANUP) {
+                            break;
+                        }
+                        submissionOrder.poll();
+                        submissionOrder.offer(headId);
+                        requeues++;
+                        continue;
+                    }
+                    boolean overflow = jobById.size() > maxSize;
+                    if (!overflow && (expirations >= MAX_EXPIRATIONS_PER_CLEANUP || !isExpired(head, now))) {
+                        break;
+                    }
+                    jobById.remove(headId, head);
+                    if (!overflow) {
+                        expirations++;
+                    }
+                }
+                submissionOrder.poll();
+            }
+        } finally {
+            cleanupLock.unlock();
+        }
+    }
+
+    private boolean isExpired(BattleJob job, Instant now) {
+        return job.completedAt() != null && !job.completedAt().plus(ttl).isAfter(now);
+    }
+}
@@ -0,0 +1,146 @@
+package hu.dlaszlo.pokemonbattle.backend.service.odds;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleOdds;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Estimates the outcome of a matchup with Monte Carlo simulation.
+ * <p>
+ * In every round both Pokemon roll their power with a random jitter of up to {@value #POWER_JITTER} points
+ * (but at least {@value #MIN_ROLLED_POWER}), and the rolled power is scaled by the type effectiveness of the
+ * Pokemon against its opponent. The higher score wins the round; equal scores are a draw.
+ * <p>
+ * The rounds are split into chunks that run on the common fork/join pool, each with its own
+ * {@link SplittableRandom} split off the parent's. The per-round kernel works on primitives only.
+ */
+public final class BattleOddsSimulator {
+
+    public static final int POWER_JITTER = 5;
+    public static final int MIN_ROLLED_POWER = 1;
+
+    private static final int SEQUENTIAL_ROUNDS = 1 << 16;
+
+    private BattleOddsSimulator() {
+    }
+
+    /**
+     * Simulates the matchup of a battle on the common fork/join pool.
+     *
+     * @param battleId the id of the battle, copied into the result
+     * @param rounds number of rounds to simulate
+     * @return the share of the rounds won by either side or drawn
+     */
+    public static BattleOdds simulate(Long battleId, PokemonEntity first, PokemonEntity second, int rounds) {
+        return simulate(battleId, first, second, rounds, new SplittableRandom());
+    }
+
+    /**
+     * Same as {@link #simulate(Long, PokemonEntity, PokemonEntity, int)}, with a given random source:
+     * the result only depends on its seed, not on the number of cores.
+     */
+    public static BattleOdds simulate(Long battleId, PokemonEntity first, PokemonEntity second, int rounds,
+                                      SplittableRandom random) {
+        if (rounds < 1) {
+            throw new IllegalArgumentException("rounds must be positive: " + rounds);
+        }
+        double firstMultiplier = TypeEffectiveness.multiplier(first.types(), second.types());
+        double secondMultiplier = TypeEffectiveness.multiplier(second.types(), first.types());
+        long result = ForkJoinPool.commonPool().invoke(new RoundsTask(first.power(), quarters(firstMultiplier),
+                second.power(), quarters(secondMultiplier), rounds, random));
+        int firstWins = firstWins(result);
+        int secondWins = secondWins(result);
+        return new BattleOdds(battleId, rounds,
+                (double) firstWins / rounds,
+                (double) secondWins / rounds,
+                (double) (rounds - firstWins - secondWins) / rounds,
+                firstMultiplier,
+                secondMultiplier);
+    }
+
+    /**
+     * Simulates the given number of rounds on the calling thread.
+     *
+     * @param firstPower base power of the first Pokemon
+     * @param firstQuarters type multiplier of the first Pokemon, in quarters (a multiplier of 2 is 8)
+     * @param secondPower base power of the second Pokemon
+     * @param secondQuarters type multiplier of the second Pokemon, in quarters
+     * @param rounds number of rounds to simulate
+     * @param random the random source; not shared with other threads
+     * @return the wins of both sides, packed into one value; see {@link #firstWins(long)} and {@link #secondWins(long)}
+     */
+    public static long play(int firstPower, int firstQuarters, int secondPower, int secondQuarters, int rounds,
+                            SplittableRandom random) {
+        int firstWins = 0;
+        int secondWins = 0;
+        for (int i = 0; i < rounds; i++) {
+            int firstScore = Math.max(MIN_ROLLED_POWER, firstPower + random.nextInt(-POWER_JITTER, POWER_JITTER + 1))
+                    * firstQuarters;
+            int secondScore = Math.max(MIN_ROLLED_POWER, secondPower + random.nextInt(-POWER_JITTER, POWER_JITTER + 1))
+                    * secondQuarters;
+            if (firstScore > secondScore) {
+                firstWins++;
+            } else if (secondScore > firstScore) {
+                secondWins++;
+            }
+        }
+        return pack(firstWins, secondWins);
+    }
+
+    public static int firstWins(long result) {
+        return (int) (result >>> 32);
+    }
+
+    public static int secondWins(long result) {
+        return (int) result;
+    }
+
+    private static long pack(int firstWins, int secondWins) {
+        return ((long) firstWins << 32) | (secondWins & 0xFFFFFFFFL);
+    }
+
+    private static int quarters(double multiplier) {
+        return (int) Math.round(multiplier * 4);
+    }
+
+    /**
+     * Splits the rounds in half until a chunk is small enough to play sequentially; every forked half
+     * gets a random source split off the parent's.
+     */
+    private static final class RoundsTask extends RecursiveTask<Long> {
+
+        private final int firstPower;
+        private final int firstQuarters;
+        private final int secondPower;
+        private final int secondQuarters;
+        private final int rounds;
+        private final SplittableRandom random;
+
+        RoundsTask(int firstPower, int firstQuarters, int secondPower, int secondQuarters, int rounds,
+                   SplittableRandom random) {
+            this.firstPower = firstPower;
+            this.firstQuarters = firstQuarters;
+            this.secondPower = secondPower;
+            this.secondQuarters = secondQuarters;
+            this.rounds = rounds;
+            this.random = random;
+        }
+
+        @Override
+        protected Long compute() {
+            if (rounds <= SEQUENTIAL_ROUNDS) {
+                return play(firstPower, firstQuarters, secondPower, secondQuarters, rounds, random);
+            }
+            int half = rounds >>> 1;
+            RoundsTask right = new RoundsTask(firstPower, firstQuarters, secondPower, secondQuarters,
+                    rounds - half, random.split());
+            right.fork();
+            long left = new RoundsTask(firstPower, firstQuarters, secondPower, secondQuarters, half, random).compute();
+            long other = right.join();
+            return pack(firstWins(left) + firstWins(other), secondWins(left) + secondWins(other));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package hu.dlaszlo.pokemonbattle.backend.service.odds;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Type effectiveness chart of the main series games (generation 6 onwards).
+ * <p>
+ * A Pokemon attacks with the most effective of its types; the multiplier of an attack is the product
+ * of its effectiveness against every type of the defender, so it is one of 0, 0.25, 0.5, 1, 2 and 4.
+ * Unknown types are neutral.
+ */
+public final class TypeEffectiveness {
+
+    private static final Map<String, Map<String, Double>> CHART = new HashMap<>();
+
+    static {
+        attack("normal", List.of(), List.of("rock", "steel"), List.of("ghost"));
+        attack("fire", List.of("grass", "ice", "bug", "steel"), List.of("fire", "water", "rock", "dragon"), List.of());
+        attack("water", List.of("fire", "ground", "rock"), List.of("water", "grass", "dragon"), List.of());
+        attack("electric", List.of("water", "flying"), List.of("electric", "grass", "dragon"), List.of("ground"));
+        attack("grass", List.of("water", "ground", "rock"),
+                List.of("fire", "grass", "poison", "flying", "bug", "dragon", "steel"), List.of());
+        attack("ice", List.of("grass", "ground", "flying", "dragon"), List.of("fire", "water", "ice", "steel"),
+                List.of());
+        attack("fighting", List.of("normal", "ice", "rock", "dark", "steel"),
+                List.of("poison", "flying", "psychic", "bug", "fairy"), List.of("ghost"));
+        attack("poison", List.of("grass", "fairy"), List.of("poison", "ground", "rock", "ghost"), List.of("steel"));
+        attack("ground", List.of("fire", "electric", "poison", "rock", "steel"), List.of("grass", "bug"),
+                List.of("flying"));
+        attack("flying", List.of("grass", "fighting", "bug"), List.of("electric", "rock", "steel"), List.of());
+        attack("psychic", List.of("fighting", "poison"), List.of("psychic", "steel"), List.of("dark"));
+        attack("bug", List.of("grass", "psychic", "dark"),
+                List.of("fire", "fighting", "poison", "flying", "ghost", "steel", "fairy"), List.of());
+        attack("rock", List.of("fire", "ice", "flying", "bug"), List.of("fighting", "ground", "steel"), List.of());
+        attack("ghost", List.of("psychic", "ghost"), List.of("dark"), List.of("normal"));
+        attack("dragon", List.of("dragon"), List.of("steel"), List.of("fairy"));
+        attack("dark", List.of("psychic", "ghost"), List.of("fighting", "dark", "fairy"), List.of());
+        attack("steel", List.of("ice", "rock", "fairy"), List.of("fire", "water", "electric", "steel"), List.of());
+        attack("fairy", List.of("fighting", "dragon", "dark"), List.of("fire", "poison", "steel"), List.of());
+    }
+
+    private TypeEffectiveness() {
+    }
+
+    /**
+     * @param attackerTypes comma-separated types of the attacking Pokemon, as in {@code PokemonEntity.types}
+     * @param defenderTypes comma-separated types of the defending Pokemon
+     * @return the damage multiplier of the attacker's most effective type against the defender
+     */
+    public static double multiplier(String attackerTypes, String defenderTypes) {
+        String[] attacks = split(attackerTypes);
+        String[] defences = split(defenderTypes);
+        if (attacks.length == 0) {
+            return 1.0;
+        }
+        double best = 0.0;
+        for (String attack : attacks) {
+            Map<String, Double> row = CHART.getOrDefault(attack, Map.of());
+            double multiplier = 1.0;
+            for (String defence : defences) {
+                multiplier *= row.getOrDefault(defence, 1.0);
+            }
+            best = Math.max(best, multiplier);
+        }
+        return best;
+    }
+
+    private static String[] split(String types) {
+        if (types == null || types.isBlank()) {
+            return new String[0];
+        }
+        String[] parts = types.toLowerCase(Locale.ROOT).split(",");
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = parts[i].trim();
+        }
+        return parts;
+    }
+
+    private static void attack(String type, List<String> superEffective, List<String> notVeryEffective,
+                               List<String> noEffect) {
+        Map<String, Double> row = new HashMap<>();
+        superEffective.forEach(defence -> row.put(defence, 2.0));
+        notVeryEffective.forEach(defence -> row.put(defence, 0.5));
+        noEffect.forEach(defence -> row.put(defence, 0.0));
+        CHART.put(type, row);
+    }
+}
@@ -0,0 +1,258 @@
+package hu.dlaszlo.pokemonbattle.backend.service.pending;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded store of {@code PENDING} battles with time-to-live based expiry.
+ * <p>
+ * Expiry is amortized: every {@link #put(Battle)} removes a bounded number of expired battles from the
+ * head of the insertion-order queue, and battles over the maximum size are evicted oldest first.
+ * The entries of battles that were removed by other means, e.g. simulated, are dropped as they reach the head,
+ * and the whole queue is swept once it holds more than twice as many entries as there are battles, so it stays
+ * proportional to the store even if battles are simulated long before they would expire.
+ * The cleanup runs under a {@code tryLock}, so a request thread never waits for another thread's cleanup.
+ * {@link #get(long)} also checks the TTL, so an expired battle is never returned even before it is cleaned up.
+ * <p>
+ * The sharded battle service creates a store per shard and registers their meters itself, so this bean is not
+ * created for it.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("'${battle.store:memory}' != 'sharded'")
+public class PendingBattleStore implements MeterBinder {
+
+    private static final int MAX_EXPIRATIONS_PER_CLEANUP = 16;
+
+    private final Duration ttl;
+    private final int maxSize;
+    private final Clock clock;
+
+    private final Map<Long, Battle> battleById = new ConcurrentHashMap<>();
+    private final Queue<Battle> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final ReentrantLock cleanupLock = new ReentrantLock();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+
+    @Autowired
+    public PendingBattleStore(@Value("${battle.pending.ttl}") Duration ttl,
+                              @Value("${battle.pending.max_size}") int maxSize) {
+        this(ttl, maxSize, Clock.systemUTC());
+    }
+
+    public PendingBattleStore(Duration ttl, int maxSize, Clock clock) {
+        if (ttl.isNegative() || ttl.isZero() || maxSize < 1) {
+            throw new IllegalArgumentException("Invalid pending battle store settings, ttl: " + ttl
+                    + ", maxSize: " + maxSize);
+        }
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+        this.clock = clock;
+    }
+
+    /**
+     * Stores a pending battle, then runs an amortized cleanup step.
+     *
+     * @param battle the pending battle
+     */
+    public void put(Battle battle) {
+        Objects.requireNonNull(battle, "battle must not be null");
+        battleById.put(battle.id(), battle);
+        insertionOrder.offer(battle);
+        queueSize.incrementAndGet();
+        cleanUp();
+    }
+
+    /**
+     * Stores several pending battles, then runs a single cleanup step. The cleanup evicts the oldest battles
+     * first, so the battles of a batch that fits into the store are never evicted to make room for each other.
+     *
+     * @param battles the pending battles, at most {@link #getMaxSize()}
+     * @throws IllegalArgumentException if the batch is larger than the store
+     */
+    public void putAll(Collection<Battle> battles) {
+        if (battles.size() > maxSize) {
+            throw new IllegalArgumentException("A batch of " + battles.size()
+                    + " battles does not fit into the pending store of " + maxSize);
+        }
+        for (Battle battle : battles) {
+            Objects.requireNonNull(battle, "battle must not be null");
+            battleById.put(battle.id(), battle);
+            insertionOrder.offer(battle);
+            queueSize.incrementAndGet();
+        }
+        cleanUp();
+    }
+
+    /**
+     * @param battleId id of the battle
+     * @return the pending battle, or the finished battle that is replacing it (see {@link #replace(Battle, Battle)}),
+     * or {@code null} if it does not exist or has already expired
+     */
+    public Battle get(long battleId) {
+        Battle battle = battleById.get(battleId);
+        if (battle != null && battle.status() == BattleStatus.PENDING && isExpired(battle, clock.instant())) {
+            if (battleById.remove(battleId, battle)) {
+                expiredCount.increment();
+            }
+            return null;
+        }
+        return battle;
+    }
+
+    /**
+     * Replaces a stored battle with another one with the same id, in a single compare-and-set step.
+     * Simulating a battle replaces it with its finished version, so exactly one caller wins the transition,
+     * and the other callers see the finished battle until it is removed. A finished battle does not expire.
+     *
+     * @param expected the battle expected to be stored
+     * @param replacement the battle to store instead
+     * @return {@code true} if the expected battle was stored and has been replaced by this call
+     */
+    public boolean replace(Battle expected, Battle replacement) {
+        Objects.requireNonNull(replacement, "replacement must not be null");
+        return battleById.replace(expected.id(), expected, replacement);
+    }
+
+    /**
+     * Removes the given battle, if it is still stored.
+     *
+     * @param battle the pending battle, or the finished battle that replaced it
+     * @return {@code true} if the battle was removed by this call
+     */
+    public boolean remove(Battle battle) {
+        return battleById.remove(battle.id(), battle);
+    }
+
+    /**
+     * @return a copy of the stored pending battles, without the ones being finished
+     */
+    public Collection<Battle> battles() {
+        return battleById.values().stream()
+                .filter(battle -> battle.status() == BattleStatus.PENDING)
+                .toList();
+    }
+
+    public int size() {
+        return battleById.size();
+    }
+
+    /**
+     * @return the number of entries in the insertion-order queue, including the ones of removed battles
+     * that have not been dropped yet
+     */
+    public int queueSize() {
+        return queueSize.get();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindTo(registry, Tags.empty());
+    }
+
+    /**
+     * Registers the meters of the store with the given tags, so several stores can be told apart.
+     */
+    public void bindTo(MeterRegistry registry, Iterable<Tag> tags) {
+        Gauge.builder("battles.pending.size", this, PendingBattleStore::size)
+                .description("Number of pending battles")
+                .tags(tags)
+                .register(registry);
+        FunctionCounter.builder("battles.pending.expired", this, PendingBattleStore::getExpiredCount)
+                .description("Number of pending battles removed after their TTL elapsed")
+                .tags(tags)
+                .register(registry);
+        FunctionCounter.builder("battles.pending.evicted", this, PendingBattleStore::getEvictedCount)
+                .description("Number of pending battles evicted because the store was full")
+                .tags(tags)
+                .register(registry);
+    }
+
+    private void cleanUp() {
+        if (!cleanupLock.tryLock()) {
+            return;
+        }
+        try {
+            Instant now = clock.instant();
+            int expirations = 0;
+            Battle head;
+            while ((head = insertionOrder.peek()) != null) {
+                if (!battleById.containsKey(head.id())) {
+                    insertionOrder.poll();
+                    queueSize.decrementAndGet();
+                    continue;
+                }
+                boolean overflow = battleById.size() > maxSize;
+                if (!overflow && (expirations >= MAX_EXPIRATIONS_PER_CLEANUP || !isExpired(head, now))) {
+                    break;
+                }
+                insertionOrder.poll();
+                queueSize.decrementAndGet();
+                boolean removed = battleById.remove(head.id(), head);
+                if (overflow) {
+                    if (removed) {
+                        evictedCount.increment();
+                        log.debug("Pending battle evicted, id: {}", head.id());
+                    }
+                } else {
+                    expirations++;
+                    if (removed) {
+                        expiredCount.increment();
+                    }
+                }
+            }
+            if (queueSize.get() > 2 * battleById.size() + MAX_EXPIRATIONS_PER_CLEANUP) {
+                insertionOrder.removeIf(battle -> {
+                    boolean stale = !battleById.containsKey(battle.id());
+                    if (stale) {
+                        queueSize.decrementAndGet();
+                    }
+                    return stale;
+                });
+            }
+        } finally {
+            cleanupLock.unlock();
+        }
+    }
+
+    private boolean isExpired(Battle battle, Instant now) {
+        return !battle.createdAt().plus(ttl).isAfter(now);
+    }
+}
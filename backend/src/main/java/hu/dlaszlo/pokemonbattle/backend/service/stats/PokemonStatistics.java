@@ -0,0 +1,144 @@
+package hu.dlaszlo.pokemonbattle.backend.service.stats;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonStats;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.WinnerSide;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-Pokemon battle results, maintained incrementally as battles finish.
+ * <p>
+ * The counters of a Pokemon are {@link LongAdder}s, so concurrent battles never contend on them.
+ * The leaderboard is a skip list of (wins, name) entries ordered by wins; the entry of a Pokemon is
+ * replaced under that Pokemon's own lock whenever its win count changes, so only updates of the same
+ * Pokemon serialize, and the top {@code K} Pokemon are read off the head of the skip list in {@code O(K)}.
+ * An entry may lag behind the counters while a win is being recorded; it is brought up to date by the
+ * thread that recorded the win. While an entry is replaced, readers skip whichever of the two entries is
+ * not the current one, so a Pokemon is never listed twice.
+ */
+public class PokemonStatistics {
+
+    private static final Comparator<Rank> RANK_ORDER = Comparator
+            .comparingLong(Rank::wins).reversed()
+            .thenComparing(Rank::name);
+
+    private final Map<String, Counters> countersByName = new ConcurrentHashMap<>();
+    private final NavigableSet<Rank> ranking = new ConcurrentSkipListSet<>(RANK_ORDER);
+
+    /**
+     * Adds the result of a finished battle to the statistics of both Pokemon.
+     * Battles that are not finished are ignored.
+     *
+     * @param battle the battle that has just been added to the history
+     */
+    public void record(Battle battle) {
+        if (battle.status() != BattleStatus.FINISHED) {
+            return;
+        }
+        WinnerSide winnerSide = battle.winnerSide();
+        record(battle.first(), winnerSide == WinnerSide.FIRST, winnerSide == WinnerSide.SECOND);
+        record(battle.second(), winnerSide == WinnerSide.SECOND, winnerSide == WinnerSide.FIRST);
+    }
+
+    /**
+     * @param limit maximum number of Pokemon to return
+     * @return the Pokemon with the most wins, in descending order of wins, then by name
+     */
+    public List<PokemonStats> top(int limit) {
+        List<PokemonStats> top = new ArrayList<>(Math.min(limit, countersByName.size()));
+        Iterator<Rank> ranks = ranking.iterator();
+        while (top.size() < limit && ranks.hasNext()) {
+            Rank rank = ranks.next();
+            Counters counters = countersByName.get(rank.name());
+            // skip the old entry of a Pokemon whose entry is being replaced
+            if (counters.rank == rank) {
+                top.add(counters.toStats());
+            }
+        }
+        return top;
+    }
+
+    /**
+     * @param name name of the Pokemon
+     * @return the statistics of the Pokemon; all zero if it has not finished a battle yet
+     */
+    public PokemonStats get(String name) {
+        Counters counters = countersByName.get(name);
+        return counters == null ? new PokemonStats(name, 0, 0, 0, 0, 0) : counters.toStats();
+    }
+
+    /**
+     * @return the number of Pokemon with at least one finished battle
+     */
+    public int size() {
+        return countersByName.size();
+    }
+
+    private void record(PokemonEntity pokemon, boolean won, boolean lost) {
+        Counters counters = countersByName.computeIfAbsent(pokemon.name(), Counters::new);
+        counters.powerSum.add(pokemon.power());
+        if (won) {
+            counters.wins.increment();
+        } else if (lost) {
+            counters.losses.increment();
+        } else {
+            counters.draws.increment();
+        }
+        if (won || counters.rank == null) {
+            rerank(counters);
+        }
+    }
+
+    private void rerank(Counters counters) {
+        synchronized (counters) {
+            long wins = counters.wins.sum();
+            Rank current = counters.rank;
+            if (current != null && current.wins() == wins) {
+                return;
+            }
+            Rank updated = new Rank(wins, counters.name);
+            ranking.add(updated);
+            counters.rank = updated;
+            if (current != null) {
+                ranking.remove(current);
+            }
+        }
+    }
+
+    private record Rank(long wins, String name) {
+    }
+
+    private static final class Counters {
+
+        private final String name;
+        private final LongAdder wins = new LongAdder();
+        private final LongAdder losses = new LongAdder();
+        private final LongAdder draws = new LongAdder();
+        private final LongAdder powerSum = new LongAdder();
+        private volatile Rank rank;
+
+        Counters(String name) {
+            this.name = name;
+        }
+
+        PokemonStats toStats() {
+            long winCount = wins.sum();
+            long lossCount = losses.sum();
+            long drawCount = draws.sum();
+            long battles = winCount + lossCount + drawCount;
+            return new PokemonStats(name, battles, winCount, lossCount, drawCount,
+                    battles == 0 ? 0 : (double) powerSum.sum() / battles);
+        }
+    }
+}
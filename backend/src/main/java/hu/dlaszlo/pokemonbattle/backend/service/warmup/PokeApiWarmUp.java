@@ -0,0 +1,256 @@
+package hu.dlaszlo.pokemonbattle.backend.service.warmup;
+
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApi;
+import hu.dlaszlo.pokemonbattle.backend.service.BattleService;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loads the Pokemon name list and prefetches Pokemon details into the PokeAPI caches after startup, so the
+ * first users after a deploy do not pay for the cold fetches. Enabled by {@code pokeapi.warm_up.enabled}.
+ * <p>
+ * The warm-up starts once the application context has started and runs on {@code concurrency} background
+ * threads, so it never delays the startup. It fetches the Pokemon with the most wins first, then the rest of
+ * the name list, either all of it or up to {@code topN} Pokemon. Every fetch goes through {@link PokeApi}, so it
+ * is retried like any other call ({@code RestClientRetry}); a Pokemon that still cannot be fetched is skipped,
+ * and fetched again on demand.
+ * <p>
+ * Until {@code readyThreshold} of the Pokemon have been fetched, the readiness state of the application stays
+ * {@link ReadinessState#REFUSING_TRAFFIC}. If the warm-up finishes without reaching it, because some fetches
+ * failed, or the name list could not be fetched at all, the application becomes ready anyway: every request
+ * still works with cold caches.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "pokeapi.warm_up.enabled", havingValue = "true")
+public class PokeApiWarmUp implements MeterBinder, DisposableBean {
+
+    private static final int MAX_LEADERBOARD_SIZE = 1000;
+    private static final int PROGRESS_STEPS = 10;
+
+    private final PokeApi pokeApi;
+    private final BattleService battleService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int topN;
+    private final double readyThreshold;
+    private final ExecutorService executor;
+
+    private final AtomicInteger targetCount = new AtomicInteger();
+    private final LongAdder loadedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final AtomicInteger processedCount = new AtomicInteger();
+
+    private volatile long startTime;
+    private boolean warm;
+    private boolean applicationReady;
+
+    /**
+     * @param topN           max. number of Pokemon to fetch, 0 fetches every Pokemon of the name list
+     * @param concurrency    max. number of Pokemon fetched at the same time
+     * @param readyThreshold fraction of the Pokemon that must be fetched before the application accepts traffic
+     */
+    @Autowired
+    public PokeApiWarmUp(PokeApi pokeApi, BattleService battleService, ApplicationEventPublisher eventPublisher,
+                         @Value("${pokeapi.warm_up.top_n}") int topN,
+                         @Value("${pokeapi.warm_up.concurrency}") int concurrency,
+                         @Value("${pokeapi.warm_up.ready_threshold}") double readyThreshold) {
+        if (topN < 0 || concurrency < 1 || readyThreshold < 0 || readyThreshold > 1) {
+            throw new IllegalArgumentException("Invalid PokeAPI warm-up settings, topN: " + topN
+                    + ", concurrency: " + concurrency + ", readyThreshold: " + readyThreshold);
+        }
+        this.pokeApi = pokeApi;
+        this.battleService = battleService;
+        this.eventPublisher = eventPublisher;
+        this.topN = topN;
+        this.readyThreshold = readyThreshold;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pokeapi-warm-up-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newFixedThreadPool(concurrency, threadFactory);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts the warm-up in the background and returns at once.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void start() {
+        startTime = System.nanoTime();
+        log.info("PokeAPI warm-up started");
+        executor.execute(this::warmUp);
+    }
+
+    /**
+     * Keeps the application out of traffic while it is not warm. Runs after every other listener, so the
+     * readiness state published here is the one that the application availability keeps.
+     */
+    @EventListener
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onReadinessChange(AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getSource() == this) {
+            return;
+        }
+        synchronized (this) {
+            applicationReady = event.getState() == ReadinessState.ACCEPTING_TRAFFIC;
+            if (applicationReady && !warm) {
+                log.info("Refusing traffic until the PokeAPI warm-up has fetched {}% of the Pokemon",
+                        Math.round(readyThreshold * 100));
+                AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+            }
+        }
+    }
+
+    public synchronized boolean isWarm() {
+        return warm;
+    }
+
+    /**
+     * @return the number of Pokemon the warm-up fetches, 0 until the name list has been fetched
+     */
+    public int getTargetCount() {
+        return targetCount.get();
+    }
+
+    public long getLoadedCount() {
+        return loadedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("pokeapi.warmup.target", this, PokeApiWarmUp::getTargetCount)
+                .description("Number of Pokemon the warm-up fetches")
+                .register(registry);
+        FunctionCounter.builder("pokeapi.warmup.loaded", this, PokeApiWarmUp::getLoadedCount)
+                .description("Number of Pokemon fetched by the warm-up")
+                .register(registry);
+        FunctionCounter.builder("pokeapi.warmup.failed", this, PokeApiWarmUp::getFailedCount)
+                .description("Number of Pokemon the warm-up could not fetch")
+                .register(registry);
+        Gauge.builder("pokeapi.warmup.warm", this, warmUp -> warmUp.isWarm() ? 1 : 0)
+                .description("1 once the warm-up has reached its ready threshold or finished")
+                .register(registry);
+    }
+
+    private void warmUp() {
+        Set<String> names;
+        try {
+            names = selectNames();
+        } catch (Exception e) {
+            log.error("PokeAPI warm-up failed, the Pokemon are fetched on demand", e);
+            finish();
+            return;
+        }
+        targetCount.set(names.size());
+        log.info("PokeAPI warm-up fetches {} Pokemon", names.size());
+        if (names.isEmpty()) {
+            finish();
+            return;
+        }
+        checkThreshold();
+        for (String name : names) {
+            executor.execute(() -> fetch(name));
+        }
+    }
+
+    /**
+     * @return the Pokemon with the most wins first, then the others in the order of the name list
+     */
+    private Set<String> selectNames() {
+        List<String> names = pokeApi.listPokemonNames();
+        int limit = topN == 0 ? names.size() : Math.min(topN, names.size());
+        Set<String> selected = new LinkedHashSet<>();
+        Set<String> known = Set.copyOf(names);
+        for (PokemonStats stats : battleService.leaderboard(MAX_LEADERBOARD_SIZE)) {
+            if (selected.size() == limit) {
+                return selected;
+            }
+            if (known.contains(stats.name())) {
+                selected.add(stats.name());
+            }
+        }
+        for (String name : names) {
+            if (selected.size() == limit) {
+                break;
+            }
+            selected.add(name);
+        }
+        return selected;
+    }
+
+    private void fetch(String name) {
+        try {
+            pokeApi.getPokemon(name);
+            loadedCount.increment();
+        } catch (Exception e) {
+            failedCount.increment();
+            log.warn("PokeAPI warm-up could not fetch {}: {}", name, e.toString());
+        }
+        int processed = processedCount.incrementAndGet();
+        int target = targetCount.get();
+        if (processed == target) {
+            log.info("PokeAPI warm-up progress: {}/{} Pokemon, {} failed", processed, target, getFailedCount());
+            finish();
+        } else {
+            if (processed % Math.max(1, target / PROGRESS_STEPS) == 0) {
+                log.info("PokeAPI warm-up progress: {}/{} Pokemon, {} failed", processed, target, getFailedCount());
+            }
+            checkThreshold();
+        }
+    }
+
+    private void checkThreshold() {
+        if (getLoadedCount() >= Math.ceil(readyThreshold * getTargetCount())) {
+            markWarm();
+        }
+    }
+
+    private void finish() {
+        log.info("PokeAPI warm-up ended in {} ms., fetched: {}, failed: {}",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), getLoadedCount(), getFailedCount());
+        markWarm();
+    }
+
+    private synchronized void markWarm() {
+        if (warm) {
+            return;
+        }
+        warm = true;
+        log.info("PokeAPI warm-up reached its ready threshold, fetched: {}/{}", getLoadedCount(), getTargetCount());
+        if (applicationReady) {
+            AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.ACCEPTING_TRAFFIC);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package hu.dlaszlo.pokemonbattle.backend.benchmark;
+
+import hu.dlaszlo.pokemonbattle.backend.controller.BattleNdjsonWriter;
+import hu.dlaszlo.pokemonbattle.backend.service.BattleService;
+import hu.dlaszlo.pokemonbattle.backend.service.InMemoryBattleServiceImpl;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.WinnerSide;
+import hu.dlaszlo.pokemonbattle.backend.service.history.BattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.history.ColumnarBattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.history.SegmentedBattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.pending.PendingBattleStore;
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the NDJSON export of the whole history into a discarding output stream, in battles per second,
+ * on a single thread. The same writer is used as by {@code GET /api/battles/export}.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="BattleExportBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Threads(1)
+public class BattleExportBenchmark {
+
+    private static final int HISTORY_SIZE = 200_000;
+
+    @Param({"segmented", "columnar"})
+    private String history;
+
+    @Param({"false", "true"})
+    private boolean gzip;
+
+    private BattleService service;
+    private BattleNdjsonWriter writer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BattleHistory battleHistory = history.equals("columnar") ? new ColumnarBattleHistory()
+                : new SegmentedBattleHistory();
+        Instant start = Instant.parse("2025-01-01T00:00:00Z");
+        for (long i = 0; i < HISTORY_SIZE; i++) {
+            int pokemon = (int) (i % 1000);
+            battleHistory.append(new Battle(i, BattleStatus.FINISHED,
+                    new PokemonEntity("pokemon-" + pokemon, "fire, flying", "https://img/" + pokemon + ".png",
+                            (int) (i % 20) + 1),
+                    new PokemonEntity("pokemon-" + (pokemon + 1), "water", "https://img/" + (pokemon + 1) + ".png",
+                            (int) (i % 7) + 1),
+                    WinnerSide.values()[(int) (i % 3)], start.plusMillis(i), start.plusMillis(i + 1500)));
+        }
+        service = new InMemoryBattleServiceImpl(null, new PendingBattleStore(Duration.ofMinutes(30), 1000),
+                battleHistory);
+        writer = new BattleNdjsonWriter(JsonMapper.builder().build());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(HISTORY_SIZE)
+    public long export() throws IOException {
+        OutputStream out = OutputStream.nullOutputStream();
+        return gzip ? writer.writeGzip(service.exportBattles(null, null, null), out)
+                : writer.write(service.exportBattles(null, null, null), out);
+    }
+}
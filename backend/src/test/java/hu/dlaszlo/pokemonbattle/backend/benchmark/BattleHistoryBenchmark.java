@@ -0,0 +1,86 @@
+package hu.dlaszlo.pokemonbattle.backend.benchmark;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.WinnerSide;
+import hu.dlaszlo.pokemonbattle.backend.service.history.SegmentedBattleHistory;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares appending a finished battle and reading the latest 20 battles
+ * between the previous {@code CopyOnWriteArrayList} history and {@link SegmentedBattleHistory},
+ * with a history that is already filled with {@code historySize} battles.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="BattleHistoryBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BattleHistoryBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int historySize;
+
+    private List<Battle> copyOnWriteList;
+    private SegmentedBattleHistory segmentedHistory;
+    private Battle battle;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        battle = battle(historySize);
+        List<Battle> newestFirst = new ArrayList<>(historySize);
+        segmentedHistory = new SegmentedBattleHistory();
+        for (long i = 0; i < historySize; i++) {
+            Battle finished = battle(i);
+            newestFirst.add(finished);
+            segmentedHistory.append(finished);
+        }
+        Collections.reverse(newestFirst);
+        copyOnWriteList = new CopyOnWriteArrayList<>(newestFirst);
+    }
+
+    @Benchmark
+    public List<Battle> appendCopyOnWriteList() {
+        copyOnWriteList.add(0, battle);
+        return copyOnWriteList;
+    }
+
+    @Benchmark
+    public long appendSegmentedHistory() {
+        return segmentedHistory.append(battle);
+    }
+
+    @Benchmark
+    public List<Battle> latestCopyOnWriteList() {
+        return copyOnWriteList.stream().limit(20).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Battle> latestSegmentedHistory() {
+        return segmentedHistory.newestFirst().limit(20).collect(Collectors.toList());
+    }
+
+    private static Battle battle(long id) {
+        return new Battle(
+                id,
+                BattleStatus.FINISHED,
+                new PokemonEntity("pikachu", "electric", "u1", 10),
+                new PokemonEntity("bulbasaur", "grass, poison", "u2", 12),
+                WinnerSide.SECOND,
+                Instant.now(),
+                Instant.now()
+        );
+    }
+}
@@ -0,0 +1,49 @@
+package hu.dlaszlo.pokemonbattle.backend.benchmark;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleOdds;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.odds.BattleOddsSimulator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the Monte Carlo odds of one matchup: the single-threaded kernel, and the full simulation
+ * with the rounds split across the common fork/join pool.
+ * <p>
+ * The parallel result depends on the number of cores.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="BattleOddsBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BattleOddsBenchmark {
+
+    private static final PokemonEntity FIRST = new PokemonEntity("squirtle", "water", "u1", 12);
+    private static final PokemonEntity SECOND = new PokemonEntity("charizard", "fire, flying", "u2", 17);
+
+    @Param({"1000000"})
+    private int rounds;
+
+    private SplittableRandom random;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        random = new SplittableRandom(42);
+    }
+
+    @Benchmark
+    public long kernel() {
+        return BattleOddsSimulator.play(FIRST.power(), 8, SECOND.power(), 2, rounds, random);
+    }
+
+    @Benchmark
+    public BattleOdds parallel() {
+        return BattleOddsSimulator.simulate(1L, FIRST, SECOND, rounds, random.split());
+    }
+}
@@ -0,0 +1,88 @@
+package hu.dlaszlo.pokemonbattle.backend.benchmark;
+
+import hu.dlaszlo.pokemonbattle.backend.service.DurableBattleServiceImpl;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.WinnerSide;
+import hu.dlaszlo.pokemonbattle.backend.service.durable.BattleSnapshotFile;
+import hu.dlaszlo.pokemonbattle.backend.service.durable.BattleWriteAheadLog;
+import hu.dlaszlo.pokemonbattle.backend.service.history.SegmentedBattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.pending.PendingBattleStore;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Measures how long {@link DurableBattleServiceImpl} takes to start with {@code historySize} finished battles
+ * on disk: all but the last {@value #LOG_TAIL} are in the snapshot, the rest are replayed from the log.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="BattleRecoveryBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class BattleRecoveryBenchmark {
+
+    private static final int LOG_TAIL = 10_000;
+    private static final DataSize SEGMENT_SIZE = DataSize.ofMegabytes(16);
+    private static final List<String> NAMES = List.of("pikachu", "bulbasaur", "charmander", "squirtle",
+            "jigglypuff", "meowth", "psyduck", "snorlax", "mewtwo", "eevee");
+
+    @Param({"100000", "1000000", "3000000"})
+    private int historySize;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("battle-recovery");
+        long snapshotSize = historySize - LOG_TAIL;
+        BattleSnapshotFile.write(directory.resolve("battles.snapshot"), 0, snapshotSize,
+                LongStream.range(0, snapshotSize).mapToObj(BattleRecoveryBenchmark::battle).iterator(), List.of());
+        try (BattleWriteAheadLog log = new BattleWriteAheadLog(directory, Math.toIntExact(SEGMENT_SIZE.toBytes()))) {
+            for (long id = snapshotSize; id < historySize; id++) {
+                log.append(battle(id));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public DurableBattleServiceImpl recover() {
+        return new DurableBattleServiceImpl(null,
+                new PendingBattleStore(Duration.ofMinutes(30), 100_000, Clock.systemUTC()),
+                new SegmentedBattleHistory(), directory, SEGMENT_SIZE);
+    }
+
+    private static Battle battle(long id) {
+        String first = NAMES.get((int) (id % NAMES.size()));
+        String second = NAMES.get((int) ((id / NAMES.size()) % NAMES.size()));
+        return new Battle(
+                id,
+                BattleStatus.FINISHED,
+                new PokemonEntity(first, "normal", "https://img/" + first + ".png", (int) (id % 20) + 1),
+                new PokemonEntity(second, "fire, flying", "https://img/" + second + ".png", (int) (id % 7) + 1),
+                WinnerSide.FIRST,
+                Instant.ofEpochSecond(1_700_000_000L + id),
+                Instant.ofEpochSecond(1_700_000_060L + id)
+        );
+    }
+}
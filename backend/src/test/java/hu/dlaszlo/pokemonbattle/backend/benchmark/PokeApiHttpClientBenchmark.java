@@ -0,0 +1,98 @@
+package hu.dlaszlo.pokemonbattle.backend.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import hu.dlaszlo.pokemonbattle.backend.restclient.PokeApiHttpClient;
+import hu.dlaszlo.pokemonbattle.backend.restclient.dto.PokeApiDetail;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of one PokeAPI detail request with each {@code pokeapi.http.client}, against a local
+ * stand-in server that answers at once with a typical detail response.
+ * <p>
+ * The server is plain HTTP on the loopback interface, so the result shows the cost of the client and of
+ * opening connections, but not of TLS handshakes, which a reused connection also saves against PokeAPI.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="PokeApiHttpClientBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Dsun.net.httpserver.nodelay=true")
+public class PokeApiHttpClientBenchmark {
+
+    private static final byte[] DETAIL = ("{\"id\":25,\"name\":\"pikachu\","
+            + "\"types\":[{\"slot\":1,\"type\":{\"name\":\"electric\",\"url\":\"https://pokeapi.co/api/v2/type/13/\"}}],"
+            + "\"sprites\":{\"front_default\":\"https://raw.githubusercontent.com/PokeAPI/sprites/master/sprites/pokemon/25.png\"}}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Param({"simple", "jdk", "pooled"})
+    private String client;
+
+    /**
+     * Only used by the jdk client. The stand-in server only speaks HTTP/1.1, so with HTTP/2 the client
+     * offers an upgrade on every new connection and falls back.
+     */
+    @Param({"true"})
+    private boolean http2;
+
+    private HttpServer server;
+
+    private ExecutorService serverExecutor;
+
+    private PokeApiHttpClient httpClient;
+
+    private RestClient restClient;
+
+    private String url;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        serverExecutor = Executors.newFixedThreadPool(4);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.setExecutor(serverExecutor);
+        server.createContext("/pokemon/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, DETAIL.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(DETAIL);
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/pokemon/{name}";
+
+        httpClient = new PokeApiHttpClient(PokeApiHttpClient.Type.valueOf(client.toUpperCase()),
+                Duration.ofSeconds(5), Duration.ofSeconds(5), http2, 64, 32, Duration.ofSeconds(30));
+        restClient = RestClient.builder()
+                .requestFactory(httpClient.getRequestFactory())
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        httpClient.destroy();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public PokeApiDetail getPokeApiDetail() {
+        return restClient.get()
+                .uri(url, "pikachu")
+                .retrieve()
+                .body(PokeApiDetail.class);
+    }
+}
@@ -0,0 +1,63 @@
+package hu.dlaszlo.pokemonbattle.backend.benchmark;
+
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokemonSnapshot;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokemonSnapshotFile;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.dto.Pokemon;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Measures how long {@link PokemonSnapshot} takes to load a snapshot of {@code pokemonCount} Pokemon at startup,
+ * the time the application needs before it can create battles without PokeAPI.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="PokemonSnapshotBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PokemonSnapshotBenchmark {
+
+    private static final List<String> TYPES = List.of("normal", "fire", "water", "grass, poison", "fire, flying",
+            "electric", "bug, flying", "psychic", "rock, ground", "dragon");
+
+    @Param({"1300"})
+    private int pokemonCount;
+
+    private Path directory;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("pokemon-snapshot");
+        file = directory.resolve("pokemon.snapshot");
+        List<Pokemon> pokemon = IntStream.rangeClosed(1, pokemonCount)
+                .mapToObj(id -> new Pokemon(id, "pokemon-" + id, TYPES.get(id % TYPES.size()),
+                        "https://raw.githubusercontent.com/PokeAPI/sprites/master/sprites/pokemon/" + id + ".png"))
+                .toList();
+        PokemonSnapshotFile.write(file, pokemon.stream().map(Pokemon::name).toList(), pokemon);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public PokemonSnapshot load() {
+        PokemonSnapshot snapshot = new PokemonSnapshot(file, Duration.ofHours(12));
+        snapshot.destroy();
+        return snapshot;
+    }
+}
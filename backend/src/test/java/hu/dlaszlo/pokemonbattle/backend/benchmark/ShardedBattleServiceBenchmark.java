@@ -0,0 +1,88 @@
+package hu.dlaszlo.pokemonbattle.backend.benchmark;
+
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApi;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.dto.Pokemon;
+import hu.dlaszlo.pokemonbattle.backend.service.BattleService;
+import hu.dlaszlo.pokemonbattle.backend.service.InMemoryBattleServiceImpl;
+import hu.dlaszlo.pokemonbattle.backend.service.ShardedBattleServiceImpl;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.history.SegmentedBattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.pending.PendingBattleStore;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Measures create + simulate throughput of the single in-memory service and the sharded one.
+ * PokeAPI is replaced by an in-memory catalog, so only the battle bookkeeping is measured.
+ * <p>
+ * Run once per thread count to see the scaling, e.g. for 1 to 32 threads:
+ * {@code for t in 1 2 4 8 16 32; do mvn -Pbenchmark test-compile exec:exec
+ * -Djmh.args="ShardedBattleServiceBenchmark -t $t"; done}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class ShardedBattleServiceBenchmark {
+
+    private static final int SHARD_COUNT = 32;
+    private static final Duration PENDING_TTL = Duration.ofMinutes(30);
+    private static final int PENDING_MAX_SIZE = 100_000;
+
+    @Param({"memory", "sharded"})
+    private String store;
+
+    private BattleService service;
+
+    @Setup(Level.Trial)
+    public void silenceLogging() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+    }
+
+    /**
+     * A fresh service per iteration keeps the history, and so the heap, from growing across iterations.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        PokeApi pokeApi = new CatalogPokeApi();
+        service = store.equals("sharded")
+                ? new ShardedBattleServiceImpl(pokeApi, SegmentedBattleHistory::new, PENDING_TTL, PENDING_MAX_SIZE,
+                SHARD_COUNT)
+                : new InMemoryBattleServiceImpl(pokeApi, new PendingBattleStore(PENDING_TTL, PENDING_MAX_SIZE),
+                new SegmentedBattleHistory());
+    }
+
+    @Benchmark
+    public Battle createAndSimulate() {
+        return service.simulateBattle(service.createRandomBattle().id());
+    }
+
+    private static final class CatalogPokeApi implements PokeApi {
+
+        private static final List<String> NAMES = List.of("pikachu", "bulbasaur", "charmander", "squirtle",
+                "jigglypuff", "meowth", "psyduck", "snorlax", "mewtwo", "eevee");
+        private static final Map<String, Pokemon> POKEMON = NAMES.stream()
+                .collect(Collectors.toMap(Function.identity(),
+                        name -> new Pokemon(NAMES.indexOf(name) + 1, name, "normal", "https://img/" + name + ".png")));
+
+        @Override
+        public List<String> listPokemonNames() {
+            return NAMES;
+        }
+
+        @Override
+        public Pokemon getPokemon(String name) {
+            return POKEMON.get(name);
+        }
+    }
+}
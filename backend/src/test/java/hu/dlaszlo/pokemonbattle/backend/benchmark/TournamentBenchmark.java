@@ -0,0 +1,81 @@
+package hu.dlaszlo.pokemonbattle.backend.benchmark;
+
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApi;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.dto.Pokemon;
+import hu.dlaszlo.pokemonbattle.backend.service.BattleService;
+import hu.dlaszlo.pokemonbattle.backend.service.InMemoryBattleServiceImpl;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Tournament;
+import hu.dlaszlo.pokemonbattle.backend.service.history.SegmentedBattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.pending.PendingBattleStore;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measures a full single-elimination tournament, from picking the field to publishing every match
+ * into the history. PokeAPI is replaced by an in-memory catalog of 1000 Pokemon.
+ * <p>
+ * The bracket is played on the common fork/join pool, so the result depends on the number of cores.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="TournamentBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class TournamentBenchmark {
+
+    @Param({"1024", "65536"})
+    private int size;
+
+    private BattleService service;
+
+    @Setup(Level.Trial)
+    public void silenceLogging() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+    }
+
+    /**
+     * A fresh service per iteration keeps the history, and so the heap, from growing across iterations.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        service = new InMemoryBattleServiceImpl(new CatalogPokeApi(),
+                new PendingBattleStore(Duration.ofMinutes(30), 100_000), new SegmentedBattleHistory());
+    }
+
+    @Benchmark
+    public Tournament runRandomTournament() {
+        return service.runRandomTournament(size);
+    }
+
+    private static final class CatalogPokeApi implements PokeApi {
+
+        private static final List<String> NAMES = IntStream.range(0, 1000)
+                .mapToObj(i -> "pokemon-" + i)
+                .collect(Collectors.toList());
+        private static final Map<String, Pokemon> POKEMON = NAMES.stream()
+                .collect(Collectors.toMap(Function.identity(),
+                        name -> new Pokemon(NAMES.indexOf(name) + 1, name, "normal", "https://img/" + name + ".png")));
+
+        @Override
+        public List<String> listPokemonNames() {
+            return NAMES;
+        }
+
+        @Override
+        public Pokemon getPokemon(String name) {
+            return POKEMON.get(name);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApi;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.dto.Pokemon;
+import hu.dlaszlo.pokemonbattle.backend.service.job.BattleCreationJobs;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Saturates asynchronous battle creation against a stalled PokeAPI and checks that the creation is isolated
+ * from the small Tomcat thread pool: PokeAPI is only called on the job workers, every submission is accepted
+ * at once, and searches are served while every worker is blocked.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.threads.max=4",
+        "battle.jobs.concurrency=2",
+        "battle.jobs.queue_size=50"
+})
+class AsyncBattleCreationTest {
+
+    private static final int JOB_COUNT = 12;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private BattleCreationJobs battleCreationJobs;
+
+    @MockitoBean
+    private PokeApi pokeApi;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @Test
+    void searches_shouldBeServed_WhileEveryJobWorkerIsBlockedOnPokeApi() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Set<String> pokeApiThreads = ConcurrentHashMap.newKeySet();
+        when(pokeApi.listPokemonNames()).thenAnswer(invocation -> {
+            pokeApiThreads.add(Thread.currentThread().getName());
+            release.await();
+            return List.of("pikachu", "bulbasaur", "charmander");
+        });
+        when(pokeApi.getPokemon(anyString())).thenAnswer(invocation -> {
+            pokeApiThreads.add(Thread.currentThread().getName());
+            String name = invocation.getArgument(0);
+            return new Pokemon(name.length(), name, "normal", "url-" + name);
+        });
+        when(pokeApi.getPokemons(anyCollection(), any(Duration.class))).thenCallRealMethod();
+
+        List<CompletableFuture<HttpResponse<String>>> submissions = new ArrayList<>();
+        for (int i = 0; i < JOB_COUNT; i++) {
+            submissions.add(httpClient.sendAsync(post("/api/battles/random?async=true"),
+                    HttpResponse.BodyHandlers.ofString()));
+        }
+        List<String> locations = new ArrayList<>();
+        for (CompletableFuture<HttpResponse<String>> submission : submissions) {
+            HttpResponse<String> response = submission.get(REQUEST_TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+            assertThat(response.statusCode()).isEqualTo(202);
+            locations.add(response.headers().firstValue("Location").orElseThrow());
+        }
+        await().until(() -> battleCreationJobs.getActiveCount() == 2);
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(send(get("/api/battles")).statusCode()).isEqualTo(200);
+        }
+
+        assertThat(battleCreationJobs.getActiveCount()).isEqualTo(2);
+        assertThat(battleCreationJobs.getQueuedCount()).isEqualTo(JOB_COUNT - 2);
+        release.countDown();
+        await().atMost(Duration.ofSeconds(30)).until(() -> {
+            for (String location : locations) {
+                if (!send(get(location)).body().contains("\"status\":\"SUCCEEDED\"")) {
+                    return false;
+                }
+            }
+            return true;
+        });
+        assertThat(pokeApiThreads).isNotEmpty().allMatch(name -> name.startsWith("battle-job-"));
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws Exception {
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+    }
+
+    private HttpRequest post(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(REQUEST_TIMEOUT)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+}
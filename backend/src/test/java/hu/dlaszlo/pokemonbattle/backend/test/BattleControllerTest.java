@@ -1,12 +1,25 @@
 package hu.dlaszlo.pokemonbattle.backend.test;
 
 import hu.dlaszlo.pokemonbattle.backend.controller.BattleController;
+import hu.dlaszlo.pokemonbattle.backend.controller.BattleStreamPublisher;
+import hu.dlaszlo.pokemonbattle.backend.controller.IdempotencyKeyStore;
+import hu.dlaszlo.pokemonbattle.backend.controller.PokeApiBulkhead;
+import hu.dlaszlo.pokemonbattle.backend.controller.PokeApiBulkheadFullException;
+import hu.dlaszlo.pokemonbattle.backend.service.BattleJobNotFoundException;
 import hu.dlaszlo.pokemonbattle.backend.service.BattleNotFoundException;
 import hu.dlaszlo.pokemonbattle.backend.service.BattleService;
+import hu.dlaszlo.pokemonbattle.backend.service.InvalidBattleRequestException;
 import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleJob;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleJobStatus;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleOdds;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattlePage;
 import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
 import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonStats;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Tournament;
 import hu.dlaszlo.pokemonbattle.backend.service.dto.WinnerSide;
+import hu.dlaszlo.pokemonbattle.backend.service.job.BattleCreationJobs;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,16 +32,30 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPInputStream;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -43,12 +70,28 @@ class BattleControllerTest {
     @MockitoBean
     private BattleService battleService;
 
+    @MockitoBean
+    private BattleCreationJobs battleCreationJobs;
+
+    @MockitoBean
+    private BattleStreamPublisher battleStreamPublisher;
+
     @TestConfiguration
     static class TestCacheConfig {
         @Bean
         CacheManager cacheManager() {
             return new ConcurrentMapCacheManager();
         }
+
+        @Bean
+        IdempotencyKeyStore idempotencyKeyStore() {
+            return new IdempotencyKeyStore(Duration.ofMinutes(10), 100, 1000, Clock.systemUTC());
+        }
+
+        @Bean
+        PokeApiBulkhead pokeApiBulkhead() {
+            return new PokeApiBulkhead(4, 4, Duration.ofSeconds(1), Duration.ofSeconds(3));
+        }
     }
 
     @Test
@@ -103,6 +146,342 @@ class BattleControllerTest {
         verify(battleService).simulateBattle(id);
     }
 
+    @Test
+    void simulateBattle_shouldKeepTheJsonLayoutOfABattle() throws Exception {
+        Battle finished = new Battle(
+                3L,
+                BattleStatus.FINISHED,
+                new PokemonEntity("pikachu", "electric", "url1", 15),
+                new PokemonEntity("bulbasaur", "grass, poison", "url2", 5),
+                WinnerSide.FIRST,
+                Instant.parse("2025-01-01T10:00:00.123456Z"),
+                Instant.parse("2025-01-01T10:00:01Z")
+        );
+        when(battleService.simulateBattle(3L)).thenReturn(finished);
+
+        mockMvc.perform(post("/api/battles/{id}/simulate", 3L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"id\":3,\"status\":\"FINISHED\","
+                        + "\"first\":{\"name\":\"pikachu\",\"types\":\"electric\",\"imageUrl\":\"url1\",\"power\":15},"
+                        + "\"second\":{\"name\":\"bulbasaur\",\"types\":\"grass, poison\",\"imageUrl\":\"url2\",\"power\":5},"
+                        + "\"winnerSide\":\"FIRST\",\"createdAt\":\"2025-01-01T10:00:00.123456Z\","
+                        + "\"finishedAt\":\"2025-01-01T10:00:01Z\"}"));
+    }
+
+    @Test
+    void createRandomBattle_shouldReturnTheOriginalBattle_WhenRetriedWithTheSameIdempotencyKey() throws Exception {
+        Battle battle = new Battle(7L, BattleStatus.PENDING,
+                new PokemonEntity("pikachu", "electric", "url1", 10),
+                new PokemonEntity("bulbasaur", "grass", "url2", 12),
+                null, Instant.now(), null);
+        when(battleService.createRandomBattle()).thenReturn(battle);
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/api/battles/random").header("Idempotency-Key", "retry-1"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.id").value(7L));
+        }
+
+        verify(battleService, times(1)).createRandomBattle();
+    }
+
+    @Test
+    void createRandomBattle_shouldReturn422_WhenTheIdempotencyKeyWasUsedWithAnotherRequest() throws Exception {
+        when(battleService.simulateBattle(3L)).thenReturn(finishedBattles().get(0));
+
+        mockMvc.perform(post("/api/battles/{id}/simulate", 3L).header("Idempotency-Key", "reused"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/battles/random").header("Idempotency-Key", "reused"))
+                .andExpect(status().isUnprocessableContent());
+
+        verify(battleService, never()).createRandomBattle();
+    }
+
+    @Test
+    void createRandomBattle_shouldReturn503WithRetryAfter_WhenThePokeApiBulkheadIsFull() throws Exception {
+        when(battleService.createRandomBattle()).thenThrow(new PokeApiBulkheadFullException(Duration.ofSeconds(3)));
+
+        mockMvc.perform(post("/api/battles/random"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "3"));
+    }
+
+    @Test
+    void battleOdds_shouldReturnTheProbabilities() throws Exception {
+        when(battleService.battleOdds(3L, 1_000_000))
+                .thenReturn(new BattleOdds(3L, 1_000_000, 0.75, 0.2, 0.05, 2.0, 0.5));
+
+        mockMvc.perform(get("/api/battles/{id}/odds", 3L).param("rounds", "1000000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.battleId").value(3))
+                .andExpect(jsonPath("$.firstWinProbability").value(0.75))
+                .andExpect(jsonPath("$.drawProbability").value(0.05))
+                .andExpect(jsonPath("$.firstTypeMultiplier").value(2.0));
+    }
+
+    @Test
+    void battleOdds_shouldUseTheDefaultRounds_AndReturn404_WhenBattleIsUnknown() throws Exception {
+        when(battleService.battleOdds(9L, 100_000)).thenThrow(new BattleNotFoundException(9L));
+
+        mockMvc.perform(get("/api/battles/{id}/odds", 9L))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void createRandomBattles_shouldStreamTheBattlesAsJsonArray() throws Exception {
+        List<Battle> battles = List.of(
+                new Battle(1L, BattleStatus.PENDING, new PokemonEntity("Pikachu", "electric", "url1", 10),
+                        new PokemonEntity("Bulbasaur", "grass", "url2", 12), null, Instant.now(), null),
+                new Battle(2L, BattleStatus.PENDING, new PokemonEntity("Eevee", "normal", "url3", 3),
+                        new PokemonEntity("Pikachu", "electric", "url1", 7), null, Instant.now(), null));
+        when(battleService.createRandomBattles(2)).thenReturn(battles);
+
+        MvcResult result = mockMvc.perform(post("/api/battles/random/batch").param("count", "2")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value(1L))
+                .andExpect(jsonPath("$[1].first.name").value("Eevee"));
+    }
+
+    @Test
+    void createRandomBattles_shouldReturn400_WhenCountIsOutOfRange() throws Exception {
+        when(battleService.createRandomBattles(0))
+                .thenThrow(new InvalidBattleRequestException("Count must be between 1 and 10000."));
+
+        mockMvc.perform(post("/api/battles/random/batch").param("count", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Count must be between 1 and 10000."));
+    }
+
+    @Test
+    void createRandomBattles_shouldNotReturn400_WhenTheServiceFailsWithAnotherIllegalArgumentException() {
+        when(battleService.createRandomBattles(5))
+                .thenThrow(new IllegalArgumentException("Record does not fit into a log segment: 123"));
+
+        assertThatThrownBy(() -> mockMvc.perform(post("/api/battles/random/batch").param("count", "5")))
+                .hasRootCauseInstanceOf(IllegalArgumentException.class)
+                .hasRootCauseMessage("Record does not fit into a log segment: 123");
+    }
+
+    @Test
+    void runTournament_shouldReturnTheBracket() throws Exception {
+        PokemonEntity pikachu = new PokemonEntity("Pikachu", "electric", "url1", 12);
+        PokemonEntity eevee = new PokemonEntity("Eevee", "normal", "url2", 7);
+        Battle match = new Battle(1L, BattleStatus.FINISHED, pikachu, eevee, WinnerSide.FIRST,
+                Instant.now(), Instant.now());
+        when(battleService.runTournament(List.of("pikachu", "eevee")))
+                .thenReturn(new Tournament(pikachu, 1, List.of(match)));
+
+        mockMvc.perform(post("/api/battles/tournament")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"pikachu\", \"eevee\"]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.champion.name").value("Pikachu"))
+                .andExpect(jsonPath("$.rounds").value(1))
+                .andExpect(jsonPath("$.matches", hasSize(1)))
+                .andExpect(jsonPath("$.matches[0].winnerSide").value("FIRST"));
+    }
+
+    @Test
+    void runTournament_shouldReturn422_WhenTheIdempotencyKeyWasUsedWithOtherNamesOfTheSameHashCode() throws Exception {
+        PokemonEntity first = new PokemonEntity("Aa", "normal", "url1", 12);
+        PokemonEntity second = new PokemonEntity("BB", "normal", "url2", 7);
+        when(battleService.runTournament(List.of("Aa", "BB"))).thenReturn(new Tournament(first, 1,
+                List.of(new Battle(1L, BattleStatus.FINISHED, first, second, WinnerSide.FIRST,
+                        Instant.now(), Instant.now()))));
+
+        mockMvc.perform(post("/api/battles/tournament").header("Idempotency-Key", "bracket")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"Aa\", \"BB\"]"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/battles/tournament").header("Idempotency-Key", "bracket")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"BB\", \"Aa\"]"))
+                .andExpect(status().isUnprocessableContent());
+
+        verify(battleService, never()).runTournament(List.of("BB", "Aa"));
+    }
+
+    @Test
+    void runRandomTournament_shouldReturn400_WhenSizeIsNotAPowerOfTwo() throws Exception {
+        when(battleService.runRandomTournament(6))
+                .thenThrow(new InvalidBattleRequestException("Tournament size must be a power of two between 2 and 65536."));
+
+        mockMvc.perform(post("/api/battles/tournament/random").param("size", "6"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("power of two")));
+    }
+
+    @Test
+    void createRandomBattle_async_shouldReturn202WithTheJobLocation() throws Exception {
+        when(battleCreationJobs.submit())
+                .thenReturn(new BattleJob(5L, BattleJobStatus.QUEUED, null, null, Instant.now(), null));
+
+        mockMvc.perform(post("/api/battles/random").param("async", "true"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/battles/jobs/5"))
+                .andExpect(jsonPath("$.id").value(5L))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+
+        verify(battleService, never()).createRandomBattle();
+    }
+
+    @Test
+    void createRandomBattle_async_shouldReturn503_WhenTheQueueIsFull() throws Exception {
+        when(battleCreationJobs.submit()).thenThrow(new RejectedExecutionException());
+
+        mockMvc.perform(post("/api/battles/random").param("async", "true"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    void getBattleJob_shouldReturnTheCreatedBattle() throws Exception {
+        Battle battle = new Battle(1L, BattleStatus.PENDING, new PokemonEntity("Pikachu", "electric", "url1", 10),
+                new PokemonEntity("Bulbasaur", "grass", "url2", 12), null, Instant.now(), null);
+        when(battleCreationJobs.get(5L))
+                .thenReturn(new BattleJob(5L, BattleJobStatus.SUCCEEDED, battle, null, Instant.now(), Instant.now()));
+
+        mockMvc.perform(get("/api/battles/jobs/{id}", 5L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("SUCCEEDED"))
+                .andExpect(jsonPath("$.battle.id").value(1L));
+    }
+
+    @Test
+    void getBattleJob_shouldReturn404_WhenJobIsUnknown() throws Exception {
+        when(battleCreationJobs.get(7L)).thenThrow(new BattleJobNotFoundException(7L));
+
+        mockMvc.perform(get("/api/battles/jobs/{id}", 7L))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string("Battle job not found with id: 7"));
+    }
+
+    @Test
+    void exportBattles_shouldStreamNewlineDelimitedJson() throws Exception {
+        Instant from = Instant.parse("2025-01-01T00:00:00Z");
+        when(battleService.exportBattles(eq("pika"), eq(from), isNull()))
+                .thenReturn(finishedBattles().stream());
+
+        MvcResult result = mockMvc.perform(get("/api/battles/export")
+                        .param("q", "pika")
+                        .param("from", "2025-01-01T00:00:00Z"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body).endsWith("\n");
+        assertThat(body.split("\n")).hasSize(2)
+                .allMatch(line -> line.startsWith("{\"id\":") && line.endsWith("}"));
+    }
+
+    @Test
+    void exportBattles_shouldGzip_WhenTheClientAcceptsIt() throws Exception {
+        when(battleService.exportBattles(isNull(), isNull(), isNull()))
+                .thenReturn(finishedBattles().stream());
+
+        MvcResult result = mockMvc.perform(get("/api/battles/export")
+                        .header("Accept-Encoding", "deflate, gzip"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        byte[] body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")).hasSize(2);
+        }
+    }
+
+    @Test
+    void exportBattles_shouldNotGzip_WhenTheClientRefusesItWithAZeroQuality() throws Exception {
+        for (String acceptEncoding : List.of("gzip;q=0", "gzip;q=0.0", "gzip; q=0.00", "identity, GZIP;Q=0.000")) {
+            when(battleService.exportBattles(isNull(), isNull(), isNull()))
+                    .thenReturn(finishedBattles().stream());
+
+            MvcResult result = mockMvc.perform(get("/api/battles/export")
+                            .header("Accept-Encoding", acceptEncoding))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist("Content-Encoding"));
+        }
+    }
+
+    @Test
+    void exportBattles_shouldGzip_WhenTheClientAcceptsItWithANonZeroQuality() throws Exception {
+        when(battleService.exportBattles(isNull(), isNull(), isNull()))
+                .thenReturn(finishedBattles().stream());
+
+        MvcResult result = mockMvc.perform(get("/api/battles/export")
+                        .header("Accept-Encoding", "identity;q=1.0, gzip;q=0.5"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"));
+    }
+
+    @Test
+    void exportBattles_shouldReturn400_WhenTheRangeIsInverted() throws Exception {
+        when(battleService.exportBattles(any(), any(), any()))
+                .thenThrow(new InvalidBattleRequestException("'from' must not be after 'to'."));
+
+        mockMvc.perform(get("/api/battles/export")
+                        .param("from", "2025-01-02T00:00:00Z")
+                        .param("to", "2025-01-01T00:00:00Z"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void streamBattles_shouldSendFinishedBattlesAsServerSentEvents() throws Exception {
+        SseEmitter emitter = new SseEmitter();
+        when(battleStreamPublisher.subscribe("pika")).thenReturn(emitter);
+
+        MvcResult result = mockMvc.perform(get("/api/battles/stream").param("q", "pika")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        emitter.send(SseEmitter.event().id("1").name("battle").data("{\"id\":1}", MediaType.APPLICATION_JSON));
+        emitter.complete();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(content().string("id:1\nevent:battle\ndata:{\"id\":1}\n\n"));
+    }
+
+    @Test
+    void leaderboard_shouldReturnTheTopPokemon() throws Exception {
+        when(battleService.leaderboard(2)).thenReturn(List.of(
+                new PokemonStats("pikachu", 10, 7, 2, 1, 12.5),
+                new PokemonStats("eevee", 8, 5, 3, 0, 10.0)));
+
+        mockMvc.perform(get("/api/battles/leaderboard").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].name").value("pikachu"))
+                .andExpect(jsonPath("$[0].wins").value(7))
+                .andExpect(jsonPath("$[0].averagePower").value(12.5));
+    }
+
     @Test
     void simulateBattle_whenBattleNotFound_shouldReturn404() throws Exception {
         long id = 99L;
@@ -176,4 +555,65 @@ class BattleControllerTest {
 
         verify(battleService).searchBattles(eq(query));
     }
+
+    @Test
+    void listBattles_withCursor_shouldReturnPageWithNextCursor() throws Exception {
+        Battle b1 = new Battle(
+                5L,
+                BattleStatus.FINISHED,
+                new PokemonEntity("Charmander", "fire", "u3", 15),
+                new PokemonEntity("Squirtle", "water", "u4", 8),
+                WinnerSide.FIRST,
+                Instant.now(),
+                Instant.now()
+        );
+
+        when(battleService.searchBattles("char", 9L, null, 1)).thenReturn(new BattlePage(List.of(b1), 5L));
+
+        mockMvc.perform(get("/api/battles")
+                        .param("q", "char")
+                        .param("before", "9")
+                        .param("limit", "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.battles", hasSize(1)))
+                .andExpect(jsonPath("$.battles[0].id").value(5L))
+                .andExpect(jsonPath("$.nextCursor").value(5L));
+
+        verify(battleService).searchBattles("char", 9L, null, 1);
+    }
+
+    @Test
+    void listBattles_withCursorOnly_shouldUseDefaultLimit() throws Exception {
+        when(battleService.searchBattles(null, null, 3L, 20)).thenReturn(new BattlePage(List.of(), null));
+
+        mockMvc.perform(get("/api/battles")
+                        .param("after", "3")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.battles", hasSize(0)))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void listBattles_withInvalidPaging_shouldReturn400() throws Exception {
+        when(battleService.searchBattles(null, 1L, 2L, 20))
+                .thenThrow(new InvalidBattleRequestException("Only one of 'before' and 'after' can be set."));
+
+        mockMvc.perform(get("/api/battles")
+                        .param("before", "1")
+                        .param("after", "2")
+                        .accept(MediaType.TEXT_PLAIN))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("Only one of")));
+    }
+
+    private static List<Battle> finishedBattles() {
+        Instant finishedAt = Instant.parse("2025-01-01T10:00:00Z");
+        return List.of(
+                new Battle(1L, BattleStatus.FINISHED, new PokemonEntity("Pikachu", "electric", "u1", 10),
+                        new PokemonEntity("Bulbasaur", "grass", "u2", 5), WinnerSide.FIRST, finishedAt, finishedAt),
+                new Battle(2L, BattleStatus.FINISHED, new PokemonEntity("Eevee", "normal", "u3", 3),
+                        new PokemonEntity("Pikachu", "electric", "u1", 8), WinnerSide.SECOND, finishedAt, finishedAt));
+    }
 }
@@ -0,0 +1,141 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApiException;
+import hu.dlaszlo.pokemonbattle.backend.service.BattleJobNotFoundException;
+import hu.dlaszlo.pokemonbattle.backend.service.BattleService;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleJob;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleJobStatus;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.job.BattleCreationJobs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BattleCreationJobsTest {
+
+    private static final Battle BATTLE = new Battle(1L, BattleStatus.PENDING,
+            new PokemonEntity("pikachu", "electric", "u1", 15),
+            new PokemonEntity("bulbasaur", "grass", "u2", 5),
+            null, Instant.now(), null);
+
+    @Mock
+    private BattleService battleService;
+
+    private MutableClock clock;
+
+    private BattleCreationJobs jobs;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.now());
+        jobs = new BattleCreationJobs(battleService, 1, 1, Duration.ofMinutes(10), 100, clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobs.destroy();
+    }
+
+    @Test
+    void submit_shouldCreateTheBattleInTheBackground() {
+        when(battleService.createRandomBattle()).thenReturn(BATTLE);
+
+        BattleJob queued = jobs.submit();
+
+        assertThat(queued.status()).isEqualTo(BattleJobStatus.QUEUED);
+        await().until(() -> jobs.get(queued.id()).status() == BattleJobStatus.SUCCEEDED);
+        BattleJob succeeded = jobs.get(queued.id());
+        assertThat(succeeded.battle()).isEqualTo(BATTLE);
+        assertThat(succeeded.completedAt()).isNotNull();
+    }
+
+    @Test
+    void submit_shouldRecordTheFailure_WhenTheBattleCannotBeCreated() {
+        when(battleService.createRandomBattle()).thenThrow(new PokeApiException("PokeAPI is down"));
+
+        BattleJob queued = jobs.submit();
+
+        await().until(() -> jobs.get(queued.id()).status() == BattleJobStatus.FAILED);
+        assertThat(jobs.get(queued.id()).error()).isEqualTo("PokeAPI is down");
+        assertThat(jobs.getFailedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void submit_shouldReject_WhenWorkersAndQueueAreFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(battleService.createRandomBattle()).thenAnswer(invocation -> {
+            release.await();
+            return BATTLE;
+        });
+
+        BattleJob running = jobs.submit();
+        await().until(() -> jobs.get(running.id()).status() == BattleJobStatus.RUNNING);
+        BattleJob queued = jobs.submit();
+
+        assertThatThrownBy(() -> jobs.submit()).isInstanceOf(RejectedExecutionException.class);
+        assertThat(jobs.getRejectedCount()).isEqualTo(1);
+        assertThat(jobs.getQueuedCount()).isEqualTo(1);
+
+        release.countDown();
+        await().until(() -> jobs.get(queued.id()).status() == BattleJobStatus.SUCCEEDED);
+    }
+
+    @Test
+    void get_shouldThrow_WhenTheResultHasExpired() {
+        when(battleService.createRandomBattle()).thenReturn(BATTLE);
+        BattleJob first = jobs.submit();
+        await().until(() -> jobs.get(first.id()).status() == BattleJobStatus.SUCCEEDED);
+
+        clock.advance(Duration.ofMinutes(10));
+
+        assertThatThrownBy(() -> jobs.get(first.id())).isInstanceOf(BattleJobNotFoundException.class);
+        BattleJob second = jobs.submit();
+        await().until(() -> jobs.get(second.id()).status() == BattleJobStatus.SUCCEEDED);
+        assertThat(jobs.size()).isEqualTo(1);
+        assertThatThrownBy(() -> jobs.get(99)).isInstanceOf(BattleJobNotFoundException.class);
+    }
+
+    @Test
+    void submit_shouldExpireCompletedJobs_BehindARunningJob() throws Exception {
+        jobs.destroy();
+        jobs = new BattleCreationJobs(battleService, 2, 1, Duration.ofMinutes(10), 100, clock);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        when(battleService.createRandomBattle()).thenAnswer(invocation -> {
+            if (calls.getAndIncrement() == 0) {
+                release.await();
+            }
+            return BATTLE;
+        });
+        BattleJob running = jobs.submit();
+        await().until(() -> jobs.get(running.id()).status() == BattleJobStatus.RUNNING);
+        BattleJob completed = jobs.submit();
+        await().until(() -> jobs.get(completed.id()).status() == BattleJobStatus.SUCCEEDED);
+
+        clock.advance(Duration.ofMinutes(10));
+        BattleJob next = jobs.submit();
+        await().until(() -> jobs.get(next.id()).status() == BattleJobStatus.SUCCEEDED);
+
+        assertThat(jobs.size()).isEqualTo(2);
+        assertThat(jobs.get(running.id()).status()).isEqualTo(BattleJobStatus.RUNNING);
+        release.countDown();
+        await().until(() -> jobs.get(running.id()).status() == BattleJobStatus.SUCCEEDED);
+    }
+}
@@ -0,0 +1,61 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleOdds;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.odds.BattleOddsSimulator;
+import hu.dlaszlo.pokemonbattle.backend.service.odds.TypeEffectiveness;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class BattleOddsSimulatorTest {
+
+    @Test
+    void multiplier_shouldUseTheBestAttackingTypeAgainstEveryDefendingType() {
+        assertThat(TypeEffectiveness.multiplier("water", "fire")).isEqualTo(2.0);
+        assertThat(TypeEffectiveness.multiplier("electric", "ground")).isZero();
+        assertThat(TypeEffectiveness.multiplier("ice", "grass, flying")).isEqualTo(4.0);
+        assertThat(TypeEffectiveness.multiplier("fire", "water, rock")).isEqualTo(0.25);
+        assertThat(TypeEffectiveness.multiplier("normal, fighting", "rock")).isEqualTo(2.0);
+        assertThat(TypeEffectiveness.multiplier("Fire", "GRASS")).isEqualTo(2.0);
+        assertThat(TypeEffectiveness.multiplier("shadow", "grass")).isEqualTo(1.0);
+        assertThat(TypeEffectiveness.multiplier(null, "grass")).isEqualTo(1.0);
+    }
+
+    @Test
+    void simulate_shouldBeSymmetric_ForAnEvenMatchup() {
+        PokemonEntity first = new PokemonEntity("pikachu", "electric", "u1", 10);
+        PokemonEntity second = new PokemonEntity("raichu", "electric", "u2", 10);
+
+        BattleOdds odds = BattleOddsSimulator.simulate(1L, first, second, 1_000_000);
+
+        assertThat(odds.firstWinProbability()).isCloseTo(odds.secondWinProbability(), within(0.01));
+        // both roll one of 11 values: a draw is 1 in 11
+        assertThat(odds.drawProbability()).isCloseTo(1.0 / 11, within(0.01));
+    }
+
+    @Test
+    void simulate_shouldOnlyDependOnTheSeed() {
+        PokemonEntity first = new PokemonEntity("squirtle", "water", "u1", 8);
+        PokemonEntity second = new PokemonEntity("charmander", "fire", "u2", 14);
+
+        BattleOdds once = BattleOddsSimulator.simulate(1L, first, second, 500_000, new SplittableRandom(42));
+        BattleOdds twice = BattleOddsSimulator.simulate(1L, first, second, 500_000, new SplittableRandom(42));
+
+        assertThat(once).isEqualTo(twice);
+        assertThat(once.firstTypeMultiplier()).isEqualTo(2.0);
+        assertThat(once.secondTypeMultiplier()).isEqualTo(0.5);
+        assertThat(once.firstWinProbability()).isGreaterThan(0.9);
+    }
+
+    @Test
+    void play_shouldCountEveryRound() {
+        long result = BattleOddsSimulator.play(20, 4, 1, 4, 1000, new SplittableRandom(7));
+
+        assertThat(BattleOddsSimulator.firstWins(result)).isEqualTo(1000);
+        assertThat(BattleOddsSimulator.secondWins(result)).isZero();
+    }
+}
@@ -0,0 +1,243 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import hu.dlaszlo.pokemonbattle.backend.controller.BattleStreamPublisher;
+import hu.dlaszlo.pokemonbattle.backend.service.BattleService;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.WinnerSide;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class BattleStreamPublisherTest {
+
+    @Mock
+    private BattleService battleService;
+
+    private BattleStreamPublisher publisher;
+
+    private Consumer<Battle> listener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        publisher = new BattleStreamPublisher(battleService, JsonMapper.builder().build(),
+                8, 1000, 4, 16, Duration.ofMinutes(30), Duration.ofMillis(200));
+        ArgumentCaptor<Consumer<Battle>> captor = ArgumentCaptor.forClass(Consumer.class);
+        verify(battleService).addFinishedBattleListener(captor.capture());
+        listener = captor.getValue();
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.destroy();
+    }
+
+    @Test
+    void publish_shouldFanOutEveryBattleToTenThousandSubscribers() {
+        List<RecordingEmitter> everything = new ArrayList<>();
+        List<RecordingEmitter> pikachuOnly = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            everything.add(subscribe(new RecordingEmitter(), null));
+            pikachuOnly.add(subscribe(new RecordingEmitter(), "PIKA"));
+        }
+        assertThat(publisher.getSubscriberCount()).isEqualTo(10_000);
+
+        for (long id = 1; id <= 4; id++) {
+            listener.accept(battle(id, id % 2 == 1 ? "pikachu" : "eevee"));
+        }
+
+        await().until(() -> everything.stream().allMatch(emitter -> emitter.count() == 4)
+                && pikachuOnly.stream().allMatch(emitter -> emitter.count() == 2));
+        assertThat(pikachuOnly.get(0).events()).containsExactly(
+                "id:1\nevent:battle\ndata:" + json(battle(1L, "pikachu")) + "\n\n",
+                "id:3\nevent:battle\ndata:" + json(battle(3L, "pikachu")) + "\n\n");
+        assertThat(publisher.getPublishedCount()).isEqualTo(4);
+        assertThat(publisher.getDroppedCount()).isZero();
+    }
+
+    @Test
+    void publish_shouldDropASubscriberThatCannotKeepUp_WithoutBlockingTheOthers() {
+        BlockedEmitter slow = subscribe(new BlockedEmitter(), null);
+        RecordingEmitter fast = subscribe(new RecordingEmitter(), null);
+
+        try {
+            for (long id = 1; id <= 50; id++) {
+                listener.accept(battle(id, "pikachu"));
+                int delivered = (int) id;
+                await().until(() -> fast.count() == delivered);
+            }
+
+            assertThat(publisher.getDroppedCount()).isEqualTo(1);
+            assertThat(publisher.getSubscriberCount()).isEqualTo(1);
+            assertThat(slow.count()).isLessThanOrEqualTo(1);
+        } finally {
+            slow.release.countDown();
+        }
+    }
+
+    @Test
+    void publish_shouldDropSubscribersWhoseWriteTimesOut_WhenMoreAreBlockedThanThereAreSenders() {
+        List<BlockedEmitter> blocked = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            blocked.add(subscribe(new BlockedEmitter(), null));
+        }
+        RecordingEmitter fast = subscribe(new RecordingEmitter(), null);
+
+        try {
+            for (long id = 1; id <= 3; id++) {
+                listener.accept(battle(id, "pikachu"));
+            }
+
+            await().atMost(Duration.ofSeconds(5)).until(() -> fast.count() == 3);
+            await().atMost(Duration.ofSeconds(5)).until(() -> publisher.getSubscriberCount() == 1);
+            assertThat(publisher.getDroppedCount()).isEqualTo(10);
+            assertThat(blocked).allMatch(emitter -> emitter.count() <= 1);
+
+            listener.accept(battle(4L, "pikachu"));
+            await().atMost(Duration.ofSeconds(5)).until(() -> fast.count() == 4);
+        } finally {
+            blocked.forEach(emitter -> emitter.release.countDown());
+        }
+    }
+
+    @Test
+    void publish_shouldNotStartMoreSendersThanTheMaximum_WhenManyWritesStall() {
+        BattleStreamPublisher capped = new BattleStreamPublisher(battleService, JsonMapper.builder().build(),
+                8, 1000, 4, 6, Duration.ofMinutes(30), Duration.ofMillis(100));
+        List<BlockedEmitter> blocked = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            BlockedEmitter emitter = new BlockedEmitter();
+            capped.subscribe(emitter, null);
+            blocked.add(emitter);
+        }
+        ArgumentCaptor<Consumer<Battle>> captor = listenerCaptor();
+        verify(battleService, times(2)).addFinishedBattleListener(captor.capture());
+
+        try {
+            captor.getValue().accept(battle(1L, "pikachu"));
+
+            await().atMost(Duration.ofSeconds(5)).until(() -> capped.getDroppedCount() >= 6);
+            long end = System.nanoTime() + Duration.ofMillis(500).toNanos();
+            while (System.nanoTime() < end) {
+                assertThat(capped.getSenderThreadCount()).isLessThanOrEqualTo(6);
+            }
+            assertThat(blocked.stream().filter(emitter -> emitter.count() > 0)).hasSize(6);
+        } finally {
+            blocked.forEach(emitter -> emitter.release.countDown());
+        }
+        await().atMost(Duration.ofSeconds(5)).until(() -> capped.getSenderThreadCount() == 4);
+        capped.destroy();
+    }
+
+    @Test
+    void publish_shouldRemoveASubscriber_WhenItsConnectionIsClosed() {
+        subscribe(new RecordingEmitter() {
+            @Override
+            public void send(Set<DataWithMediaType> items) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        }, null);
+        RecordingEmitter open = subscribe(new RecordingEmitter(), null);
+
+        listener.accept(battle(1L, "pikachu"));
+
+        await().until(() -> open.count() == 1 && publisher.getSubscriberCount() == 1);
+        assertThat(publisher.getDroppedCount()).isZero();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<Consumer<Battle>> listenerCaptor() {
+        return ArgumentCaptor.forClass(Consumer.class);
+    }
+
+    private <T extends SseEmitter> T subscribe(T emitter, String query) {
+        publisher.subscribe(emitter, query);
+        return emitter;
+    }
+
+    private static String json(Battle battle) {
+        return JsonMapper.builder().build().writeValueAsString(battle);
+    }
+
+    private static Battle battle(Long id, String name) {
+        return new Battle(id, BattleStatus.FINISHED,
+                new PokemonEntity(name, "normal", "u1", 15),
+                new PokemonEntity("bulbasaur", "grass", "u2", 5),
+                WinnerSide.FIRST, Instant.parse("2025-01-01T00:00:00Z"), Instant.parse("2025-01-01T00:00:01Z"));
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void send(Set<DataWithMediaType> items) throws IOException {
+            String event = items.stream()
+                    .map(item -> item.getData() instanceof byte[] bytes
+                            ? new String(bytes, StandardCharsets.UTF_8)
+                            : item.getData().toString())
+                    .collect(Collectors.joining());
+            synchronized (events) {
+                events.add(event);
+            }
+        }
+
+        int count() {
+            synchronized (events) {
+                return events.size();
+            }
+        }
+
+        List<String> events() {
+            synchronized (events) {
+                return List.copyOf(events);
+            }
+        }
+    }
+
+    private static class BlockedEmitter extends SseEmitter {
+
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger sent = new AtomicInteger();
+
+        @Override
+        public void send(Set<DataWithMediaType> items) {
+            sent.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        int count() {
+            return sent.get();
+        }
+    }
+}
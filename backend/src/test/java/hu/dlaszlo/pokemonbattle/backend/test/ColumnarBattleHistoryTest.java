@@ -0,0 +1,180 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.WinnerSide;
+import hu.dlaszlo.pokemonbattle.backend.service.history.BattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.history.ColumnarBattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.history.SegmentedBattleHistory;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ColumnarBattleHistoryTest {
+
+    static {
+        // record fields have no Unsafe offset on recent JDKs, let JOL find them by probing instead
+        System.setProperty("jol.magicFieldOffset", "true");
+    }
+
+    private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    private static final List<PokemonEntity> CATALOG = IntStream.range(0, 1000)
+            .mapToObj(i -> new PokemonEntity("pokemon-" + i, "fire, flying",
+                    "https://raw.githubusercontent.com/PokeAPI/sprites/master/sprites/pokemon/" + i + ".png", 0))
+            .collect(Collectors.toList());
+
+    private final ColumnarBattleHistory history = new ColumnarBattleHistory();
+
+    @Test
+    void get_shouldMaterializeTheAppendedBattle() {
+        Battle finished = battle(7);
+        Battle pending = new Battle(8L, BattleStatus.PENDING, pokemon(1, 20), pokemon(2, 1), null, NOW, null);
+
+        history.append(finished);
+        history.append(pending);
+
+        assertThat(history.get(0)).isEqualTo(finished);
+        assertThat(history.get(1)).isEqualTo(pending);
+    }
+
+    @Test
+    void get_shouldKeepMillisecondPrecision() {
+        Instant createdAt = Instant.parse("2025-01-01T10:00:00.123456789Z");
+        history.append(new Battle(1L, BattleStatus.FINISHED, pokemon(1, 5), pokemon(2, 6),
+                WinnerSide.DRAW, createdAt, createdAt));
+
+        assertThat(history.get(0).createdAt()).isEqualTo(Instant.parse("2025-01-01T10:00:00.123Z"));
+    }
+
+    @Test
+    void append_shouldAssignIncreasingPositions_AcrossChunkBoundaries() {
+        int count = 40_000;
+        for (long i = 0; i < count; i++) {
+            assertThat(history.append(battle(i))).isEqualTo(i);
+        }
+
+        assertThat(history.size()).isEqualTo(count);
+        assertThat(history.get(16_383)).isEqualTo(battle(16_383));
+        assertThat(history.get(16_384)).isEqualTo(battle(16_384));
+        assertThat(history.newestFirst().map(Battle::id).findFirst()).contains(count - 1L);
+        assertThat(history.oldestFirst(0).count()).isEqualTo(count);
+    }
+
+    @Test
+    void newestFirst_shouldNotSeeBattlesAppendedAfterItWasCreated() {
+        history.append(battle(1));
+        var stream = history.newestFirst();
+        history.append(battle(2));
+
+        assertThat(stream.map(Battle::id)).containsExactly(1L);
+    }
+
+    @Test
+    void positionOf_shouldSeekDirectlyIntoTheLog() {
+        for (long i = 0; i < 5; i++) {
+            history.append(battle(100 + i));
+        }
+        history.append(battle(-3));
+        history.append(battle(5_000_000_000L));
+
+        assertThat(history.positionOf(102)).isEqualTo(2);
+        assertThat(history.positionOf(-3)).isEqualTo(5);
+        assertThat(history.positionOf(5_000_000_000L)).isEqualTo(6);
+        assertThat(history.positionOf(999)).isEqualTo(-1);
+        assertThat(history.findById(103)).isEqualTo(battle(103));
+        assertThat(history.newestFirst(2).map(Battle::id)).containsExactly(102L, 101L, 100L);
+        assertThat(history.oldestFirst(5).map(Battle::id)).containsExactly(-3L, 5_000_000_000L);
+        assertThat(history.newestFirst(-1)).isEmpty();
+        assertThat(history.oldestFirst(7)).isEmpty();
+    }
+
+    @Test
+    void get_shouldThrow_WhenPositionIsOutOfRange() {
+        history.append(battle(1));
+
+        assertThatThrownBy(() -> history.get(1)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> history.get(-1)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void append_shouldKeepEveryBattle_WhenCalledConcurrently() throws Exception {
+        int threads = 8;
+        int perThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            Future<?> reader = executor.submit(() -> {
+                while (history.size() < (long) threads * perThread) {
+                    long size = history.size();
+                    if (size > 0) {
+                        Battle newest = history.get(size - 1);
+                        assertThat(history.positionOf(newest.id())).isBetween(-1L, size - 1);
+                    }
+                }
+            });
+            List<Future<?>> writers = LongStream.range(0, threads)
+                    .mapToObj(t -> executor.submit(() -> {
+                        for (long i = 0; i < perThread; i++) {
+                            history.append(battle(t * perThread + i));
+                        }
+                    }))
+                    .collect(Collectors.toList());
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            reader.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(history.size()).isEqualTo((long) threads * perThread);
+        assertThat(LongStream.range(0, (long) threads * perThread).filter(id -> history.findById(id) == null))
+                .isEmpty();
+    }
+
+    @Test
+    void retainedHeap_shouldBeAtLeastFiveTimesSmallerThanSegmentedHistory() {
+        int count = 16_384;
+        BattleHistory segmented = new SegmentedBattleHistory();
+        for (long i = 0; i < count; i++) {
+            segmented.append(battle(i));
+            history.append(battle(i));
+        }
+
+        long catalogSize = GraphLayout.parseInstance(CATALOG.toArray()).totalSize();
+        long segmentedSize = GraphLayout.parseInstance(segmented).totalSize() - catalogSize;
+        long columnarSize = GraphLayout.parseInstance(history).totalSize() - catalogSize;
+
+        assertThat(segmentedSize).isGreaterThan(5 * columnarSize);
+    }
+
+    private static Battle battle(long id) {
+        int catalogIndex = (int) Math.floorMod(id * 31, CATALOG.size());
+        return new Battle(
+                id,
+                BattleStatus.FINISHED,
+                pokemon(catalogIndex, (int) Math.floorMod(id, 20) + 1),
+                pokemon(catalogIndex / 2, (int) Math.floorMod(id, 7) + 1),
+                WinnerSide.values()[(int) Math.floorMod(id, 3)],
+                NOW.plusMillis(id),
+                NOW.plusMillis(id + 1500)
+        );
+    }
+
+    private static PokemonEntity pokemon(int catalogIndex, int power) {
+        PokemonEntity template = CATALOG.get(catalogIndex);
+        return new PokemonEntity(template.name(), template.types(), template.imageUrl(), power);
+    }
+}
@@ -0,0 +1,278 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApi;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.dto.Pokemon;
+import hu.dlaszlo.pokemonbattle.backend.service.DurableBattleServiceImpl;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonStats;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Tournament;
+import hu.dlaszlo.pokemonbattle.backend.service.durable.BattleWriteAheadLog;
+import hu.dlaszlo.pokemonbattle.backend.service.history.SegmentedBattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.pending.PendingBattleStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class DurableBattleServiceImplTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private PokeApi pokeApi;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(pokeApi.listPokemonNames()).thenReturn(List.of("pikachu", "bulbasaur", "charmander"));
+        lenient().when(pokeApi.getPokemon(anyString())).thenAnswer(invocation -> {
+            String name = invocation.getArgument(0);
+            return new Pokemon(name.length(), name, "normal", "url-" + name);
+        });
+        lenient().when(pokeApi.getPokemons(anyCollection())).thenCallRealMethod();
+        lenient().when(pokeApi.getPokemons(anyCollection(), any(Duration.class))).thenCallRealMethod();
+    }
+
+    @Test
+    void restart_shouldRecoverABatchOfPendingBattles() throws Exception {
+        DurableBattleServiceImpl service = open(DataSize.ofKilobytes(4));
+        List<Battle> batch = service.createRandomBattles(200);
+        crash(service);
+
+        DurableBattleServiceImpl restarted = open(DataSize.ofKilobytes(4));
+
+        for (Battle battle : batch) {
+            assertThat(restarted.simulateBattle(battle.id()).first()).isEqualTo(battle.first());
+        }
+        restarted.close();
+    }
+
+    @Test
+    void restart_shouldRecoverEveryTournamentMatch() throws Exception {
+        DurableBattleServiceImpl service = open(DataSize.ofKilobytes(4));
+        Tournament tournament = service.runRandomTournament(64);
+        crash(service);
+
+        DurableBattleServiceImpl restarted = open(DataSize.ofKilobytes(4));
+
+        for (Battle match : tournament.matches()) {
+            assertThat(restarted.simulateBattle(match.id())).isEqualTo(match);
+        }
+        assertThat(restarted.createRandomBattle().id()).isEqualTo(63L);
+        restarted.close();
+    }
+
+    @Test
+    void restart_shouldRebuildTheLeaderboardFromSnapshotAndLog() throws Exception {
+        DurableBattleServiceImpl service = open(DataSize.ofKilobytes(4));
+        for (int i = 0; i < 20; i++) {
+            service.simulateBattle(service.createRandomBattle().id());
+        }
+        service.snapshot();
+        service.runRandomTournament(16);
+        List<PokemonStats> leaderboard = service.leaderboard(10);
+        crash(service);
+
+        DurableBattleServiceImpl restarted = open(DataSize.ofKilobytes(4));
+
+        assertThat(leaderboard.stream().mapToLong(PokemonStats::battles).sum()).isEqualTo(2 * (20 + 15));
+        assertThat(restarted.leaderboard(10)).isEqualTo(leaderboard);
+        restarted.close();
+    }
+
+    @Test
+    void restart_shouldRecoverOneResult_WhenManyThreadsFinishTheSameBattle() throws Exception {
+        DurableBattleServiceImpl service = open(DataSize.ofMegabytes(1));
+        Battle pending = service.createRandomBattle();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Battle>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> service.simulateBattle(pending.id())));
+            }
+            for (Future<Battle> result : results) {
+                assertThat(result.get()).isEqualTo(results.get(0).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        crash(service);
+
+        DurableBattleServiceImpl restarted = open(DataSize.ofMegabytes(1));
+
+        assertThat(restarted.searchBattles(null)).containsExactly(results.get(0).get());
+        restarted.close();
+    }
+
+    @Test
+    void restart_shouldRecoverHistoryPendingBattlesAndIdCounter_FromLogOnly() throws Exception {
+        DurableBattleServiceImpl service = open(DataSize.ofMegabytes(1));
+        Battle first = service.createRandomBattle();
+        Battle second = service.createRandomBattle();
+        Battle finished = service.simulateBattle(first.id());
+        crash(service);
+
+        DurableBattleServiceImpl restarted = open(DataSize.ofMegabytes(1));
+
+        assertThat(restarted.searchBattles(null)).containsExactly(finished);
+        assertThat(restarted.simulateBattle(first.id())).isEqualTo(finished);
+        assertThat(restarted.simulateBattle(second.id()).status()).isEqualTo(BattleStatus.FINISHED);
+        assertThat(restarted.createRandomBattle().id()).isEqualTo(2L);
+        restarted.close();
+    }
+
+    @Test
+    void restart_shouldRecoverFromSnapshotAndLogTail() throws Exception {
+        DurableBattleServiceImpl service = open(DataSize.ofKilobytes(4));
+        List<Battle> finished = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            finished.add(service.simulateBattle(service.createRandomBattle().id()));
+        }
+        service.snapshot();
+        Battle pending = service.createRandomBattle();
+        for (int i = 0; i < 10; i++) {
+            finished.add(service.simulateBattle(service.createRandomBattle().id()));
+        }
+        crash(service);
+
+        assertThat(walSegments()).isNotEmpty();
+
+        DurableBattleServiceImpl restarted = open(DataSize.ofKilobytes(4));
+
+        assertThat(restarted.searchBattles(null, null, null, 100).battles())
+                .containsExactlyElementsOf(reversed(finished));
+        assertThat(restarted.searchBattles("pika")).allMatch(battle ->
+                battle.first().name().contains("pika") || battle.second().name().contains("pika"));
+        assertThat(restarted.simulateBattle(pending.id()).status()).isEqualTo(BattleStatus.FINISHED);
+        restarted.close();
+    }
+
+    @Test
+    void close_shouldWriteFinalSnapshot_AndDropCoveredLogSegments() throws Exception {
+        DurableBattleServiceImpl service = open(DataSize.ofKilobytes(4));
+        Battle finished = service.simulateBattle(service.createRandomBattle().id());
+        service.close();
+
+        assertThat(directory.resolve("battles.snapshot")).exists();
+
+        DurableBattleServiceImpl restarted = open(DataSize.ofKilobytes(4));
+        assertThat(restarted.searchBattles(null)).containsExactly(finished);
+        restarted.close();
+    }
+
+    @Test
+    void restart_shouldIgnoreTornRecordAtTheEndOfTheLog() throws Exception {
+        DurableBattleServiceImpl service = open(DataSize.ofMegabytes(1));
+        Battle finished = service.simulateBattle(service.createRandomBattle().id());
+        crash(service);
+
+        Path segment = walSegments().get(walSegments().size() - 1);
+        int offset = findEndOfRecords(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 9, 9}), offset);
+        }
+
+        DurableBattleServiceImpl restarted = open(DataSize.ofMegabytes(1));
+        assertThat(restarted.searchBattles(null)).containsExactly(finished);
+        restarted.close();
+    }
+
+    @Test
+    void simulateBattle_shouldPersistConcurrentWriters() throws Exception {
+        DurableBattleServiceImpl service = open(DataSize.ofKilobytes(64));
+        int threads = 8;
+        int perThread = 25;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = Stream.generate(() -> executor.submit(() -> {
+                        for (int i = 0; i < perThread; i++) {
+                            service.simulateBattle(service.createRandomBattle().id());
+                        }
+                    }))
+                    .limit(threads)
+                    .collect(Collectors.toList());
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        crash(service);
+
+        DurableBattleServiceImpl restarted = open(DataSize.ofKilobytes(64));
+        assertThat(restarted.searchBattles(null, null, null, 1000).battles()).hasSize(threads * perThread);
+        restarted.close();
+    }
+
+    private DurableBattleServiceImpl open(DataSize segmentSize) {
+        return new DurableBattleServiceImpl(pokeApi,
+                new PendingBattleStore(Duration.ofMinutes(30), 1000, Clock.systemUTC()),
+                new SegmentedBattleHistory(), directory, segmentSize);
+    }
+
+    /**
+     * Simulates a process crash: the log of the service is closed behind its back, without the final snapshot
+     * of {@link DurableBattleServiceImpl#close()}, so the restart has to replay it, and the abandoned service
+     * cannot write anything after the restart. The records in the log survive as they would survive a killed
+     * process, since the mapped segments are written through the page cache.
+     */
+    private static void crash(DurableBattleServiceImpl service) throws Exception {
+        Field field = DurableBattleServiceImpl.class.getDeclaredField("writeAheadLog");
+        field.setAccessible(true);
+        ((BattleWriteAheadLog) field.get(service)).close();
+        assertThatThrownBy(service::createRandomBattle).isInstanceOf(IllegalStateException.class);
+    }
+
+    private List<Path> walSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("wal-"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static int findEndOfRecords(Path segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int length;
+        while ((length = buffer.getInt(buffer.position())) > 0) {
+            buffer.position(buffer.position() + 8 + length);
+        }
+        return buffer.position();
+    }
+
+    private static List<Battle> reversed(List<Battle> battles) {
+        List<Battle> copy = new ArrayList<>(battles);
+        Collections.reverse(copy);
+        return copy;
+    }
+}
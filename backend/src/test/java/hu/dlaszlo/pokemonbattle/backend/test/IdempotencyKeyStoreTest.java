@@ -0,0 +1,183 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import hu.dlaszlo.pokemonbattle.backend.controller.IdempotencyKeyReusedException;
+import hu.dlaszlo.pokemonbattle.backend.controller.IdempotencyKeyStore;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyKeyStoreTest {
+
+    private MutableClock clock;
+
+    private IdempotencyKeyStore store;
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        store = new IdempotencyKeyStore(Duration.ofMinutes(10), 3, 100, clock);
+    }
+
+    @Test
+    void execute_shouldRunTheActionOnce_AndReturnTheStoredResultOnRetry() {
+        assertThat(store.execute("k1", "random", calls::incrementAndGet, result -> 1)).isEqualTo(1);
+        assertThat(store.execute("k1", "random", calls::incrementAndGet, result -> 1)).isEqualTo(1);
+        assertThat(store.execute("k2", "random", calls::incrementAndGet, result -> 1)).isEqualTo(2);
+
+        assertThat(calls).hasValue(2);
+        assertThat(store.getHitCount()).isEqualTo(1);
+        assertThat(store.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    void execute_shouldLetConcurrentRetriesWaitForTheFirstResult() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<Integer> first = executor.submit(() -> store.execute("k1", "random", () -> {
+                running.countDown();
+                await(release);
+                return calls.incrementAndGet();
+            }, result -> 1));
+            running.await();
+            List<Future<Integer>> retries = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                retries.add(executor.submit(() -> store.execute("k1", "random", calls::incrementAndGet, result -> 1)));
+            }
+            release.countDown();
+
+            assertThat(first.get()).isEqualTo(1);
+            for (Future<Integer> retry : retries) {
+                assertThat(retry.get()).isEqualTo(1);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(calls).hasValue(1);
+        assertThat(store.getHitCount()).isEqualTo(7);
+    }
+
+    @Test
+    void execute_shouldReleaseTheKey_WhenTheActionFails() {
+        assertThatThrownBy(() -> store.execute("k1", "random", () -> {
+            throw new PokeApiException("PokeAPI is down");
+        }, result -> 1)).isInstanceOf(PokeApiException.class);
+
+        assertThat(store.execute("k1", "random", calls::incrementAndGet, result -> 1)).isEqualTo(1);
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_shouldKeepTheQueueBounded_WhenManyActionsFailBehindLiveAndRunningKeys() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> slow = executor.submit(() -> store.execute("slow", "random", () -> {
+                running.countDown();
+                await(release);
+                return calls.incrementAndGet();
+            }, result -> 1));
+            running.await();
+            store.execute("live", "random", calls::incrementAndGet, result -> 1);
+
+            for (int i = 0; i < 10_000; i++) {
+                int attempt = i;
+                assertThatThrownBy(() -> store.execute("failing-" + attempt, "random", () -> {
+                    throw new PokeApiException("PokeAPI is down");
+                }, result -> 1)).isInstanceOf(PokeApiException.class);
+                assertThat(store.queueSize()).isLessThanOrEqualTo(2 * store.size() + 17);
+            }
+            for (int i = 1; i <= 5; i++) {
+                store.execute("k" + i, "random", calls::incrementAndGet, result -> 1);
+            }
+
+            assertThat(store.size()).isEqualTo(3);
+            release.countDown();
+            assertThat(slow.get()).isEqualTo(7);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_shouldReject_WhenTheKeyIsReusedForAnotherRequestOrInvalid() {
+        store.execute("k1", "random", calls::incrementAndGet, result -> 1);
+
+        assertThatThrownBy(() -> store.execute("k1", "1/simulate", calls::incrementAndGet, result -> 1))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+        assertThatThrownBy(() -> store.execute(" ", "random", calls::incrementAndGet, result -> 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> store.execute("k".repeat(256), "random", calls::incrementAndGet, result -> 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void execute_shouldRunTheActionAgain_AfterTheTtl() {
+        store.execute("k1", "random", calls::incrementAndGet, result -> 1);
+
+        clock.advance(Duration.ofMinutes(10));
+
+        assertThat(store.execute("k1", "random", calls::incrementAndGet, result -> 1)).isEqualTo(2);
+        assertThat(store.getExpiredCount()).isEqualTo(1);
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_shouldEvictTheOldestKeys_WhenTheSizeOrWeightIsExceeded() {
+        for (int i = 1; i <= 5; i++) {
+            store.execute("k" + i, "random", calls::incrementAndGet, result -> 1);
+        }
+        assertThat(store.size()).isEqualTo(3);
+        assertThat(store.getEvictedCount()).isEqualTo(2);
+
+        store.execute("large", "tournament/random?size=64", calls::incrementAndGet, result -> 63);
+        store.execute("larger", "tournament/random?size=64", calls::incrementAndGet, result -> 63);
+
+        assertThat(store.getWeight()).isEqualTo(63);
+        assertThat(store.execute("larger", "tournament/random?size=64", calls::incrementAndGet, result -> 63))
+                .isEqualTo(7);
+        assertThat(store.execute("large", "tournament/random?size=64", calls::incrementAndGet, result -> 63))
+                .isEqualTo(8);
+    }
+
+    @Test
+    void bindTo_shouldRegisterMeters() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        store.bindTo(registry);
+        store.execute("k1", "random", calls::incrementAndGet, result -> 1);
+        store.execute("k1", "random", calls::incrementAndGet, result -> 1);
+
+        assertThat(registry.get("battles.idempotency.size").gauge().value()).isEqualTo(1.0);
+        assertThat(registry.get("battles.idempotency.hits").functionCounter().count()).isEqualTo(1.0);
+        assertThat(registry.get("battles.idempotency.misses").functionCounter().count()).isEqualTo(1.0);
+        assertThat(registry.get("battles.idempotency.evicted").functionCounter().count()).isZero();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
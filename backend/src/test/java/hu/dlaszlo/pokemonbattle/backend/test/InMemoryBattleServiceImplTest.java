@@ -5,9 +5,17 @@ import hu.dlaszlo.pokemonbattle.backend.pokeapi.dto.Pokemon;
 import hu.dlaszlo.pokemonbattle.backend.service.BattleNotFoundException;
 import hu.dlaszlo.pokemonbattle.backend.service.InMemoryBattleServiceImpl;
 import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleOdds;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattlePage;
 import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
 import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonStats;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Tournament;
 import hu.dlaszlo.pokemonbattle.backend.service.dto.WinnerSide;
+import hu.dlaszlo.pokemonbattle.backend.service.history.BattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.history.ColumnarBattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.history.SegmentedBattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.pending.PendingBattleStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,13 +23,37 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.lang.reflect.Field;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,11 +62,17 @@ class InMemoryBattleServiceImplTest {
     @Mock
     private PokeApi pokeApi;
 
+    private MutableClock clock;
+
+    private PendingBattleStore pendingBattles;
+
     private InMemoryBattleServiceImpl service;
 
     @BeforeEach
     void setUp() {
-        service = new InMemoryBattleServiceImpl(pokeApi);
+        clock = new MutableClock(Instant.now());
+        pendingBattles = new PendingBattleStore(Duration.ofMinutes(30), 1000, clock);
+        service = new InMemoryBattleServiceImpl(pokeApi, pendingBattles, new SegmentedBattleHistory());
     }
 
     @Test
@@ -46,6 +84,7 @@ class InMemoryBattleServiceImplTest {
                 .thenReturn(new Pokemon(25, "pikachu", "electric", "url1"));
         when(pokeApi.getPokemon("bulbasaur"))
                 .thenReturn(new Pokemon(1, "bulbasaur", "grass", "url2"));
+        when(pokeApi.getPokemons(anyCollection(), any(Duration.class))).thenCallRealMethod();
 
         Battle battle = service.createRandomBattle();
 
@@ -61,12 +100,30 @@ class InMemoryBattleServiceImplTest {
         assertThat(battle.first().power()).isBetween(1, 20);
         assertThat(battle.second().power()).isBetween(1, 20);
 
-        Map<Long, Battle> map = internalBattleMap();
-        assertThat(map).containsKey(battle.id());
-        assertThat(map.get(battle.id())).isEqualTo(battle);
+        assertThat(pendingBattles.get(battle.id())).isEqualTo(battle);
 
-        List<Battle> history = internalHistoryList();
-        assertThat(history).isEmpty(); // Még csak pending, nincs a historyban
+        BattleHistory history = internalHistory();
+        assertThat(history.size()).isZero(); // Még csak pending, nincs a historyban
+
+        verify(pokeApi).getPokemons(eq(List.of(battle.first().name(), battle.second().name())),
+                argThat(timeout -> timeout.compareTo(Duration.ZERO) > 0
+                        && timeout.compareTo(InMemoryBattleServiceImpl.DEFAULT_CREATE_TIMEOUT) <= 0));
+    }
+
+    @Test
+    void simulateBattle_shouldReturnTheBattleAsTheColumnarHistoryReadsItBack() {
+        service = new InMemoryBattleServiceImpl(pokeApi, pendingBattles, new ColumnarBattleHistory());
+        List<String> names = List.of("pikachu", "bulbasaur");
+        when(pokeApi.listPokemonNames()).thenReturn(names);
+        when(pokeApi.getPokemons(anyCollection(), any(Duration.class))).thenReturn(Map.of(
+                "pikachu", new Pokemon(25, "pikachu", "electric", "url1"),
+                "bulbasaur", new Pokemon(1, "bulbasaur", "grass", "url2")));
+
+        Battle created = service.createRandomBattle();
+        Battle finished = service.simulateBattle(created.id());
+
+        assertThat(finished.createdAt()).isEqualTo(created.createdAt());
+        assertThat(service.searchBattles(null)).containsExactly(finished);
     }
 
     @Test
@@ -78,6 +135,199 @@ class InMemoryBattleServiceImplTest {
                 .hasMessageContaining("Not enough Pokemon");
     }
 
+    @Test
+    void createRandomBattles_shouldFetchEachPokemonOnceAndStoreAllBattles() {
+        List<String> names = List.of("pikachu", "bulbasaur", "charmander");
+        when(pokeApi.listPokemonNames()).thenReturn(names);
+        when(pokeApi.getPokemons(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> requested = invocation.getArgument(0);
+            assertThat(requested).doesNotHaveDuplicates();
+            return requested.stream().collect(Collectors.toMap(Function.identity(),
+                    name -> new Pokemon(names.indexOf(name) + 1, name, "normal", "url-" + name)));
+        });
+
+        List<Battle> battles = service.createRandomBattles(50);
+
+        assertThat(battles).hasSize(50);
+        assertThat(battles.stream().map(Battle::id).distinct()).hasSize(50);
+        assertThat(battles).allMatch(battle -> battle.status() == BattleStatus.PENDING
+                && !battle.first().name().equals(battle.second().name()));
+        assertThat(battles).allMatch(battle -> pendingBattles.get(battle.id()) == battle);
+        verify(pokeApi).getPokemons(anyCollection());
+        verify(pokeApi, never()).getPokemon(anyString());
+    }
+
+    @Test
+    void createRandomBattles_shouldThrow_WhenCountIsOutOfRange() {
+        assertThatThrownBy(() -> service.createRandomBattles(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.createRandomBattles(10_001)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void createRandomBattles_shouldThrow_WhenTheBatchDoesNotFitIntoThePendingStore() {
+        assertThatThrownBy(() -> service.createRandomBattles(1001))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Count must be between 1 and 1000.");
+        assertThat(pendingBattles.size()).isZero();
+    }
+
+    @Test
+    void exportBattles_shouldStreamTheWholeHistoryOldestFirst_FilteredByNameAndTime() throws Exception {
+        BattleHistory history = internalHistory();
+        Instant start = Instant.parse("2025-01-01T00:00:00Z");
+        for (long i = 0; i < 100; i++) {
+            String name = i % 2 == 0 ? "pikachu" : "eevee";
+            Instant finishedAt = start.plusSeconds(i);
+            history.append(new Battle(i, BattleStatus.FINISHED, new PokemonEntity(name, "t", "u", 10),
+                    new PokemonEntity("bulbasaur", "grass", "u", 5), WinnerSide.FIRST, finishedAt, finishedAt));
+        }
+
+        assertThat(service.exportBattles(null, null, null).map(Battle::id))
+                .containsExactlyElementsOf(LongStream.range(0, 100).boxed().collect(Collectors.toList()));
+        assertThat(service.exportBattles(" PIKA ", start.plusSeconds(10), start.plusSeconds(20)).map(Battle::id))
+                .containsExactly(10L, 12L, 14L, 16L, 18L);
+        assertThatThrownBy(() -> service.exportBattles(null, start.plusSeconds(1), start))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void simulateBattle_shouldWaitForTheWinningCaller_UntilTheBattleIsRecorded() throws Exception {
+        CountDownLatch recording = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        service = new InMemoryBattleServiceImpl(pokeApi, pendingBattles, new SegmentedBattleHistory()) {
+            @Override
+            protected void recordFinished(Battle finished) {
+                recording.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        pendingBattles.put(new Battle(1L, BattleStatus.PENDING, new PokemonEntity("pikachu", "electric", "u1", 15),
+                new PokemonEntity("bulbasaur", "grass", "u2", 5), null, Instant.now(), null));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Battle> winner = executor.submit(() -> service.simulateBattle(1L));
+            assertThat(recording.await(5, TimeUnit.SECONDS)).isTrue();
+            AtomicReference<Thread> loserThread = new AtomicReference<>();
+            Future<Battle> loser = executor.submit(() -> {
+                loserThread.set(Thread.currentThread());
+                return service.simulateBattle(1L);
+            });
+
+            await().until(() -> loserThread.get() != null && loserThread.get().getState() == Thread.State.BLOCKED);
+            assertThat(loser).isNotDone();
+            release.countDown();
+
+            assertThat(loser.get(5, TimeUnit.SECONDS)).isEqualTo(winner.get(5, TimeUnit.SECONDS));
+            assertThat(internalHistory().findById(1L)).isEqualTo(winner.get());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void simulateBattle_shouldUpdateTheLeaderboard() {
+        pendingBattles.put(new Battle(1L, BattleStatus.PENDING, new PokemonEntity("pikachu", "electric", "u1", 15),
+                new PokemonEntity("bulbasaur", "grass", "u2", 5), null, Instant.now(), null));
+        pendingBattles.put(new Battle(2L, BattleStatus.PENDING, new PokemonEntity("eevee", "normal", "u3", 8),
+                new PokemonEntity("pikachu", "electric", "u1", 11), null, Instant.now(), null));
+
+        service.simulateBattle(1L);
+        service.simulateBattle(2L);
+        service.simulateBattle(2L);
+
+        assertThat(service.leaderboard(2)).containsExactly(
+                new PokemonStats("pikachu", 2, 2, 0, 0, 13.0),
+                new PokemonStats("bulbasaur", 1, 0, 1, 0, 5.0));
+        assertThat(service.pokemonStats("eevee")).isEqualTo(new PokemonStats("eevee", 1, 0, 1, 0, 8.0));
+        assertThatThrownBy(() -> service.leaderboard(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void runTournament_shouldPlayEveryRoundOfTheBracket() throws Exception {
+        List<String> names = IntStream.rangeClosed(1, 8).mapToObj(i -> "pokemon-" + i).collect(Collectors.toList());
+        when(pokeApi.getPokemons(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> requested = invocation.getArgument(0);
+            return requested.stream().collect(Collectors.toMap(Function.identity(),
+                    name -> new Pokemon(names.indexOf(name) + 1, name, "normal", "url-" + name)));
+        });
+
+        Tournament tournament = service.runTournament(names);
+
+        List<Battle> matches = tournament.matches();
+        assertThat(tournament.rounds()).isEqualTo(3);
+        assertThat(matches).hasSize(7);
+        assertThat(matches).allMatch(battle -> battle.status() == BattleStatus.FINISHED);
+        assertThat(matches.stream().map(Battle::id).distinct()).hasSize(7);
+        for (int i = 0; i < 4; i++) {
+            assertThat(matches.get(i).first().name()).isEqualTo(names.get(2 * i));
+            assertThat(matches.get(i).second().name()).isEqualTo(names.get(2 * i + 1));
+        }
+        // the winners of matches 2i and 2i + 1 of a round meet in match i of the next round
+        int[] roundStart = {0, 4, 6, 7};
+        for (int round = 0; round < 2; round++) {
+            for (int i = roundStart[round + 1]; i < roundStart[round + 2]; i++) {
+                int match = i - roundStart[round + 1];
+                assertThat(matches.get(i).first().name())
+                        .isIn(advancing(matches.get(roundStart[round] + 2 * match)));
+                assertThat(matches.get(i).second().name())
+                        .isIn(advancing(matches.get(roundStart[round] + 2 * match + 1)));
+            }
+        }
+        assertThat(tournament.champion()).isIn(matches.get(6).first(), matches.get(6).second());
+        assertThat(internalHistory().newestFirst().collect(Collectors.toSet())).isEqualTo(Set.copyOf(matches));
+    }
+
+    @Test
+    void runTournament_shouldNotAnnounceTheMatches_ToTheFinishedBattleListeners() {
+        List<String> names = IntStream.rangeClosed(1, 8).mapToObj(i -> "pokemon-" + i).collect(Collectors.toList());
+        when(pokeApi.getPokemons(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> requested = invocation.getArgument(0);
+            return requested.stream().collect(Collectors.toMap(Function.identity(),
+                    name -> new Pokemon(names.indexOf(name) + 1, name, "normal", "url-" + name)));
+        });
+        List<Battle> notified = Collections.synchronizedList(new ArrayList<>());
+        service.addFinishedBattleListener(notified::add);
+
+        Tournament tournament = service.runTournament(names);
+
+        assertThat(tournament.matches()).hasSize(7);
+        assertThat(notified).isEmpty();
+    }
+
+    @Test
+    void runRandomTournament_shouldFetchEachPokemonOnce() {
+        List<String> names = List.of("pikachu", "bulbasaur", "charmander");
+        when(pokeApi.listPokemonNames()).thenReturn(names);
+        when(pokeApi.getPokemons(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> requested = invocation.getArgument(0);
+            assertThat(requested).doesNotHaveDuplicates();
+            return requested.stream().collect(Collectors.toMap(Function.identity(),
+                    name -> new Pokemon(names.indexOf(name) + 1, name, "normal", "url-" + name)));
+        });
+
+        Tournament tournament = service.runRandomTournament(4096);
+
+        assertThat(tournament.rounds()).isEqualTo(12);
+        assertThat(tournament.matches()).hasSize(4095).doesNotContainNull();
+        assertThat(tournament.champion().name()).isIn(names);
+        verify(pokeApi).getPokemons(anyCollection());
+        verify(pokeApi, never()).getPokemon(anyString());
+    }
+
+    @Test
+    void runTournament_shouldThrow_WhenSizeIsNotAPowerOfTwo() {
+        assertThatThrownBy(() -> service.runRandomTournament(1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.runRandomTournament(6)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.runRandomTournament(131_072)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.runTournament(List.of("pikachu", "bulbasaur", "eevee")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
     @Test
     void simulateBattle_shouldFinishPendingBattle_SetWinner_AndAddToHistory() throws Exception {
         long battleId = 123L;
@@ -91,7 +341,7 @@ class InMemoryBattleServiceImplTest {
                 null
         );
 
-        internalBattleMap().put(battleId, pending);
+        pendingBattles.put(pending);
 
         Battle finished = service.simulateBattle(battleId);
 
@@ -99,9 +349,10 @@ class InMemoryBattleServiceImplTest {
         assertThat(finished.winnerSide()).isEqualTo(WinnerSide.FIRST); // 15 > 5
         assertThat(finished.finishedAt()).isNotNull();
 
-        List<Battle> history = internalHistoryList();
-        assertThat(history).hasSize(1);
+        BattleHistory history = internalHistory();
+        assertThat(history.size()).isEqualTo(1);
         assertThat(history.get(0)).isEqualTo(finished);
+        assertThat(pendingBattles.get(battleId)).isNull(); // Átkerült a historyba
     }
 
     @Test
@@ -118,15 +369,58 @@ class InMemoryBattleServiceImplTest {
                 Instant.now()
         );
 
-        internalBattleMap().put(battleId, finishedBattle);
-
-        internalHistoryList().add(finishedBattle);
-        int originalHistorySize = internalHistoryList().size();
+        internalHistory().append(finishedBattle);
+        long originalHistorySize = internalHistory().size();
 
         Battle result = service.simulateBattle(battleId);
 
         assertThat(result).isSameAs(finishedBattle);
-        assertThat(internalHistoryList()).hasSize(originalHistorySize);
+        assertThat(internalHistory().size()).isEqualTo(originalHistorySize);
+    }
+
+    @Test
+    void simulateBattle_shouldPublishOnce_WhenManyThreadsFinishTheSameBattle() throws Exception {
+        int threads = 16;
+        List<Battle> notified = Collections.synchronizedList(new ArrayList<>());
+        service.addFinishedBattleListener(notified::add);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (long battleId = 1; battleId <= 500; battleId++) {
+                pendingBattles.put(new Battle(
+                        battleId,
+                        BattleStatus.PENDING,
+                        new PokemonEntity("pikachu", "electric", "u1", 15),
+                        new PokemonEntity("bulbasaur", "grass", "u2", 5),
+                        null,
+                        clock.instant(),
+                        null
+                ));
+                CyclicBarrier start = new CyclicBarrier(threads);
+                long id = battleId;
+                List<Future<Battle>> results = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        return service.simulateBattle(id);
+                    }));
+                }
+
+                Battle first = results.get(0).get();
+                for (Future<Battle> result : results) {
+                    assertThat(result.get()).isSameAs(first);
+                }
+                assertThat(first.status()).isEqualTo(BattleStatus.FINISHED);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        BattleHistory history = internalHistory();
+        assertThat(history.size()).isEqualTo(500);
+        assertThat(LongStream.range(0, 500).map(position -> history.get(position).id()).distinct()).hasSize(500);
+        assertThat(notified).hasSize(500);
+        assertThat(service.pokemonStats("pikachu").battles()).isEqualTo(500);
+        assertThat(pendingBattles.size()).isZero();
     }
 
     @Test
@@ -142,21 +436,92 @@ class InMemoryBattleServiceImplTest {
                 .isInstanceOf(BattleNotFoundException.class);
     }
 
+    @Test
+    void simulateBattle_shouldThrow_WhenPendingBattleExpired() {
+        long battleId = 7L;
+        pendingBattles.put(new Battle(
+                battleId,
+                BattleStatus.PENDING,
+                new PokemonEntity("pikachu", "electric", "u1", 15),
+                new PokemonEntity("bulbasaur", "grass", "u2", 5),
+                null,
+                clock.instant(),
+                null
+        ));
+
+        clock.advance(Duration.ofMinutes(31));
+
+        assertThatThrownBy(() -> service.simulateBattle(battleId))
+                .isInstanceOf(BattleNotFoundException.class);
+        assertThat(pendingBattles.getExpiredCount()).isEqualTo(1);
+    }
+
+    @Test
+    void battleOdds_shouldFavorTheStrongerPokemon_WithoutFinishingTheBattle() {
+        Battle pending = new Battle(
+                5L,
+                BattleStatus.PENDING,
+                new PokemonEntity("pikachu", "electric", "u1", 15),
+                new PokemonEntity("eevee", "normal", "u2", 10),
+                null,
+                clock.instant(),
+                null
+        );
+        pendingBattles.put(pending);
+
+        BattleOdds odds = service.battleOdds(5L, 1_000_000);
+
+        assertThat(odds.battleId()).isEqualTo(5L);
+        assertThat(odds.rounds()).isEqualTo(1_000_000);
+        assertThat(odds.firstWinProbability()).isGreaterThan(0.8).isLessThan(1.0);
+        assertThat(odds.firstWinProbability() + odds.secondWinProbability() + odds.drawProbability())
+                .isCloseTo(1.0, within(1e-9));
+        assertThat(pendingBattles.get(5L)).isEqualTo(pending);
+    }
+
+    @Test
+    void battleOdds_shouldApplyTypeEffectiveness() {
+        pendingBattles.put(new Battle(
+                6L,
+                BattleStatus.PENDING,
+                new PokemonEntity("pikachu", "electric", "u1", 20),
+                new PokemonEntity("sandshrew", "ground", "u2", 1),
+                null,
+                clock.instant(),
+                null
+        ));
+
+        BattleOdds odds = service.battleOdds(6L, 10_000);
+
+        assertThat(odds.firstTypeMultiplier()).isZero();
+        assertThat(odds.secondTypeMultiplier()).isEqualTo(2.0);
+        assertThat(odds.secondWinProbability()).isEqualTo(1.0);
+    }
+
+    @Test
+    void battleOdds_shouldThrow_WhenRoundsAreOutOfRangeOrBattleIsUnknown() {
+        assertThatThrownBy(() -> service.battleOdds(1L, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.battleOdds(1L, 10_000_001))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.battleOdds(999L, 1000))
+                .isInstanceOf(BattleNotFoundException.class);
+    }
+
     @Test
     void searchBattles_shouldReturnAll_WhenQueryIsNull() throws Exception {
-        List<Battle> history = internalHistoryList();
-        history.addAll(sampleFinishedBattles());
+        List<Battle> battles = sampleFinishedBattles();
+        battles.forEach(internalHistory()::append);
 
         List<Battle> result = service.searchBattles(null);
 
         assertThat(result).hasSize(2); // A sampleBattles mérete
-        assertThat(result).containsExactlyElementsOf(history);
+        assertThat(result).containsExactly(battles.get(1), battles.get(0));
     }
 
     @Test
     void searchBattles_shouldFilterByName_CaseInsensitive() throws Exception {
-        List<Battle> history = internalHistoryList();
-        history.addAll(sampleFinishedBattles());
+        sampleFinishedBattles().forEach(internalHistory()::append);
 
         List<Battle> result = service.searchBattles("squir");
 
@@ -167,9 +532,9 @@ class InMemoryBattleServiceImplTest {
     @Test
     void searchBattles_shouldLimitToMaxReturnedBattles() throws Exception {
 
-        List<Battle> history = internalHistoryList();
+        BattleHistory history = internalHistory();
         for (long i = 0; i < 25; i++) {
-            history.add(new Battle(
+            history.append(new Battle(
                     i,
                     BattleStatus.FINISHED,
                     new PokemonEntity("p" + i, "t", "u", 1),
@@ -185,20 +550,64 @@ class InMemoryBattleServiceImplTest {
         assertThat(result).hasSize(20);
     }
 
-    @SuppressWarnings("unchecked")
-    private List<Battle> internalHistoryList() throws Exception {
-        Field field = InMemoryBattleServiceImpl.class.getDeclaredField("battles");
-        field.setAccessible(true);
-        return (List<Battle>) field.get(service);
+    @Test
+    void searchBattlesWithCursor_shouldPageBackwardsAndForwards() throws Exception {
+        BattleHistory history = internalHistory();
+        for (long i = 0; i < 10; i++) {
+            history.append(new Battle(
+                    i,
+                    BattleStatus.FINISHED,
+                    new PokemonEntity(i % 2 == 0 ? "pikachu" : "ditto", "t", "u", 1),
+                    new PokemonEntity("q" + i, "t", "u", 1),
+                    WinnerSide.FIRST,
+                    Instant.now(),
+                    Instant.now()
+            ));
+        }
+
+        BattlePage first = service.searchBattles("pika", null, null, 2);
+        assertThat(first.battles()).extracting(Battle::id).containsExactly(8L, 6L);
+        assertThat(first.nextCursor()).isEqualTo(6L);
+
+        BattlePage second = service.searchBattles("pika", first.nextCursor(), null, 2);
+        assertThat(second.battles()).extracting(Battle::id).containsExactly(4L, 2L);
+
+        BattlePage last = service.searchBattles("pika", second.nextCursor(), null, 2);
+        assertThat(last.battles()).extracting(Battle::id).containsExactly(0L);
+        assertThat(last.nextCursor()).isNull();
+
+        BattlePage newer = service.searchBattles(null, null, 3L, 3);
+        assertThat(newer.battles()).extracting(Battle::id).containsExactly(6L, 5L, 4L);
+        assertThat(newer.nextCursor()).isEqualTo(6L);
+
+        BattlePage newest = service.searchBattles(null, null, newer.nextCursor(), 3);
+        assertThat(newest.battles()).extracting(Battle::id).containsExactly(9L, 8L, 7L);
+        assertThat(newest.nextCursor()).isNull();
+    }
+
+    @Test
+    void searchBattlesWithCursor_shouldRejectInvalidArguments() {
+        assertThatThrownBy(() -> service.searchBattles(null, 1L, 2L, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.searchBattles(null, null, null, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.searchBattles(null, 42L, null, 10))
+                .isInstanceOf(BattleNotFoundException.class);
     }
 
-    @SuppressWarnings("unchecked")
-    private Map<Long, Battle> internalBattleMap() throws Exception {
-        Field field = InMemoryBattleServiceImpl.class.getDeclaredField("battleById");
+    private static Set<String> advancing(Battle match) {
+        return match.winnerSide() == WinnerSide.FIRST ? Set.of(match.first().name())
+                : match.winnerSide() == WinnerSide.SECOND ? Set.of(match.second().name())
+                : Set.of(match.first().name(), match.second().name());
+    }
+
+    private BattleHistory internalHistory() throws Exception {
+        Field field = InMemoryBattleServiceImpl.class.getDeclaredField("history");
         field.setAccessible(true);
-        return (Map<Long, Battle>) field.get(service);
+        return (BattleHistory) field.get(service);
     }
 
+
     private List<Battle> sampleFinishedBattles() {
         List<Battle> list = new ArrayList<>();
         list.add(new Battle(
@@ -221,4 +630,5 @@ class InMemoryBattleServiceImplTest {
         ));
         return list;
     }
+
 }
\ No newline at end of file
@@ -0,0 +1,182 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.WinnerSide;
+import hu.dlaszlo.pokemonbattle.backend.service.pending.PendingBattleStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PendingBattleStoreTest {
+
+    private MutableClock clock;
+
+    private PendingBattleStore store;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        store = new PendingBattleStore(Duration.ofMinutes(10), 3, clock);
+    }
+
+    @Test
+    void get_shouldReturnStoredBattle_BeforeTtl() {
+        Battle battle = pending(1);
+        store.put(battle);
+
+        clock.advance(Duration.ofMinutes(9));
+
+        assertThat(store.get(1)).isSameAs(battle);
+        assertThat(store.getExpiredCount()).isZero();
+    }
+
+    @Test
+    void get_shouldReturnNullAndCountExpiry_AfterTtl() {
+        store.put(pending(1));
+
+        clock.advance(Duration.ofMinutes(10));
+
+        assertThat(store.get(1)).isNull();
+        assertThat(store.size()).isZero();
+        assertThat(store.getExpiredCount()).isEqualTo(1);
+    }
+
+    @Test
+    void put_shouldExpireOldBattles_WithoutExplicitGet() {
+        store.put(pending(1));
+        store.put(pending(2));
+        clock.advance(Duration.ofMinutes(11));
+
+        store.put(pending(3));
+
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.getExpiredCount()).isEqualTo(2);
+    }
+
+    @Test
+    void put_shouldEvictOldestBattles_WhenFull() {
+        for (long id = 1; id <= 5; id++) {
+            store.put(pending(id));
+        }
+
+        assertThat(store.size()).isEqualTo(3);
+        assertThat(store.get(1)).isNull();
+        assertThat(store.get(2)).isNull();
+        assertThat(store.get(5)).isNotNull();
+        assertThat(store.getEvictedCount()).isEqualTo(2);
+        assertThat(store.getExpiredCount()).isZero();
+    }
+
+    @Test
+    void putAll_shouldEvictOnlyOlderBattles_WhenTheBatchFits() {
+        store.put(pending(1));
+        store.put(pending(2));
+
+        store.putAll(List.of(pending(3), pending(4), pending(5)));
+
+        assertThat(store.get(3)).isNotNull();
+        assertThat(store.get(4)).isNotNull();
+        assertThat(store.get(5)).isNotNull();
+        assertThat(store.getEvictedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void putAll_shouldRejectABatchLargerThanTheStore() {
+        store.put(pending(1));
+
+        assertThatThrownBy(() -> store.putAll(List.of(pending(2), pending(3), pending(4), pending(5))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(store.get(1)).isNotNull();
+        assertThat(store.getEvictedCount()).isZero();
+    }
+
+    @Test
+    void remove_shouldNotCountAsExpiredOrEvicted() {
+        Battle battle = pending(1);
+        store.put(battle);
+
+        assertThat(store.remove(battle)).isTrue();
+        clock.advance(Duration.ofMinutes(11));
+        store.put(pending(2));
+
+        assertThat(store.get(1)).isNull();
+        assertThat(store.getExpiredCount()).isZero();
+        assertThat(store.getEvictedCount()).isZero();
+    }
+
+    @Test
+    void put_shouldDropTheQueueEntriesOfRemovedBattles_BehindALiveHead() {
+        PendingBattleStore large = new PendingBattleStore(Duration.ofMinutes(10), 1000, clock);
+        large.put(pending(0));
+        for (long id = 1; id <= 500; id++) {
+            Battle battle = pending(id);
+            large.put(battle);
+            large.remove(battle);
+        }
+
+        large.put(pending(501));
+
+        assertThat(large.size()).isEqualTo(2);
+        assertThat(large.queueSize()).isLessThanOrEqualTo(2 * large.size() + 16);
+        assertThat(large.get(0)).isNotNull();
+        assertThat(large.get(501)).isNotNull();
+        assertThat(large.getExpiredCount()).isZero();
+    }
+
+    @Test
+    void replace_shouldSucceedOnce_AndKeepTheFinishedBattleFromExpiring() {
+        Battle battle = pending(1);
+        store.put(battle);
+        Battle finished = new Battle(1L, BattleStatus.FINISHED, battle.first(), battle.second(),
+                WinnerSide.SECOND, battle.createdAt(), clock.instant());
+
+        assertThat(store.replace(battle, finished)).isTrue();
+        assertThat(store.replace(battle, finished)).isFalse();
+        clock.advance(Duration.ofMinutes(11));
+
+        assertThat(store.get(1)).isSameAs(finished);
+        assertThat(store.battles()).isEmpty();
+        assertThat(store.remove(finished)).isTrue();
+        assertThat(store.getExpiredCount()).isZero();
+    }
+
+    @Test
+    void bindTo_shouldRegisterMeters() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        store.bindTo(registry);
+        store.put(pending(1));
+
+        assertThat(registry.get("battles.pending.size").gauge().value()).isEqualTo(1.0);
+        assertThat(registry.get("battles.pending.expired").functionCounter().count()).isZero();
+        assertThat(registry.get("battles.pending.evicted").functionCounter().count()).isZero();
+    }
+
+    @Test
+    void constructor_shouldRejectInvalidSettings() {
+        assertThatThrownBy(() -> new PendingBattleStore(Duration.ZERO, 10, clock))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new PendingBattleStore(Duration.ofMinutes(1), 0, clock))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Battle pending(long id) {
+        return new Battle(
+                id,
+                BattleStatus.PENDING,
+                new PokemonEntity("p" + id, "t", "u", 1),
+                new PokemonEntity("q" + id, "t", "u", 2),
+                null,
+                clock.instant(),
+                null
+        );
+    }
+}
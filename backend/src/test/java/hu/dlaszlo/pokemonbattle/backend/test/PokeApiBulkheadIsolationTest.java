@@ -0,0 +1,112 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import hu.dlaszlo.pokemonbattle.backend.controller.PokeApiBulkhead;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApi;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.dto.Pokemon;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Stalls PokeAPI with more synchronous battle creations than the bulkhead admits, and checks that the
+ * excess is rejected at once and that searches, served by the same small Tomcat thread pool, keep working.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.threads.max=8",
+        "pokeapi.bulkhead.concurrency=2",
+        "pokeapi.bulkhead.queue_size=2",
+        "pokeapi.bulkhead.queue_timeout=30s"
+})
+class PokeApiBulkheadIsolationTest {
+
+    private static final int REQUEST_COUNT = 10;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private PokeApiBulkhead pokeApiBulkhead;
+
+    @MockitoBean
+    private PokeApi pokeApi;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @Test
+    void searches_shouldKeepWorking_WhilePokeApiIsStalled() throws Exception {
+        CountDownLatch stall = new CountDownLatch(1);
+        when(pokeApi.listPokemonNames()).thenAnswer(invocation -> {
+            stall.await();
+            return List.of("pikachu", "bulbasaur", "charmander");
+        });
+        when(pokeApi.getPokemon(anyString())).thenAnswer(invocation -> {
+            String name = invocation.getArgument(0);
+            return new Pokemon(name.length(), name, "normal", "url-" + name);
+        });
+        when(pokeApi.getPokemons(anyCollection(), any(Duration.class))).thenCallRealMethod();
+
+        List<CompletableFuture<HttpResponse<String>>> creations = new ArrayList<>();
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            creations.add(httpClient.sendAsync(post("/api/battles/random"), HttpResponse.BodyHandlers.ofString()));
+        }
+        await().until(() -> pokeApiBulkhead.getRejectedCount() == REQUEST_COUNT - 4);
+        assertThat(pokeApiBulkhead.getActiveCount()).isEqualTo(2);
+        assertThat(pokeApiBulkhead.getQueuedCount()).isEqualTo(2);
+
+        for (int i = 0; i < 20; i++) {
+            long startTime = System.nanoTime();
+            assertThat(send(get("/api/battles")).statusCode()).isEqualTo(200);
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)).isLessThan(1000);
+        }
+        stall.countDown();
+
+        int created = 0;
+        int rejected = 0;
+        for (CompletableFuture<HttpResponse<String>> creation : creations) {
+            HttpResponse<String> response = creation.get(10, TimeUnit.SECONDS);
+            if (response.statusCode() == 200) {
+                created++;
+            } else {
+                assertThat(response.statusCode()).isEqualTo(503);
+                assertThat(response.headers().firstValue("Retry-After")).contains("1");
+                rejected++;
+            }
+        }
+        assertThat(created).isEqualTo(4);
+        assertThat(rejected).isEqualTo(REQUEST_COUNT - 4);
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws Exception {
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET().build();
+    }
+
+    private HttpRequest post(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import hu.dlaszlo.pokemonbattle.backend.controller.PokeApiBulkhead;
+import hu.dlaszlo.pokemonbattle.backend.controller.PokeApiBulkheadFullException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class PokeApiBulkheadTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void execute_shouldRejectAtOnce_WhenEverySlotAndTheQueueAreTaken() throws Exception {
+        PokeApiBulkhead bulkhead = new PokeApiBulkhead(2, 1, Duration.ofSeconds(30), Duration.ofSeconds(5));
+        Future<String> first = executor.submit(() -> bulkhead.execute(this::blocked));
+        Future<String> second = executor.submit(() -> bulkhead.execute(this::blocked));
+        await().until(() -> bulkhead.getActiveCount() == 2);
+        Future<String> queued = executor.submit(() -> bulkhead.execute(() -> "queued"));
+        await().until(() -> bulkhead.getQueuedCount() == 1);
+
+        long startTime = System.nanoTime();
+        assertThatThrownBy(() -> bulkhead.execute(() -> "rejected"))
+                .isInstanceOf(PokeApiBulkheadFullException.class)
+                .extracting(e -> ((PokeApiBulkheadFullException) e).getRetryAfter())
+                .isEqualTo(Duration.ofSeconds(5));
+        assertThat(Duration.ofNanos(System.nanoTime() - startTime)).isLessThan(Duration.ofSeconds(1));
+
+        release.countDown();
+        assertThat(first.get()).isEqualTo("done");
+        assertThat(second.get()).isEqualTo("done");
+        assertThat(queued.get()).isEqualTo("queued");
+        assertThat(bulkhead.getActiveCount()).isZero();
+        assertThat(bulkhead.getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_shouldReject_WhenNoSlotIsFreedWithinTheQueueTimeout() {
+        PokeApiBulkhead bulkhead = new PokeApiBulkhead(1, 1, Duration.ofMillis(50), Duration.ofSeconds(1));
+        executor.submit(() -> bulkhead.execute(this::blocked));
+        await().until(() -> bulkhead.getActiveCount() == 1);
+
+        assertThatThrownBy(() -> bulkhead.execute(() -> "timed out"))
+                .isInstanceOf(PokeApiBulkheadFullException.class);
+        assertThat(bulkhead.getQueuedCount()).isZero();
+    }
+
+    @Test
+    void execute_shouldReleaseTheSlot_WhenTheActionFails() {
+        PokeApiBulkhead bulkhead = new PokeApiBulkhead(1, 0, Duration.ZERO, Duration.ofSeconds(1));
+
+        assertThatThrownBy(() -> bulkhead.execute(() -> {
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(bulkhead.execute(() -> "ok")).isEqualTo("ok");
+    }
+
+    @Test
+    void bindTo_shouldRegisterMeters() {
+        PokeApiBulkhead bulkhead = new PokeApiBulkhead(3, 5, Duration.ofSeconds(1), Duration.ofSeconds(1));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        bulkhead.bindTo(registry);
+
+        assertThat(registry.get("pokeapi.bulkhead.concurrency").gauge().value()).isEqualTo(3.0);
+        assertThat(registry.get("pokeapi.bulkhead.queue_size").gauge().value()).isEqualTo(5.0);
+        assertThat(registry.get("pokeapi.bulkhead.active").gauge().value()).isZero();
+        assertThat(registry.get("pokeapi.bulkhead.rejected").functionCounter().count()).isZero();
+    }
+
+    private String blocked() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+}
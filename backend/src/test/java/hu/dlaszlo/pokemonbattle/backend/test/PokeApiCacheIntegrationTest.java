@@ -0,0 +1,201 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import hu.dlaszlo.pokemonbattle.backend.BackendConfig;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApi;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApiException;
+import hu.dlaszlo.pokemonbattle.backend.restclient.PokeApiCacheManager;
+import hu.dlaszlo.pokemonbattle.backend.restclient.PokeApiRestClient;
+import hu.dlaszlo.pokemonbattle.backend.restclient.dto.PokeApiDetail;
+import hu.dlaszlo.pokemonbattle.backend.restclient.dto.PokeApiSprite;
+import hu.dlaszlo.pokemonbattle.backend.restclient.dto.PokeApiType;
+import hu.dlaszlo.pokemonbattle.backend.restclient.dto.PokeApiTypeSlot;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClient;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the {@code @Cacheable} methods of the PokeAPI client against the configured cache manager,
+ * that a failing name does not evict the others, that concurrent misses share one upstream call,
+ * and that the cache statistics are published as metrics.
+ */
+@SpringBootTest(properties = "pokeapi.baseurl=http://localhost")
+class PokeApiCacheIntegrationTest {
+
+    private static final int CALLER_COUNT = 8;
+
+    @Autowired
+    private PokeApiRestClient pokeApiRestClient;
+
+    @Autowired
+    private PokeApi pokeApi;
+
+    @Autowired
+    private PokeApiCacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockitoBean(answers = Answers.RETURNS_DEEP_STUBS)
+    private RestClient restClient;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLER_COUNT);
+
+    @BeforeEach
+    void setUp() {
+        pokeApiRestClient.clearAllCaches();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void getPokemon_shouldKeepTheOtherCachedPokemon_WhenOneNameFails() {
+        stubDetail("pikachu");
+        stubDetail("bulbasaur");
+        when(restClient.get()
+                .uri(eq("http://localhost/pokemon/{name}"), eq("missingno"))
+                .retrieve()
+                .body(PokeApiDetail.class))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found",
+                        new HttpHeaders(), new byte[0], StandardCharsets.UTF_8));
+        pokeApi.getPokemon("pikachu");
+        pokeApi.getPokemon("bulbasaur");
+
+        assertThatThrownBy(() -> pokeApi.getPokemon("missingno"))
+                .isInstanceOf(PokeApiException.class)
+                .extracting("httpStatusCode")
+                .isEqualTo(404);
+
+        assertThat(pokeApi.getPokemon("pikachu").name()).isEqualTo("pikachu");
+        assertThat(pokeApi.getPokemon("bulbasaur").name()).isEqualTo("bulbasaur");
+        verify(restClient.get(), times(1)).uri(eq("http://localhost/pokemon/{name}"), eq("pikachu"));
+        verify(restClient.get(), times(1)).uri(eq("http://localhost/pokemon/{name}"), eq("bulbasaur"));
+    }
+
+    @Test
+    void getPokeApiDetail_shouldMakeOneUpstreamCall_ForConcurrentMisses() throws Exception {
+        PokeApiDetail pikachu = detail("pikachu");
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        when(restClient.get()
+                .uri(eq("http://localhost/pokemon/{name}"), eq("pikachu"))
+                .retrieve()
+                .body(PokeApiDetail.class))
+                .thenAnswer(invocation -> {
+                    upstreamCalls.incrementAndGet();
+                    release.await();
+                    return pikachu;
+                });
+        long coalesced = cacheManager.getCoalescedCount(BackendConfig.CACHE_POKEMON_DETAIL);
+
+        List<Future<PokeApiDetail>> results = new ArrayList<>();
+        for (int i = 0; i < CALLER_COUNT; i++) {
+            results.add(executor.submit(() -> pokeApiRestClient.getPokeApiDetail("pikachu")));
+        }
+        await().until(() -> cacheManager.getCoalescedCount(BackendConfig.CACHE_POKEMON_DETAIL)
+                == coalesced + CALLER_COUNT - 1);
+        release.countDown();
+
+        for (Future<PokeApiDetail> result : results) {
+            assertThat(result.get()).isEqualTo(pikachu);
+        }
+        assertThat(upstreamCalls).hasValue(1);
+    }
+
+    @Test
+    void getPokeApiDetail_shouldShareTheFailureOfTheUpstreamCall_WithConcurrentMisses() throws Exception {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        when(restClient.get()
+                .uri(eq("http://localhost/pokemon/{name}"), eq("missingno"))
+                .retrieve()
+                .body(PokeApiDetail.class))
+                .thenAnswer(invocation -> {
+                    upstreamCalls.incrementAndGet();
+                    release.await();
+                    throw HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found",
+                            new HttpHeaders(), new byte[0], StandardCharsets.UTF_8);
+                });
+        long coalesced = cacheManager.getCoalescedCount(BackendConfig.CACHE_POKEMON_DETAIL);
+
+        List<Future<PokeApiDetail>> results = new ArrayList<>();
+        for (int i = 0; i < CALLER_COUNT; i++) {
+            results.add(executor.submit(() -> pokeApiRestClient.getPokeApiDetail("missingno")));
+        }
+        await().until(() -> cacheManager.getCoalescedCount(BackendConfig.CACHE_POKEMON_DETAIL)
+                == coalesced + CALLER_COUNT - 1);
+        release.countDown();
+
+        for (Future<PokeApiDetail> result : results) {
+            assertThatThrownBy(result::get)
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(HttpClientErrorException.NotFound.class);
+        }
+        assertThat(upstreamCalls).hasValue(1);
+    }
+
+    @Test
+    void getPokeApiDetail_shouldFetchOnce_AndPublishCacheMetrics() {
+        PokeApiDetail pikachu = stubDetail("pikachu");
+        double hits = cacheGets("hit");
+        double misses = cacheGets("miss");
+
+        assertThat(pokeApiRestClient.getPokeApiDetail("pikachu")).isEqualTo(pikachu);
+        assertThat(pokeApiRestClient.getPokeApiDetail("pikachu")).isEqualTo(pikachu);
+
+        verify(restClient.get(), times(1)).uri(eq("http://localhost/pokemon/{name}"), eq("pikachu"));
+        assertThat(cacheGets("hit")).isEqualTo(hits + 1);
+        assertThat(cacheGets("miss")).isEqualTo(misses + 1);
+        assertThat(meterRegistry.find("cache.evictions").tags("cache", "pokemonDetail").functionCounter())
+                .isNotNull();
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets").tags("cache", "pokemonDetail", "result", result)
+                .functionCounter().count();
+    }
+
+    private PokeApiDetail stubDetail(String name) {
+        PokeApiDetail detail = detail(name);
+        when(restClient.get()
+                .uri(eq("http://localhost/pokemon/{name}"), eq(name))
+                .retrieve()
+                .body(PokeApiDetail.class))
+                .thenReturn(detail);
+        return detail;
+    }
+
+    private static PokeApiDetail detail(String name) {
+        return new PokeApiDetail(name.length(), name,
+                List.of(new PokeApiTypeSlot(new PokeApiType("electric"))), new PokeApiSprite("url-" + name));
+    }
+}
@@ -0,0 +1,233 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import hu.dlaszlo.pokemonbattle.backend.BackendConfig;
+import hu.dlaszlo.pokemonbattle.backend.restclient.PokeApiCacheManager;
+import hu.dlaszlo.pokemonbattle.backend.restclient.PokeApiRestClient;
+import hu.dlaszlo.pokemonbattle.backend.restclient.dto.PokeApiDetail;
+import hu.dlaszlo.pokemonbattle.backend.restclient.dto.PokeApiSprite;
+import hu.dlaszlo.pokemonbattle.backend.restclient.dto.PokeApiType;
+import hu.dlaszlo.pokemonbattle.backend.restclient.dto.PokeApiTypeSlot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PokeApiCacheManagerTest {
+
+    private static final PokeApiCacheManager.Settings NAMES =
+            new PokeApiCacheManager.Settings(1, Duration.ofHours(24), Duration.ofHours(12), Duration.ZERO);
+
+    private static final PokeApiCacheManager.Settings STALE =
+            new PokeApiCacheManager.Settings(10, Duration.ofMinutes(10), Duration.ZERO, Duration.ofHours(1));
+
+    @Mock
+    private ObjectProvider<PokeApiRestClient> pokeApiRestClientProvider;
+
+    @Mock
+    private PokeApiRestClient pokeApiRestClient;
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private PokeApiCacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(pokeApiRestClientProvider.getObject()).thenReturn(pokeApiRestClient);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (cacheManager != null) {
+            cacheManager.destroy();
+        }
+    }
+
+    @Test
+    void getCache_shouldOnlyKnowThePokeApiCaches() {
+        cacheManager = newCacheManager(new PokeApiCacheManager.Settings(10, Duration.ofMinutes(10), Duration.ZERO, Duration.ZERO));
+
+        assertThat(cacheManager.getCacheNames())
+                .containsExactlyInAnyOrder(BackendConfig.CACHE_POKEMON_NAMES, BackendConfig.CACHE_POKEMON_DETAIL);
+        assertThat(cacheManager.getCache("other")).isNull();
+    }
+
+    @Test
+    void get_shouldNotLoadOnMiss_AndRecordHitsAndMisses() {
+        cacheManager = newCacheManager(new PokeApiCacheManager.Settings(10, Duration.ofMinutes(10), Duration.ofMinutes(5), Duration.ZERO));
+        Cache cache = detailCache();
+
+        assertThat(cache.get("pikachu")).isNull();
+        cache.put("pikachu", detail("pikachu"));
+        assertThat(cache.get("pikachu", PokeApiDetail.class)).isEqualTo(detail("pikachu"));
+
+        verify(pokeApiRestClient, never()).loadPokeApiDetail(anyString());
+        CacheStats stats = stats(cache);
+        assertThat(stats.hitCount()).isEqualTo(1);
+        assertThat(stats.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void get_shouldMissAfterTtl() {
+        cacheManager = newCacheManager(new PokeApiCacheManager.Settings(10, Duration.ofMinutes(10), Duration.ZERO, Duration.ZERO));
+        Cache cache = detailCache();
+        cache.put("pikachu", detail("pikachu"));
+
+        nanos.addAndGet(Duration.ofMinutes(10).toNanos());
+
+        assertThat(cache.get("pikachu")).isNull();
+    }
+
+    @Test
+    void get_shouldReturnCachedEntryAndRefreshItInTheBackground_AfterRefreshInterval() {
+        cacheManager = newCacheManager(new PokeApiCacheManager.Settings(10, Duration.ofMinutes(10), Duration.ofMinutes(5), Duration.ZERO));
+        Cache cache = detailCache();
+        cache.put("pikachu", detail("pikachu"));
+        PokeApiDetail refreshed = new PokeApiDetail(25, "pikachu",
+                List.of(new PokeApiTypeSlot(new PokeApiType("electric"))), new PokeApiSprite("refreshed"));
+        CountDownLatch release = new CountDownLatch(1);
+        when(pokeApiRestClient.loadPokeApiDetail("pikachu")).thenAnswer(invocation -> {
+            release.await();
+            return refreshed;
+        });
+
+        nanos.addAndGet(Duration.ofMinutes(6).toNanos());
+
+        assertThat(cache.get("pikachu", PokeApiDetail.class)).isEqualTo(detail("pikachu"));
+        release.countDown();
+        await().until(() -> refreshed.equals(cache.get("pikachu", PokeApiDetail.class)));
+        assertThat(stats(cache).loadSuccessCount()).isEqualTo(1);
+    }
+
+    @Test
+    void get_shouldKeepCachedEntry_WhenRefreshFails() {
+        cacheManager = newCacheManager(new PokeApiCacheManager.Settings(10, Duration.ofMinutes(10), Duration.ofMinutes(5), Duration.ZERO));
+        Cache cache = detailCache();
+        cache.put("pikachu", detail("pikachu"));
+        when(pokeApiRestClient.loadPokeApiDetail("pikachu")).thenThrow(new ResourceAccessException("timeout"));
+
+        nanos.addAndGet(Duration.ofMinutes(6).toNanos());
+        cache.get("pikachu");
+
+        await().until(() -> stats(cache).loadFailureCount() == 1);
+        assertThat(cache.get("pikachu", PokeApiDetail.class)).isEqualTo(detail("pikachu"));
+    }
+
+    @Test
+    void get_shouldFetchExpiredEntryAgain_WithinMaxStale() {
+        cacheManager = newCacheManager(STALE);
+        Cache cache = detailCache();
+        cache.put("pikachu", detail("pikachu"));
+        PokeApiDetail fetched = new PokeApiDetail(25, "pikachu",
+                List.of(new PokeApiTypeSlot(new PokeApiType("electric"))), new PokeApiSprite("fetched"));
+        when(pokeApiRestClient.loadPokeApiDetail("pikachu")).thenReturn(fetched);
+
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+
+        assertThat(cache.get("pikachu", PokeApiDetail.class)).isEqualTo(fetched);
+        assertThat(cacheManager.getStaleCount(BackendConfig.CACHE_POKEMON_DETAIL)).isZero();
+    }
+
+    @Test
+    void get_shouldServeExpiredEntry_WhenFetchingItAgainFails() {
+        cacheManager = newCacheManager(STALE);
+        Cache cache = detailCache();
+        cache.put("pikachu", detail("pikachu"));
+        when(pokeApiRestClient.loadPokeApiDetail("pikachu")).thenThrow(new ResourceAccessException("timeout"));
+
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+
+        assertThat(cache.get("pikachu", PokeApiDetail.class)).isEqualTo(detail("pikachu"));
+        assertThat(cacheManager.getStaleCount(BackendConfig.CACHE_POKEMON_DETAIL)).isEqualTo(1);
+    }
+
+    @Test
+    void get_shouldNotFetchAnExpiredEntryOnEveryRead_WhileFetchingItAgainFails() {
+        cacheManager = newCacheManager(STALE);
+        Cache cache = detailCache();
+        cache.put("pikachu", detail("pikachu"));
+        when(pokeApiRestClient.loadPokeApiDetail("pikachu")).thenThrow(new ResourceAccessException("timeout"));
+
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+        for (int i = 0; i < 5; i++) {
+            assertThat(cache.get("pikachu", PokeApiDetail.class)).isEqualTo(detail("pikachu"));
+        }
+        verify(pokeApiRestClient, times(1)).loadPokeApiDetail("pikachu");
+
+        nanos.addAndGet(Duration.ofMinutes(10).toNanos());
+        assertThat(cache.get("pikachu", PokeApiDetail.class)).isEqualTo(detail("pikachu"));
+        verify(pokeApiRestClient, times(2)).loadPokeApiDetail("pikachu");
+        assertThat(cacheManager.getStaleCount(BackendConfig.CACHE_POKEMON_DETAIL)).isEqualTo(6);
+    }
+
+    @Test
+    void get_shouldMiss_AfterMaxStale() {
+        cacheManager = newCacheManager(STALE);
+        Cache cache = detailCache();
+        cache.put("pikachu", detail("pikachu"));
+
+        nanos.addAndGet(Duration.ofMinutes(70).toNanos());
+
+        assertThat(cache.get("pikachu")).isNull();
+        verify(pokeApiRestClient, never()).loadPokeApiDetail(anyString());
+    }
+
+    @Test
+    void put_shouldEvictEntries_AboveMaxSize() {
+        cacheManager = newCacheManager(new PokeApiCacheManager.Settings(10, Duration.ofMinutes(10), Duration.ZERO, Duration.ZERO));
+        CaffeineCache cache = (CaffeineCache) detailCache();
+
+        for (int i = 0; i < 100; i++) {
+            cache.put("pokemon-" + i, detail("pokemon-" + i));
+        }
+        cache.getNativeCache().cleanUp();
+
+        assertThat(cache.getNativeCache().estimatedSize()).isLessThanOrEqualTo(10);
+        assertThat(stats(cache).evictionCount()).isEqualTo(100 - cache.getNativeCache().estimatedSize());
+    }
+
+    @Test
+    void settings_shouldRejectRefreshIntervalNotShorterThanTtl() {
+        assertThatThrownBy(() -> new PokeApiCacheManager.Settings(10, Duration.ofMinutes(10), Duration.ofMinutes(10), Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private PokeApiCacheManager newCacheManager(PokeApiCacheManager.Settings detail) {
+        return new PokeApiCacheManager(pokeApiRestClientProvider, NAMES, detail, 2, nanos::get);
+    }
+
+    private Cache detailCache() {
+        return cacheManager.getCache(BackendConfig.CACHE_POKEMON_DETAIL);
+    }
+
+    private static CacheStats stats(Cache cache) {
+        return ((CaffeineCache) cache).getNativeCache().stats();
+    }
+
+    private static PokeApiDetail detail(String name) {
+        return new PokeApiDetail(name.length(), name,
+                List.of(new PokeApiTypeSlot(new PokeApiType("normal"))), new PokeApiSprite("url-" + name));
+    }
+}
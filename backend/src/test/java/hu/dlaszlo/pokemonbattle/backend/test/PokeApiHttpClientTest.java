@@ -0,0 +1,99 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import com.sun.net.httpserver.HttpServer;
+import hu.dlaszlo.pokemonbattle.backend.restclient.PokeApiHttpClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PokeApiHttpClientTest {
+
+    private static final byte[] BODY = "{\"name\":\"pikachu\"}".getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer server;
+
+    private PokeApiHttpClient httpClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/pokemon/pikachu", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, BODY.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(BODY);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (httpClient != null) {
+            httpClient.destroy();
+        }
+        server.stop(0);
+    }
+
+    @ParameterizedTest
+    @EnumSource(PokeApiHttpClient.Type.class)
+    void requestFactory_shouldCallTheServer(PokeApiHttpClient.Type type) {
+        httpClient = newHttpClient(type);
+
+        assertThat(get()).isEqualTo("{\"name\":\"pikachu\"}");
+        assertThat(get()).isEqualTo("{\"name\":\"pikachu\"}");
+    }
+
+    @Test
+    void pooled_shouldReuseTheConnection_AndPublishPoolMetrics() {
+        httpClient = newHttpClient(PokeApiHttpClient.Type.POOLED);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        httpClient.bindTo(registry);
+
+        for (int i = 0; i < 5; i++) {
+            get();
+        }
+
+        assertThat(registry.get("httpcomponents.httpclient.pool.total.connections")
+                .tags("httpclient", "pokeapi", "state", "available").gauge().value()).isEqualTo(1.0);
+        assertThat(registry.get("httpcomponents.httpclient.pool.total.connections")
+                .tags("httpclient", "pokeapi", "state", "leased").gauge().value()).isZero();
+        assertThat(registry.get("httpcomponents.httpclient.pool.total.max").gauge().value()).isEqualTo(4.0);
+    }
+
+    @Test
+    void constructor_shouldRejectMorePerRouteThanTotalConnections() {
+        assertThatThrownBy(() -> new PokeApiHttpClient(PokeApiHttpClient.Type.POOLED, Duration.ofSeconds(1),
+                Duration.ofSeconds(1), false, 2, 3, Duration.ofSeconds(30)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private PokeApiHttpClient newHttpClient(PokeApiHttpClient.Type type) {
+        return new PokeApiHttpClient(type, Duration.ofSeconds(1), Duration.ofSeconds(1), true,
+                4, 2, Duration.ofSeconds(30));
+    }
+
+    private String get() {
+        return RestClient.builder()
+                .requestFactory(httpClient.getRequestFactory())
+                .build()
+                .get()
+                .uri("http://localhost:" + server.getAddress().getPort() + "/pokemon/pikachu")
+                .retrieve()
+                .body(String.class);
+    }
+}
@@ -2,19 +2,34 @@ package hu.dlaszlo.pokemonbattle.backend.test;
 
 import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApiException;
 import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApiImpl;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokemonCatalog;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokemonSnapshot;
 import hu.dlaszlo.pokemonbattle.backend.pokeapi.dto.Pokemon;
 import hu.dlaszlo.pokemonbattle.backend.restclient.PokeApiRestClient;
+import hu.dlaszlo.pokemonbattle.backend.service.InMemoryBattleServiceImpl;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.history.SegmentedBattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.pending.PendingBattleStore;
 import hu.dlaszlo.pokemonbattle.backend.restclient.dto.*;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpHeaders;
 import org.springframework.web.client.RestClientResponseException;
 
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -30,7 +45,12 @@ class PokeApiImplTest {
 
     @BeforeEach
     void setUp() {
-        pokeApi = new PokeApiImpl("http://fallback_sprite", restClient);
+        pokeApi = new PokeApiImpl("http://fallback_sprite", 4, restClient, new PokemonCatalog());
+    }
+
+    @AfterEach
+    void tearDown() {
+        pokeApi.destroy();
     }
 
     @Test
@@ -71,7 +91,7 @@ class PokeApiImplTest {
     }
 
     @Test
-    void listPokemonNames_shouldWrapRestClientResponseExceptionAndClearCache() {
+    void listPokemonNames_shouldWrapRestClientResponseExceptionAndEvictTheEntry() {
         RestClientResponseException ex = new RestClientResponseException(
                 "error",
                 500,
@@ -88,11 +108,12 @@ class PokeApiImplTest {
                 .hasCause(ex);
 
         verify(restClient).getPokeApiNameList();
-        verify(restClient).clearAllCaches();
+        verify(restClient).evictPokeApiNameList();
+        verify(restClient, never()).clearAllCaches();
     }
 
     @Test
-    void listPokemonNames_shouldWrapOtherExceptionsAndClearCache() {
+    void listPokemonNames_shouldWrapOtherExceptionsAndEvictTheEntry() {
         RuntimeException ex = new RuntimeException();
         when(restClient.getPokeApiNameList()).thenThrow(ex);
 
@@ -102,7 +123,8 @@ class PokeApiImplTest {
                 .hasCause(ex);
 
         verify(restClient).getPokeApiNameList();
-        verify(restClient).clearAllCaches();
+        verify(restClient).evictPokeApiNameList();
+        verify(restClient, never()).clearAllCaches();
     }
 
     @Test
@@ -132,6 +154,171 @@ class PokeApiImplTest {
         verify(restClient, never()).clearAllCaches();
     }
 
+    @Test
+    void getPokemon_shouldReturnTheCatalogInstance_whenTheSamePokemonIsMappedAgain() {
+        when(restClient.getPokeApiDetail("charizard")).thenAnswer(invocation -> new PokeApiDetail(
+                6,
+                "charizard",
+                List.of(new PokeApiTypeSlot(new PokeApiType("fire")), new PokeApiTypeSlot(new PokeApiType("flying"))),
+                new PokeApiSprite("https://img/charizard.png")
+        ));
+
+        Pokemon first = pokeApi.getPokemon("charizard");
+        Pokemon second = pokeApi.getPokemon("charizard");
+
+        assertThat(second).isSameAs(first);
+        assertThat(second.types()).isSameAs(first.types()).isEqualTo("fire, flying");
+    }
+
+    @Test
+    void getPokemon_shouldReplaceTheCatalogInstance_whenUpstreamDataChanged() {
+        when(restClient.getPokeApiDetail("eevee")).thenReturn(
+                new PokeApiDetail(133, "eevee", List.of(new PokeApiTypeSlot(new PokeApiType("normal"))),
+                        new PokeApiSprite("https://img/eevee.png")),
+                new PokeApiDetail(133, "eevee", List.of(new PokeApiTypeSlot(new PokeApiType("normal"))),
+                        new PokeApiSprite("https://img/eevee-v2.png")));
+
+        Pokemon first = pokeApi.getPokemon("eevee");
+        Pokemon second = pokeApi.getPokemon("eevee");
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.imageUrl()).isEqualTo("https://img/eevee-v2.png");
+        assertThat(pokeApi.getPokemon("eevee")).isSameAs(second);
+    }
+
+    @Test
+    void getPokemons_shouldFetchEachDistinctNameOnce() {
+        for (String name : List.of("pikachu", "eevee", "mew")) {
+            when(restClient.getPokeApiDetail(name)).thenReturn(new PokeApiDetail(name.length(), name,
+                    List.of(new PokeApiTypeSlot(new PokeApiType("normal"))), new PokeApiSprite("https://img/" + name)));
+        }
+
+        Map<String, Pokemon> result = pokeApi.getPokemons(List.of("pikachu", "eevee", "mew", "eevee", "pikachu"));
+
+        assertThat(result).containsOnlyKeys("pikachu", "eevee", "mew");
+        assertThat(result.get("eevee").imageUrl()).isEqualTo("https://img/eevee");
+        verify(restClient).getPokeApiDetail("pikachu");
+        verify(restClient).getPokeApiDetail("eevee");
+        verify(restClient).getPokeApiDetail("mew");
+    }
+
+    @Test
+    void getPokemons_shouldRethrowPokeApiException_whenAnyFetchFails() {
+        when(restClient.getPokeApiDetail(anyString())).thenThrow(new IllegalStateException("boom"));
+
+        assertThatThrownBy(() -> pokeApi.getPokemons(List.of("pikachu", "eevee")))
+                .isInstanceOf(PokeApiException.class)
+                .hasMessageContaining("Error occurred during PokeAPI call")
+                .hasRootCauseMessage("boom");
+    }
+
+    @Test
+    void getPokemonsWithTimeout_shouldCancelTheOtherFetch_whenOneFails() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(restClient.getPokeApiDetail("pikachu")).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(Long.MAX_VALUE);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        });
+        when(restClient.getPokeApiDetail("eevee")).thenAnswer(invocation -> {
+            started.await();
+            throw new IllegalStateException("boom");
+        });
+
+        assertThatThrownBy(() -> pokeApi.getPokemons(List.of("pikachu", "eevee"), Duration.ofMinutes(1)))
+                .isInstanceOf(PokeApiException.class)
+                .hasRootCauseMessage("boom");
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void getPokemonsWithTimeout_shouldThrowAndCancelTheFetches_whenTheTimeoutElapses() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(2);
+        when(restClient.getPokeApiDetail(anyString())).thenAnswer(invocation -> {
+            try {
+                Thread.sleep(Long.MAX_VALUE);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        });
+
+        assertThatThrownBy(() -> pokeApi.getPokemons(List.of("pikachu", "eevee"), Duration.ofMillis(100)))
+                .isInstanceOf(PokeApiException.class)
+                .hasMessageContaining("timed out");
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void getPokemonsWithTimeout_shouldNotQueueBehindABatch_whenTheSharedFetchPoolIsBusy() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch busy = new CountDownLatch(4);
+        when(restClient.getPokeApiDetail(startsWith("batch-"))).thenAnswer(invocation -> {
+            busy.countDown();
+            release.await();
+            return null;
+        });
+        for (String name : List.of("pikachu", "eevee")) {
+            when(restClient.getPokeApiDetail(name)).thenReturn(new PokeApiDetail(name.length(), name,
+                    List.of(new PokeApiTypeSlot(new PokeApiType("normal"))), new PokeApiSprite("https://img/" + name)));
+        }
+        Thread batch = new Thread(() -> {
+            try {
+                pokeApi.getPokemons(List.of("batch-1", "batch-2", "batch-3", "batch-4", "batch-5", "batch-6"));
+            } catch (PokeApiException e) {
+                // the batch is not under test
+            }
+        });
+        batch.start();
+        try {
+            assertThat(busy.await(5, TimeUnit.SECONDS)).isTrue();
+
+            Map<String, Pokemon> result = pokeApi.getPokemons(List.of("pikachu", "eevee"), Duration.ofSeconds(5));
+
+            assertThat(result).containsOnlyKeys("pikachu", "eevee");
+        } finally {
+            release.countDown();
+            batch.join();
+        }
+    }
+
+    @Test
+    void getPokemonsWithTimeout_shouldFailFast_whenTheTimedFetchPoolIsFull() throws Exception {
+        PokeApiImpl bounded = new PokeApiImpl("http://fallback_sprite", 4, 2, restClient, new PokemonCatalog(),
+                PokemonSnapshot.disabled());
+        CountDownLatch release = new CountDownLatch(1);
+        when(restClient.getPokeApiDetail(anyString())).thenAnswer(invocation -> {
+            // a blocking HTTP call does not react to the cancellation
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // ignored, like a socket read
+                }
+            }
+            return null;
+        });
+        try {
+            assertThatThrownBy(() -> bounded.getPokemons(List.of("a", "b", "c", "d"), Duration.ofMillis(100)))
+                    .isInstanceOf(PokeApiException.class)
+                    .hasMessageContaining("timed out");
+
+            long startTime = System.nanoTime();
+            assertThatThrownBy(() -> bounded.getPokemons(List.of("e", "f", "g"), Duration.ofSeconds(5)))
+                    .isInstanceOf(PokeApiException.class)
+                    .hasMessageContaining("Too many PokeAPI calls");
+            assertThat(Duration.ofNanos(System.nanoTime() - startTime)).isLessThan(Duration.ofSeconds(2));
+        } finally {
+            release.countDown();
+            bounded.destroy();
+        }
+    }
+
     @Test
     void getPokemon_shouldFailValidationAndWrapIntoPokeApiException_whenMappedPokemonInvalid() {
         String name = "charmander";
@@ -150,11 +337,12 @@ class PokeApiImplTest {
                 .isInstanceOf(PokeApiException.class);
 
         verify(restClient).getPokeApiDetail(name);
-        verify(restClient).clearAllCaches();
+        verify(restClient).evictPokeApiDetail(name);
+        verify(restClient, never()).clearAllCaches();
     }
 
     @Test
-    void getPokemon_shouldWrapRestClientResponseExceptionAndClearCache() {
+    void getPokemon_shouldWrapRestClientResponseExceptionAndEvictTheEntry() {
         String name = "pikachu";
 
         RestClientResponseException ex = new RestClientResponseException(
@@ -172,11 +360,12 @@ class PokeApiImplTest {
                 .hasCause(ex);
 
         verify(restClient).getPokeApiDetail(name);
-        verify(restClient).clearAllCaches();
+        verify(restClient).evictPokeApiDetail(name);
+        verify(restClient, never()).clearAllCaches();
     }
 
     @Test
-    void getPokemon_shouldWrapOtherExceptionsAndClearCache() {
+    void getPokemon_shouldWrapOtherExceptionsAndEvictTheEntry() {
         String name = "pikachu";
 
         RuntimeException ex = new RuntimeException();
@@ -187,11 +376,12 @@ class PokeApiImplTest {
                 .hasCause(ex);
 
         verify(restClient).getPokeApiDetail(name);
-        verify(restClient).clearAllCaches();
+        verify(restClient).evictPokeApiDetail(name);
+        verify(restClient, never()).clearAllCaches();
     }
 
     @Test
-    void listPokemonNames_shouldClearCacheAndWrapRestClientResponseException() {
+    void listPokemonNames_shouldEvictTheEntryAndWrapRestClientResponseException() {
 
         RestClientResponseException ex =
                 new RestClientResponseException("error", 500, "ISE", null,
@@ -205,11 +395,12 @@ class PokeApiImplTest {
                 .extracting("httpStatusCode")
                 .isEqualTo(500);
 
-        verify(restClient).clearAllCaches();
+        verify(restClient).evictPokeApiNameList();
+        verify(restClient, never()).clearAllCaches();
     }
 
     @Test
-    void listPokemonNames_shouldClearCacheAndWrapGenericException() {
+    void listPokemonNames_shouldEvictTheEntryAndWrapGenericException() {
 
         RuntimeException ex = new RuntimeException();
 
@@ -219,11 +410,12 @@ class PokeApiImplTest {
                 .isInstanceOf(PokeApiException.class)
                 .hasCause(ex);
 
-        verify(restClient).clearAllCaches();
+        verify(restClient).evictPokeApiNameList();
+        verify(restClient, never()).clearAllCaches();
     }
 
     @Test
-    void getPokemon_shouldClearCacheAndWrapRestClientResponseException() {
+    void getPokemon_shouldEvictTheEntryAndWrapRestClientResponseException() {
 
         String name = "pikachu";
         RestClientResponseException ex =
@@ -238,11 +430,12 @@ class PokeApiImplTest {
                 .extracting("httpStatusCode")
                 .isEqualTo(404);
 
-        verify(restClient).clearAllCaches();
+        verify(restClient).evictPokeApiDetail(name);
+        verify(restClient, never()).clearAllCaches();
     }
 
     @Test
-    void getPokemon_shouldClearCacheAndWrapGenericException() {
+    void getPokemon_shouldEvictTheEntryAndWrapGenericException() {
 
         String name = "pikachu";
         RuntimeException ex = new RuntimeException();
@@ -253,7 +446,8 @@ class PokeApiImplTest {
                 .isInstanceOf(PokeApiException.class)
                 .hasCause(ex);
 
-        verify(restClient).clearAllCaches();
+        verify(restClient).evictPokeApiDetail(name);
+        verify(restClient, never()).clearAllCaches();
     }
 
     @Test
@@ -277,4 +471,92 @@ class PokeApiImplTest {
                 .hasMessageContaining("Invalid pokemon");
     }
 
+    @Test
+    void getPokemons_shouldServeTheSnapshot_WhenPokeApiIsUnreachable(@TempDir Path directory) {
+        Path file = directory.resolve("pokemon.snapshot");
+        PokemonSnapshot snapshot = new PokemonSnapshot(file, Duration.ofHours(12));
+        PokeApiImpl online = new PokeApiImpl("http://fallback_sprite", 4, restClient, new PokemonCatalog(), snapshot);
+        when(restClient.getPokeApiNameList()).thenReturn(new PokeApiNameList(
+                List.of(new PokeApiName("pikachu"), new PokeApiName("eevee"))));
+        for (String name : List.of("pikachu", "eevee")) {
+            when(restClient.getPokeApiDetail(name)).thenReturn(new PokeApiDetail(name.length(), name,
+                    List.of(new PokeApiTypeSlot(new PokeApiType("normal"))), new PokeApiSprite("https://img/" + name)));
+        }
+        online.getPokemons(online.listPokemonNames());
+        online.destroy();
+        snapshot.destroy();
+
+        reset(restClient);
+        PokemonSnapshot restarted = new PokemonSnapshot(file, Duration.ofHours(12));
+        PokeApiImpl offline = new PokeApiImpl("http://fallback_sprite", 4, restClient, new PokemonCatalog(), restarted);
+
+        assertThat(offline.listPokemonNames()).containsExactly("pikachu", "eevee");
+        Map<String, Pokemon> result = offline.getPokemons(List.of("pikachu", "eevee"), Duration.ofSeconds(1));
+        assertThat(result.get("eevee").imageUrl()).isEqualTo("https://img/eevee");
+        verifyNoInteractions(restClient);
+        offline.destroy();
+        restarted.destroy();
+    }
+
+    @Test
+    void createRandomBattle_shouldWorkOffline_WithTheSnapshotOfARefresh(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("pokemon.snapshot");
+        List<String> names = IntStream.rangeClosed(1, 50).mapToObj(id -> "pokemon-" + id).toList();
+        PokemonSnapshot snapshot = new PokemonSnapshot(file, Duration.ofHours(12));
+        PokeApiImpl online = new PokeApiImpl("http://fallback_sprite", 4, restClient, new PokemonCatalog(), snapshot);
+        when(restClient.getPokeApiNameList()).thenReturn(new PokeApiNameList(names.stream().map(PokeApiName::new)
+                .toList()));
+        when(restClient.getPokeApiDetail(anyString())).thenAnswer(invocation -> {
+            String name = invocation.getArgument(0);
+            return new PokeApiDetail(names.indexOf(name) + 1, name,
+                    List.of(new PokeApiTypeSlot(new PokeApiType("normal"))), new PokeApiSprite("https://img/" + name));
+        });
+        online.refreshSnapshot();
+        online.destroy();
+        snapshot.destroy();
+
+        reset(restClient);
+        lenient().when(restClient.getPokeApiNameList()).thenThrow(new IllegalStateException("offline"));
+        lenient().when(restClient.getPokeApiDetail(anyString())).thenThrow(new IllegalStateException("offline"));
+        PokemonSnapshot restarted = new PokemonSnapshot(file, Duration.ofHours(12));
+        PokeApiImpl offline = new PokeApiImpl("http://fallback_sprite", 4, restClient, new PokemonCatalog(), restarted);
+        InMemoryBattleServiceImpl service = new InMemoryBattleServiceImpl(offline,
+                new PendingBattleStore(Duration.ofMinutes(30), 1000, Clock.systemUTC()), new SegmentedBattleHistory());
+
+        for (int i = 0; i < 100; i++) {
+            Battle battle = service.createRandomBattle();
+            assertThat(names).contains(battle.first().name(), battle.second().name());
+        }
+        verify(restClient, never()).getPokeApiDetail(anyString());
+        offline.destroy();
+        restarted.destroy();
+    }
+
+    @Test
+    void refreshSnapshot_shouldFetchTheSnapshotPokemonAgain_AndKeepThemWhenPokeApiIsUnreachable(
+            @TempDir Path directory) {
+        PokemonSnapshot snapshot = new PokemonSnapshot(directory.resolve("pokemon.snapshot"), Duration.ofHours(12));
+        snapshot.putNames(List.of("pikachu"));
+        snapshot.put(new Pokemon(25, "pikachu", "electric", "old-url"));
+        PokeApiImpl withSnapshot = new PokeApiImpl("http://fallback_sprite", 4, restClient, new PokemonCatalog(),
+                snapshot);
+        when(restClient.getPokeApiNameList()).thenThrow(new IllegalStateException("offline"));
+
+        withSnapshot.refreshSnapshot();
+
+        assertThat(withSnapshot.getPokemon("pikachu").imageUrl()).isEqualTo("old-url");
+        verify(restClient, never()).getPokeApiDetail(anyString());
+
+        reset(restClient);
+        when(restClient.getPokeApiNameList()).thenReturn(new PokeApiNameList(List.of(new PokeApiName("pikachu"))));
+        when(restClient.getPokeApiDetail("pikachu")).thenReturn(new PokeApiDetail(25, "pikachu",
+                List.of(new PokeApiTypeSlot(new PokeApiType("electric"))), new PokeApiSprite("new-url")));
+
+        withSnapshot.refreshSnapshot();
+
+        assertThat(withSnapshot.getPokemon("pikachu").imageUrl()).isEqualTo("new-url");
+        withSnapshot.destroy();
+        snapshot.destroy();
+    }
+
 }
@@ -0,0 +1,75 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApi;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.dto.Pokemon;
+import hu.dlaszlo.pokemonbattle.backend.service.warmup.PokeApiWarmUp;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Starts the application with the warm-up enabled and PokeAPI stalled, and checks that the context starts
+ * anyway, that the readiness state Spring Boot publishes at the end of the startup is overridden while the
+ * warm-up runs, and that the application accepts traffic once it is warm.
+ */
+@SpringBootTest(properties = {
+        "pokeapi.warm_up.enabled=true",
+        "pokeapi.warm_up.ready_threshold=1.0"
+})
+class PokeApiWarmUpReadinessTest {
+
+    private static final CountDownLatch STALL = new CountDownLatch(1);
+
+    @Autowired
+    private ApplicationAvailability applicationAvailability;
+
+    @Autowired
+    private PokeApiWarmUp pokeApiWarmUp;
+
+    @Test
+    void readiness_shouldRefuseTraffic_UntilTheWarmUpIsDone() {
+        assertThat(applicationAvailability.getReadinessState()).isEqualTo(ReadinessState.REFUSING_TRAFFIC);
+        assertThat(pokeApiWarmUp.isWarm()).isFalse();
+
+        STALL.countDown();
+
+        await().until(() -> applicationAvailability.getReadinessState() == ReadinessState.ACCEPTING_TRAFFIC);
+        assertThat(pokeApiWarmUp.getLoadedCount()).isEqualTo(3);
+    }
+
+    @TestConfiguration
+    static class StalledPokeApiConfig {
+
+        @Bean
+        @Primary
+        PokeApi stalledPokeApi() {
+            return new PokeApi() {
+                @Override
+                public List<String> listPokemonNames() {
+                    try {
+                        STALL.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return List.of("pikachu", "bulbasaur", "charmander");
+                }
+
+                @Override
+                public Pokemon getPokemon(String name) {
+                    return new Pokemon(name.length(), name, "normal", "url-" + name);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApi;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApiException;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.dto.Pokemon;
+import hu.dlaszlo.pokemonbattle.backend.service.BattleService;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonStats;
+import hu.dlaszlo.pokemonbattle.backend.service.warmup.PokeApiWarmUp;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PokeApiWarmUpTest {
+
+    @Mock
+    private PokeApi pokeApi;
+
+    @Mock
+    private BattleService battleService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final List<String> fetched = Collections.synchronizedList(new ArrayList<>());
+
+    private PokeApiWarmUp warmUp;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(battleService.leaderboard(anyInt())).thenReturn(List.of());
+        lenient().when(pokeApi.getPokemon(anyString())).thenAnswer(invocation -> {
+            String name = invocation.getArgument(0);
+            fetched.add(name);
+            return new Pokemon(name.length(), name, "normal", "url-" + name);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (warmUp != null) {
+            warmUp.destroy();
+        }
+    }
+
+    @Test
+    void start_shouldFetchTheMostWinningPokemonFirst_ThenTheNameListUpToTopN() {
+        when(pokeApi.listPokemonNames()).thenReturn(List.of("bulbasaur", "ivysaur", "venusaur", "charmander", "mew"));
+        when(battleService.leaderboard(anyInt())).thenReturn(List.of(
+                new PokemonStats("mew", 10, 8, 2, 0, 12),
+                new PokemonStats("missingno", 4, 4, 0, 0, 10)));
+        warmUp = new PokeApiWarmUp(pokeApi, battleService, eventPublisher, 3, 1, 1.0);
+
+        warmUp.start();
+
+        await().until(warmUp::isWarm);
+        assertThat(fetched).containsExactly("mew", "bulbasaur", "ivysaur");
+        assertThat(warmUp.getTargetCount()).isEqualTo(3);
+        assertThat(warmUp.getLoadedCount()).isEqualTo(3);
+        assertThat(warmUp.getFailedCount()).isZero();
+    }
+
+    @Test
+    void start_shouldReturnBeforeTheNameListIsFetched() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(pokeApi.listPokemonNames()).thenAnswer(invocation -> {
+            release.await();
+            return List.of("pikachu");
+        });
+        warmUp = new PokeApiWarmUp(pokeApi, battleService, eventPublisher, 0, 2, 1.0);
+
+        warmUp.start();
+
+        assertThat(warmUp.isWarm()).isFalse();
+        release.countDown();
+        await().until(warmUp::isWarm);
+        assertThat(fetched).containsExactly("pikachu");
+    }
+
+    @Test
+    void onReadinessChange_shouldRefuseTraffic_UntilTheThresholdIsReached() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(pokeApi.listPokemonNames()).thenReturn(List.of("bulbasaur", "ivysaur", "venusaur", "charmander"));
+        when(pokeApi.getPokemon(anyString())).thenAnswer(invocation -> {
+            String name = invocation.getArgument(0);
+            if (!name.equals("bulbasaur")) {
+                release.await();
+            }
+            fetched.add(name);
+            return new Pokemon(name.length(), name, "normal", "url-" + name);
+        });
+        warmUp = new PokeApiWarmUp(pokeApi, battleService, eventPublisher, 0, 4, 0.5);
+
+        warmUp.onReadinessChange(new AvailabilityChangeEvent<>(this, ReadinessState.ACCEPTING_TRAFFIC));
+        warmUp.start();
+        await().until(() -> fetched.contains("bulbasaur"));
+
+        assertThat(warmUp.isWarm()).isFalse();
+        assertThat(readinessStates()).containsExactly(ReadinessState.REFUSING_TRAFFIC);
+
+        release.countDown();
+        await().until(warmUp::isWarm);
+        assertThat(readinessStates())
+                .containsExactly(ReadinessState.REFUSING_TRAFFIC, ReadinessState.ACCEPTING_TRAFFIC);
+    }
+
+    @Test
+    void onReadinessChange_shouldNotRefuseTraffic_WhenAlreadyWarm() {
+        when(pokeApi.listPokemonNames()).thenReturn(List.of("pikachu"));
+        warmUp = new PokeApiWarmUp(pokeApi, battleService, eventPublisher, 0, 1, 1.0);
+        warmUp.start();
+        await().until(warmUp::isWarm);
+
+        warmUp.onReadinessChange(new AvailabilityChangeEvent<>(this, ReadinessState.ACCEPTING_TRAFFIC));
+
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void start_shouldSkipFailedPokemon_AndBecomeWarmWhenFinished() {
+        when(pokeApi.listPokemonNames()).thenReturn(List.of("pikachu", "missingno"));
+        when(pokeApi.getPokemon("missingno")).thenThrow(new PokeApiException("Not Found"));
+        warmUp = new PokeApiWarmUp(pokeApi, battleService, eventPublisher, 0, 2, 1.0);
+
+        warmUp.start();
+
+        await().until(warmUp::isWarm);
+        assertThat(warmUp.getLoadedCount()).isEqualTo(1);
+        assertThat(warmUp.getFailedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void start_shouldBecomeWarm_WhenTheNameListCannotBeFetched() {
+        when(pokeApi.listPokemonNames()).thenThrow(new PokeApiException("PokeAPI is down"));
+        warmUp = new PokeApiWarmUp(pokeApi, battleService, eventPublisher, 0, 2, 1.0);
+
+        warmUp.start();
+
+        await().until(warmUp::isWarm);
+        verify(pokeApi, never()).getPokemon(anyString());
+        assertThat(warmUp.getTargetCount()).isZero();
+    }
+
+    @Test
+    void constructor_shouldRejectInvalidThreshold() {
+        assertThatThrownBy(() -> new PokeApiWarmUp(pokeApi, battleService, eventPublisher, 0, 1, 1.5))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ReadinessState> readinessStates() {
+        ArgumentCaptor<AvailabilityChangeEvent<ReadinessState>> events =
+                ArgumentCaptor.forClass(AvailabilityChangeEvent.class);
+        verify(eventPublisher, atLeastOnce()).publishEvent(events.capture());
+        return events.getAllValues().stream().map(AvailabilityChangeEvent::getState).toList();
+    }
+}
@@ -0,0 +1,135 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokemonSnapshot;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokemonSnapshotFile;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.dto.Pokemon;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PokemonSnapshotTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void save_shouldWriteTheNamesAndPokemon_ThatAreLoadedAfterARestart() {
+        Path file = directory.resolve("pokeapi/pokemon.snapshot");
+        PokemonSnapshot snapshot = new PokemonSnapshot(file, Duration.ofHours(12));
+        snapshot.putNames(List.of("bulbasaur", "flabébé"));
+        snapshot.put(new Pokemon(1, "bulbasaur", "grass, poison", "url-1"));
+        snapshot.put(new Pokemon(669, "flabébé", "fairy", null));
+        snapshot.destroy();
+
+        PokemonSnapshot restarted = new PokemonSnapshot(file, Duration.ofHours(12));
+
+        assertThat(restarted.getNames()).containsExactly("bulbasaur", "flabébé");
+        assertThat(restarted.get("bulbasaur")).isEqualTo(new Pokemon(1, "bulbasaur", "grass, poison", "url-1"));
+        assertThat(restarted.get("flabébé")).isEqualTo(new Pokemon(669, "flabébé", "fairy", null));
+        assertThat(restarted.get("bulbasaur").name()).isSameAs(restarted.getNames().get(0));
+        restarted.destroy();
+    }
+
+    @Test
+    void save_shouldNotRewriteTheFile_WhenNothingChanged() throws IOException {
+        Path file = directory.resolve("pokemon.snapshot");
+        PokemonSnapshot snapshot = new PokemonSnapshot(file, Duration.ofHours(12));
+        snapshot.put(new Pokemon(25, "pikachu", "electric", "url-25"));
+        snapshot.save();
+        Files.delete(file);
+
+        snapshot.put(new Pokemon(25, "pikachu", "electric", "url-25"));
+        snapshot.save();
+
+        assertThat(file).doesNotExist();
+        snapshot.destroy();
+    }
+
+    @Test
+    void save_shouldWriteAReadableFile_WhilePokemonAreAdded() throws Exception {
+        Path file = directory.resolve("pokemon.snapshot");
+        PokemonSnapshot snapshot = new PokemonSnapshot(file, Duration.ofHours(12));
+        IntStream.range(0, 5000).forEach(id -> snapshot.put(new Pokemon(id, "pokemon-" + id, "normal", "url")));
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for (int id = 5000; !stop.get() && id < 200_000; id++) {
+                snapshot.put(new Pokemon(id, "pokemon-" + id, "normal", "url"));
+            }
+        });
+        writer.start();
+        try {
+            for (int i = 0; i < 20; i++) {
+                snapshot.save();
+                PokemonSnapshotFile.read(file);
+                snapshot.put(new Pokemon(-i - 1, "changed-" + i, "normal", "url"));
+            }
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+        snapshot.destroy();
+    }
+
+    @Test
+    void constructor_shouldStartEmpty_WhenTheFileIsCorrupt() throws IOException {
+        Path file = directory.resolve("pokemon.snapshot");
+        PokemonSnapshotFile.write(file, List.of("pikachu"), List.of(new Pokemon(25, "pikachu", "electric", "url")));
+        try (SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.WRITE)) {
+            channel.position(20).write(ByteBuffer.wrap(new byte[]{42}));
+        }
+
+        PokemonSnapshot snapshot = new PokemonSnapshot(file, Duration.ofHours(12));
+
+        assertThat(snapshot.getNames()).isEmpty();
+        assertThat(snapshot.size()).isZero();
+        assertThatThrownBy(() -> PokemonSnapshotFile.read(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("checksum");
+        snapshot.destroy();
+    }
+
+    @Test
+    void read_shouldLoadAFullCatalog() throws IOException {
+        Path file = directory.resolve("pokemon.snapshot");
+        List<Pokemon> pokemon = IntStream.rangeClosed(1, 1300)
+                .mapToObj(id -> new Pokemon(id, "pokemon-" + id, id % 2 == 0 ? "fire, flying" : "water",
+                        "https://raw.githubusercontent.com/PokeAPI/sprites/master/sprites/pokemon/" + id + ".png"))
+                .toList();
+        PokemonSnapshotFile.write(file, pokemon.stream().map(Pokemon::name).toList(), pokemon);
+
+        PokemonSnapshotFile.Snapshot snapshot = PokemonSnapshotFile.read(file);
+
+        assertThat(snapshot.pokemon()).isEqualTo(pokemon);
+        assertThat(snapshot.names()).hasSize(1300);
+        assertThat(snapshot.pokemon().get(1).types()).isSameAs(snapshot.pokemon().get(3).types());
+    }
+
+    @Test
+    void disabled_shouldKeepNothing() {
+        PokemonSnapshot snapshot = PokemonSnapshot.disabled();
+
+        snapshot.putNames(List.of("pikachu"));
+        snapshot.put(new Pokemon(25, "pikachu", "electric", "url"));
+        snapshot.scheduleRefresh(() -> {
+            throw new AssertionError("must not run");
+        });
+
+        assertThat(snapshot.isEnabled()).isFalse();
+        assertThat(snapshot.getNames()).isEmpty();
+        assertThat(snapshot.get("pikachu")).isNull();
+        snapshot.destroy();
+    }
+}
@@ -0,0 +1,91 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonStats;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.WinnerSide;
+import hu.dlaszlo.pokemonbattle.backend.service.stats.PokemonStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PokemonStatisticsTest {
+
+    private static final List<String> NAMES = List.of("pikachu", "bulbasaur", "charmander", "squirtle", "eevee");
+
+    private final PokemonStatistics statistics = new PokemonStatistics();
+
+    @Test
+    void record_shouldCountWinsLossesDrawsAndAveragePower() {
+        statistics.record(battle("pikachu", 15, "bulbasaur", 5, WinnerSide.FIRST));
+        statistics.record(battle("bulbasaur", 9, "pikachu", 9, WinnerSide.DRAW));
+        statistics.record(battle("pikachu", 3, "eevee", 12, WinnerSide.SECOND));
+        statistics.record(new Battle(9L, BattleStatus.PENDING, pokemon("pikachu", 1), pokemon("eevee", 2),
+                null, Instant.now(), null));
+
+        assertThat(statistics.get("pikachu")).isEqualTo(new PokemonStats("pikachu", 3, 1, 1, 1, 9.0));
+        assertThat(statistics.get("bulbasaur")).isEqualTo(new PokemonStats("bulbasaur", 2, 0, 1, 1, 7.0));
+        assertThat(statistics.get("mewtwo")).isEqualTo(new PokemonStats("mewtwo", 0, 0, 0, 0, 0));
+        assertThat(statistics.size()).isEqualTo(3);
+    }
+
+    @Test
+    void top_shouldOrderByWinsThenByName() {
+        statistics.record(battle("pikachu", 15, "bulbasaur", 5, WinnerSide.FIRST));
+        statistics.record(battle("eevee", 15, "bulbasaur", 5, WinnerSide.FIRST));
+        statistics.record(battle("pikachu", 15, "eevee", 5, WinnerSide.FIRST));
+
+        assertThat(statistics.top(10)).extracting(PokemonStats::name).containsExactly("pikachu", "eevee", "bulbasaur");
+        assertThat(statistics.top(2)).extracting(PokemonStats::wins).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void record_shouldKeepCountsAndRankingExact_WhenCalledConcurrently() throws Exception {
+        int threads = 8;
+        int perThread = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> writers = IntStream.range(0, threads)
+                    .mapToObj(t -> executor.submit(() -> {
+                        for (int i = 0; i < perThread; i++) {
+                            int first = (t + i) % NAMES.size();
+                            int second = (first + 1 + i % (NAMES.size() - 1)) % NAMES.size();
+                            statistics.record(battle(NAMES.get(first), 10, NAMES.get(second), 5,
+                                    WinnerSide.values()[i % 3]));
+                        }
+                    }))
+                    .collect(Collectors.toList());
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<PokemonStats> top = statistics.top(10);
+        assertThat(top).hasSize(NAMES.size());
+        assertThat(top).isSortedAccordingTo(Comparator.comparingLong(PokemonStats::wins).reversed());
+        assertThat(top.stream().mapToLong(PokemonStats::battles).sum()).isEqualTo(2L * threads * perThread);
+        assertThat(top.stream().mapToLong(PokemonStats::wins).sum())
+                .isEqualTo(top.stream().mapToLong(PokemonStats::losses).sum());
+    }
+
+    private static Battle battle(String first, int firstPower, String second, int secondPower, WinnerSide winner) {
+        return new Battle(1L, BattleStatus.FINISHED, pokemon(first, firstPower), pokemon(second, secondPower),
+                winner, Instant.now(), Instant.now());
+    }
+
+    private static PokemonEntity pokemon(String name, int power) {
+        return new PokemonEntity(name, "normal", "url-" + name, power);
+    }
+}
@@ -0,0 +1,119 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.WinnerSide;
+import hu.dlaszlo.pokemonbattle.backend.service.history.SegmentedBattleHistory;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SegmentedBattleHistoryTest {
+
+    private final SegmentedBattleHistory history = new SegmentedBattleHistory();
+
+    @Test
+    void newestFirst_shouldBeEmpty_WhenNothingAppended() {
+        assertThat(history.size()).isZero();
+        assertThat(history.newestFirst()).isEmpty();
+    }
+
+    @Test
+    void append_shouldAssignIncreasingPositions_AcrossSegmentBoundaries() {
+        int count = 10_000;
+        for (long i = 0; i < count; i++) {
+            assertThat(history.append(battle(i))).isEqualTo(i);
+        }
+
+        assertThat(history.size()).isEqualTo(count);
+        assertThat(history.get(0).id()).isZero();
+        assertThat(history.get(1023).id()).isEqualTo(1023L);
+        assertThat(history.get(1024).id()).isEqualTo(1024L);
+        assertThat(history.get(count - 1).id()).isEqualTo(count - 1L);
+
+        List<Long> ids = history.newestFirst().map(Battle::id).collect(Collectors.toList());
+        assertThat(ids).hasSize(count);
+        assertThat(ids.get(0)).isEqualTo(count - 1L);
+        assertThat(ids.get(count - 1)).isZero();
+    }
+
+    @Test
+    void newestFirst_shouldNotSeeBattlesAppendedAfterItWasCreated() {
+        history.append(battle(1));
+        var stream = history.newestFirst();
+        history.append(battle(2));
+
+        assertThat(stream.map(Battle::id)).containsExactly(1L);
+    }
+
+    @Test
+    void positionOf_shouldSeekDirectlyIntoTheLog() {
+        for (long i = 0; i < 5; i++) {
+            history.append(battle(100 + i));
+        }
+
+        assertThat(history.positionOf(102)).isEqualTo(2);
+        assertThat(history.positionOf(999)).isEqualTo(-1);
+        assertThat(history.findById(103).id()).isEqualTo(103L);
+        assertThat(history.findById(999)).isNull();
+        assertThat(history.newestFirst(2).map(Battle::id)).containsExactly(102L, 101L, 100L);
+        assertThat(history.oldestFirst(3).map(Battle::id)).containsExactly(103L, 104L);
+        assertThat(history.newestFirst(-1)).isEmpty();
+        assertThat(history.oldestFirst(5)).isEmpty();
+    }
+
+    @Test
+    void get_shouldThrow_WhenPositionIsOutOfRange() {
+        history.append(battle(1));
+
+        assertThatThrownBy(() -> history.get(1)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> history.get(-1)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void append_shouldKeepEveryBattle_WhenCalledConcurrently() throws Exception {
+        int threads = 8;
+        int perThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = LongStream.range(0, threads)
+                    .mapToObj(t -> executor.submit(() -> {
+                        for (long i = 0; i < perThread; i++) {
+                            history.append(battle(t * perThread + i));
+                        }
+                    }))
+                    .collect(Collectors.toList());
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(history.size()).isEqualTo((long) threads * perThread);
+        assertThat(history.newestFirst().map(Battle::id).distinct().count())
+                .isEqualTo((long) threads * perThread);
+    }
+
+    private static Battle battle(long id) {
+        return new Battle(
+                id,
+                BattleStatus.FINISHED,
+                new PokemonEntity("p" + id, "t", "u", 1),
+                new PokemonEntity("q" + id, "t", "u", 2),
+                WinnerSide.SECOND,
+                Instant.now(),
+                Instant.now()
+        );
+    }
+}
@@ -0,0 +1,214 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.PokeApi;
+import hu.dlaszlo.pokemonbattle.backend.pokeapi.dto.Pokemon;
+import hu.dlaszlo.pokemonbattle.backend.service.BattleNotFoundException;
+import hu.dlaszlo.pokemonbattle.backend.service.ShardedBattleServiceImpl;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattlePage;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Tournament;
+import hu.dlaszlo.pokemonbattle.backend.service.history.SegmentedBattleHistory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardedBattleServiceImplTest {
+
+    private static final List<String> NAMES = List.of("pikachu", "bulbasaur", "charmander", "squirtle", "eevee");
+
+    private final PokeApi pokeApi = new PokeApi() {
+        @Override
+        public List<String> listPokemonNames() {
+            return NAMES;
+        }
+
+        @Override
+        public Pokemon getPokemon(String name) {
+            return new Pokemon(NAMES.indexOf(name) + 1, name, "normal", "url-" + name);
+        }
+    };
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    private ShardedBattleServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ShardedBattleServiceImpl(pokeApi, SegmentedBattleHistory::new, Duration.ofMinutes(30), 10_000, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void simulateBattle_shouldFindBattlesCreatedOnAnyShard() throws Exception {
+        List<Battle> created = createConcurrently(500);
+
+        assertThat(created.stream().map(Battle::id).distinct()).hasSize(500);
+        for (Battle battle : created) {
+            Battle finished = service.simulateBattle(battle.id());
+            assertThat(finished.status()).isEqualTo(BattleStatus.FINISHED);
+            assertThat(service.simulateBattle(battle.id())).isEqualTo(finished);
+        }
+    }
+
+    @Test
+    void createRandomBattles_shouldSpreadABatchLargerThanOneShardAcrossTheShards() {
+        List<Battle> created = service.createRandomBattles(10_000);
+
+        assertThat(created.stream().map(Battle::id).distinct()).hasSize(10_000);
+        for (Battle battle : created) {
+            assertThat(service.simulateBattle(battle.id()).status()).isEqualTo(BattleStatus.FINISHED);
+        }
+        assertThatThrownBy(() -> service.createRandomBattles(10_001)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.createRandomBattles(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void bindTo_shouldRegisterThePendingStoreOfEveryShard() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        service.bindTo(registry);
+
+        service.createRandomBattles(8);
+
+        assertThat(registry.get("battles.pending.size").gauges()).hasSize(4);
+        for (int shard = 0; shard < 4; shard++) {
+            assertThat(registry.get("battles.pending.size").tag("shard", String.valueOf(shard)).gauge().value())
+                    .isEqualTo(2.0);
+            assertThat(registry.get("battles.pending.evicted").tag("shard", String.valueOf(shard))
+                    .functionCounter().count()).isZero();
+        }
+    }
+
+    @Test
+    void simulateBattle_shouldThrow_WhenBattleDoesNotExist() {
+        assertThatThrownBy(() -> service.simulateBattle(123_456L)).isInstanceOf(BattleNotFoundException.class);
+        assertThatThrownBy(() -> service.simulateBattle(null)).isInstanceOf(NullPointerException.class);
+    }
+
+    @Test
+    void searchBattles_shouldMergeShardsNewestFirst() throws Exception {
+        List<Battle> finished = simulateConcurrently(createConcurrently(300));
+
+        List<Battle> newest = service.searchBattles(null);
+
+        List<Battle> expected = new ArrayList<>(finished);
+        expected.sort(Comparator.comparing(Battle::finishedAt).reversed());
+        assertThat(newest).hasSize(20);
+        assertThat(newest).isSortedAccordingTo(Comparator.comparing(Battle::finishedAt).reversed());
+        assertThat(newest.get(0).finishedAt()).isEqualTo(expected.get(0).finishedAt());
+        assertThat(service.searchBattles("eevee"))
+                .isNotEmpty()
+                .allMatch(battle -> battle.first().name().equals("eevee") || battle.second().name().equals("eevee"));
+    }
+
+    @Test
+    void searchBattles_shouldPageThroughEveryShardWithCursors() throws Exception {
+        List<Battle> finished = simulateConcurrently(createConcurrently(300));
+
+        List<Battle> forward = new ArrayList<>();
+        BattlePage page = service.searchBattles(null, null, null, 7);
+        forward.addAll(page.battles());
+        while (page.nextCursor() != null) {
+            page = service.searchBattles(null, page.nextCursor(), null, 7);
+            forward.addAll(page.battles());
+        }
+
+        assertThat(forward).hasSize(finished.size());
+        assertThat(forward.stream().map(Battle::id).collect(Collectors.toSet()))
+                .isEqualTo(finished.stream().map(Battle::id).collect(Collectors.toSet()));
+        assertThat(forward).isSortedAccordingTo(Comparator.comparing(Battle::finishedAt).reversed());
+
+        List<Battle> backward = new ArrayList<>();
+        Long cursor = forward.get(forward.size() - 1).id();
+        do {
+            page = service.searchBattles(null, null, cursor, 7);
+            backward.addAll(0, page.battles());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertThat(backward).isEqualTo(forward.subList(0, forward.size() - 1));
+    }
+
+    @Test
+    void runRandomTournament_shouldKeepTheMergedHistoryOrdered() throws Exception {
+        List<Battle> finished = simulateConcurrently(createConcurrently(100));
+        Tournament tournament = executor.submit(() -> service.runRandomTournament(256)).get();
+
+        BattlePage page = service.searchBattles(null, null, null, 1000);
+
+        assertThat(tournament.matches()).hasSize(255);
+        assertThat(page.battles()).hasSize(finished.size() + 255);
+        assertThat(page.battles()).isSortedAccordingTo(Comparator.comparing(Battle::finishedAt).reversed());
+        assertThat(service.simulateBattle(tournament.matches().get(254).id())).isEqualTo(tournament.matches().get(254));
+    }
+
+    @Test
+    void exportBattles_shouldMergeEveryShardOldestFirst() throws Exception {
+        List<Battle> finished = simulateConcurrently(createConcurrently(300));
+
+        List<Battle> exported = service.exportBattles(null, null, null).collect(Collectors.toList());
+
+        assertThat(exported).hasSize(finished.size());
+        assertThat(exported).isSortedAccordingTo(Comparator.comparing(Battle::finishedAt));
+        assertThat(exported).containsExactlyElementsOf(reversedPage(service.searchBattles(null, null, null, 1000)));
+        assertThat(service.exportBattles("eevee", null, null))
+                .allMatch(battle -> battle.first().name().equals("eevee") || battle.second().name().equals("eevee"));
+    }
+
+    @Test
+    void searchBattles_shouldThrow_WhenCursorIsUnknown() {
+        assertThatThrownBy(() -> service.searchBattles(null, 99L, null, 10))
+                .isInstanceOf(BattleNotFoundException.class);
+        assertThatThrownBy(() -> service.searchBattles(null, 1L, 2L, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<Battle> reversedPage(BattlePage page) {
+        List<Battle> battles = new ArrayList<>(page.battles());
+        Collections.reverse(battles);
+        return battles;
+    }
+
+    private List<Battle> createConcurrently(int count) throws Exception {
+        List<Future<Battle>> futures = IntStream.range(0, count)
+                .mapToObj(i -> executor.submit(service::createRandomBattle))
+                .collect(Collectors.toList());
+        List<Battle> battles = new ArrayList<>();
+        for (Future<Battle> future : futures) {
+            battles.add(future.get());
+        }
+        return battles;
+    }
+
+    private List<Battle> simulateConcurrently(List<Battle> pending) throws Exception {
+        List<Battle> shuffled = new ArrayList<>(pending);
+        Collections.shuffle(shuffled);
+        List<Future<Battle>> futures = shuffled.stream()
+                .map(battle -> executor.submit(() -> service.simulateBattle(battle.id())))
+                .collect(Collectors.toList());
+        List<Battle> battles = new ArrayList<>();
+        for (Future<Battle> future : futures) {
+            battles.add(future.get());
+        }
+        return battles;
+    }
+}
@@ -0,0 +1,151 @@
+package hu.dlaszlo.pokemonbattle.backend.test;
+
+import hu.dlaszlo.pokemonbattle.backend.service.dto.Battle;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.BattleStatus;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.PokemonEntity;
+import hu.dlaszlo.pokemonbattle.backend.service.dto.WinnerSide;
+import hu.dlaszlo.pokemonbattle.backend.service.history.SegmentedBattleHistory;
+import hu.dlaszlo.pokemonbattle.backend.service.history.TrigramBattleNameIndex;
+import org.apache.commons.lang3.Strings;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrigramBattleNameIndexTest {
+
+    private static final List<String> NAMES = List.of(
+            "pikachu", "Bulbasaur", "charmander", "SQUIRTLE", "mr-mime", "nidoran-f",
+            "porygon-z", "kakuna", "ho-oh", "farfetchd", "mime-jr", "Charizard");
+
+    private final SegmentedBattleHistory history = new SegmentedBattleHistory();
+    private final TrigramBattleNameIndex index = new TrigramBattleNameIndex(history);
+
+    @Test
+    void candidates_shouldMatchLinearScan_ForRandomQueries() {
+        Random random = new Random(42);
+        for (long id = 0; id < 2_000; id++) {
+            history.append(battle(id, NAMES.get(random.nextInt(NAMES.size())),
+                    NAMES.get(random.nextInt(NAMES.size()))));
+            if (id % 3 != 0) {
+                index.catchUp();
+            }
+        }
+
+        for (String query : List.of("pik", "PIKA", "ChAr", "saur", "mime", "-f", "o-o", "zzz",
+                "a", "ar", "izard", "e-j", "kakuna", "xpikachu")) {
+            assertThat(matchingIds(query)).as(query).isEqualTo(linearScanIds(query));
+        }
+    }
+
+    @Test
+    void candidatesFromPosition_shouldMatchLinearScan_InBothDirections() {
+        Random random = new Random(7);
+        for (long id = 0; id < 500; id++) {
+            history.append(battle(id, NAMES.get(random.nextInt(NAMES.size())), "ditto"));
+            if (id < 400) {
+                index.catchUp();
+            }
+        }
+
+        for (long from : new long[]{0, 150, 399, 400, 450, 499, 600}) {
+            assertThat(index.candidates("char", from, true)
+                    .filter(battle -> matches(battle, "char")).map(Battle::id).collect(Collectors.toList()))
+                    .as("newest first from %d", from)
+                    .isEqualTo(history.newestFirst(from)
+                            .filter(battle -> matches(battle, "char")).map(Battle::id).collect(Collectors.toList()));
+            assertThat(index.candidates("char", from, false)
+                    .filter(battle -> matches(battle, "char")).map(Battle::id).collect(Collectors.toList()))
+                    .as("oldest first from %d", from)
+                    .isEqualTo(history.oldestFirst(from)
+                            .filter(battle -> matches(battle, "char")).map(Battle::id).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void candidates_shouldIncludeBattlesNotIndexedYet() {
+        index.catchUp();
+        history.append(battle(1, "pikachu", "bulbasaur"));
+
+        assertThat(index.indexedSize()).isZero();
+        assertThat(matchingIds("chu")).containsExactly(1L);
+
+        index.catchUp();
+        assertThat(index.indexedSize()).isEqualTo(1);
+        assertThat(matchingIds("chu")).containsExactly(1L);
+    }
+
+    @Test
+    void candidates_shouldFallBackToScan_ForNonAsciiQuery() {
+        history.append(battle(1, "flabébé", "pikachu"));
+        index.catchUp();
+
+        assertThat(matchingIds("BÉBÉ")).containsExactly(1L);
+    }
+
+    @Test
+    void catchUp_shouldIndexEveryBattle_WhenCalledConcurrently() throws Exception {
+        int threads = 8;
+        int perThread = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = IntStream.range(0, threads)
+                    .mapToObj(t -> executor.submit(() -> {
+                        for (int i = 0; i < perThread; i++) {
+                            long id = (long) t * perThread + i;
+                            history.append(battle(id, NAMES.get((int) (id % NAMES.size())), "ditto"));
+                            index.catchUp();
+                        }
+                    }))
+                    .collect(Collectors.toList());
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(index.indexedSize()).isEqualTo((long) threads * perThread);
+        assertThat(matchingIds("itt")).hasSize(threads * perThread);
+        assertThat(matchingIds("pikachu")).isEqualTo(linearScanIds("pikachu"));
+    }
+
+    private List<Long> matchingIds(String query) {
+        return index.candidates(query)
+                .filter(battle -> matches(battle, query))
+                .map(Battle::id)
+                .collect(Collectors.toList());
+    }
+
+    private List<Long> linearScanIds(String query) {
+        return history.newestFirst()
+                .filter(battle -> matches(battle, query))
+                .map(Battle::id)
+                .collect(Collectors.toList());
+    }
+
+    private static boolean matches(Battle battle, String query) {
+        return Strings.CI.contains(battle.first().name(), query)
+                || Strings.CI.contains(battle.second().name(), query);
+    }
+
+    private static Battle battle(long id, String firstName, String secondName) {
+        return new Battle(
+                id,
+                BattleStatus.FINISHED,
+                new PokemonEntity(firstName, "t", "u", 1),
+                new PokemonEntity(secondName, "t", "u", 2),
+                WinnerSide.SECOND,
+                Instant.now(),
+                Instant.now()
+        );
+    }
+}
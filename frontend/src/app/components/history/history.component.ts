@@ -1,5 +1,6 @@
-import { Component, OnInit } from '@angular/core';
+import { Component, OnDestroy, OnInit } from '@angular/core';
 import { CommonModule } from '@angular/common';
+import { Subscription } from 'rxjs';
 import { BattleService } from '../../services/battle.service';
 import { Battle } from '../../models/battle.interface';
 import { PokemonEntity } from '../../models/pokemon.interface';
@@ -11,9 +12,12 @@ import { PokemonEntity } from '../../models/pokemon.interface';
   templateUrl: './history.component.html',
   styleUrl: './history.component.scss'
 })
-export class HistoryComponent implements OnInit {
+export class HistoryComponent implements OnInit, OnDestroy {
+  private static readonly MAX_BATTLES = 20;
+
   battles: Battle[] = [];
   errorMessage: string = '';
+  private liveFeed?: Subscription;
 
   constructor(private battleService: BattleService) {}
 
@@ -21,8 +25,16 @@ export class HistoryComponent implements OnInit {
     this.refreshList();
   }
 
+  ngOnDestroy(): void {
+    this.liveFeed?.unsubscribe();
+  }
+
   refreshList(query: string = ''): void {
     this.errorMessage = '';
+    this.liveFeed?.unsubscribe();
+    this.liveFeed = this.battleService.streamBattles(query).subscribe(battle => {
+      this.battles = [battle, ...this.battles.filter(b => b.id !== battle.id)].slice(0, HistoryComponent.MAX_BATTLES);
+    });
 
     this.battleService.listBattles(query).subscribe({
       next: (data) => {
@@ -29,4 +29,13 @@ export class BattleService {
     }
     return this.http.get<Battle[]>(this.apiUrl, { params });
   }
+
+  streamBattles(query?: string): Observable<Battle> {
+    const url = query ? `${this.apiUrl}/stream?q=${encodeURIComponent(query)}` : `${this.apiUrl}/stream`;
+    return new Observable<Battle>(subscriber => {
+      const source = new EventSource(url);
+      source.addEventListener('battle', event => subscriber.next(JSON.parse((event as MessageEvent).data)));
+      return () => source.close();
+    });
+  }
 }